@@ -0,0 +1,37 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    // Классы приложения
+    jmh(project(":"))
+
+    // Зависимости, которые в приложении предоставляет WildFly
+    jmh("jakarta.platform:jakarta.jakartaee-api:9.1.0")
+    jmh("com.fasterxml.jackson.core:jackson-databind:2.15.2")
+    jmh("com.fasterxml.jackson.datatype:jackson-datatype-jsr310:2.15.2")
+    jmh("com.fasterxml.jackson.module:jackson-module-blackbird:2.15.2")
+    jmh("com.fasterxml.jackson.dataformat:jackson-dataformat-smile:2.15.2")
+    jmh("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor:2.15.2")
+}
+
+// Параметры запуска: ./gradlew :benchmarks:jmh -Pjmh.includes=FlatMapping
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    (findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
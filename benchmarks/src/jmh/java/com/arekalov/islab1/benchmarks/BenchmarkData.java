@@ -0,0 +1,110 @@
+package com.arekalov.islab1.benchmarks;
+
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.Furnish;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.entity.View;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Детерминированные тестовые данные для бенчмарков
+ */
+final class BenchmarkData {
+    
+    private static final Furnish[] FURNISH = Furnish.values();
+    
+    private static final View[] VIEWS = View.values();
+    
+    private BenchmarkData() {
+    }
+    
+    /**
+     * Квартиры с координатами и домами (seed фиксирован - данные одинаковы между запусками)
+     */
+    static List<Flat> flats(int count) {
+        Random random = new Random(42);
+        List<House> houses = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, count / 10); i++) {
+            houses.add(House.builder()
+                .id((long) i + 1)
+                .name("Дом " + (i + 1))
+                .year(1950 + random.nextInt(70))
+                .numberOfFlatsOnFloor(4 + random.nextInt(4))
+                .build());
+        }
+        
+        List<Flat> flats = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long area = 30 + random.nextInt(120);
+            flats.add(Flat.builder()
+                .id((long) i + 1)
+                .name("Квартира " + (i + 1))
+                .coordinates(Coordinates.builder()
+                    .id((long) i + 1)
+                    .x(random.nextInt(1000))
+                    .y(random.nextInt(1000))
+                    .build())
+                .creationDate(LocalDateTime.of(2025, 1, 1, 12, 0).plusMinutes(i))
+                .area(area)
+                .price(1_000_000L + random.nextInt(20_000_000))
+                .balcony(random.nextBoolean())
+                .timeToMetroOnFoot((long) 1 + random.nextInt(40))
+                .numberOfRooms(1 + random.nextInt(5))
+                .livingSpace(area - 10)
+                .furnish(FURNISH[random.nextInt(FURNISH.length)])
+                .view(VIEWS[random.nextInt(VIEWS.length)])
+                .floor(1 + random.nextInt(20))
+                .house(houses.get(i % houses.size()))
+                .build());
+        }
+        return flats;
+    }
+    
+    /**
+     * JSON импорта из operations операций CREATE; типы (FLAT, HOUSE, COORDINATES) чередуются по кругу
+     */
+    static String importJson(int operations, String... types) {
+        StringBuilder builder = new StringBuilder(operations * 200).append('[');
+        for (int i = 0; i < operations; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            String type = types[i % types.length];
+            builder.append("{\"type\":\"").append(type).append("\",\"operation\":\"CREATE\",\"data\":")
+                .append(importData(type, i)).append('}');
+        }
+        return builder.append(']').toString();
+    }
+    
+    private static String importData(String type, int i) {
+        String coordinates = "{\"x\":" + (i * 7 % 1000) + ",\"y\":" + (i * 13 % 1000) + "}";
+        String house = "{\"name\":\"Дом " + i + "\",\"year\":" + (1950 + i % 70) + ",\"numberOfFlatsOnFloor\":4}";
+        return switch (type) {
+            case "FLAT" -> "{\"name\":\"Квартира " + i + "\",\"floor\":" + (1 + i % 20)
+                + ",\"area\":55,\"price\":5000000,\"balcony\":true,\"timeToMetroOnFoot\":10"
+                + ",\"numberOfRooms\":2,\"livingSpace\":35,\"furnish\":\"DESIGNER\",\"view\":\"YARD\""
+                + ",\"coordinates\":" + coordinates + ",\"house\":" + house + "}";
+            case "HOUSE" -> house;
+            default -> coordinates;
+        };
+    }
+    
+    /**
+     * Задать значение @Inject-поля без CDI-контейнера
+     */
+    static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot inject " + fieldName + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.arekalov.islab1.benchmarks;
+
+import com.arekalov.islab1.controller.FlatController;
+import com.arekalov.islab1.dto.response.FlatResponseDTO;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.mapper.CoordinatesMapper;
+import com.arekalov.islab1.mapper.FlatMapper;
+import com.arekalov.islab1.mapper.HouseMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FlatMapper.toResponseDTO против FlatController.convertToDTO на одной и той же странице квартир
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FlatMappingBenchmark {
+    
+    @Param({"10", "100"})
+    private int pageSize;
+    
+    private List<Flat> flats;
+    
+    private FlatMapper flatMapper;
+    
+    private FlatController flatController;
+    
+    /** FlatController.convertToDTO - приватный метод; static final, чтобы JIT встроил вызов */
+    private static final MethodHandle CONVERT_TO_DTO;
+    
+    static {
+        try {
+            CONVERT_TO_DTO = MethodHandles.privateLookupIn(FlatController.class, MethodHandles.lookup())
+                .findVirtual(FlatController.class, "convertToDTO", MethodType.methodType(FlatResponseDTO.class, Flat.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    @Setup
+    public void setup() {
+        flats = BenchmarkData.flats(pageSize);
+        
+        flatMapper = new FlatMapper();
+        BenchmarkData.inject(flatMapper, "coordinatesMapper", new CoordinatesMapper());
+        BenchmarkData.inject(flatMapper, "houseMapper", new HouseMapper());
+        
+        flatController = new FlatController();
+    }
+    
+    @Benchmark
+    public void flatMapper(Blackhole blackhole) {
+        for (Flat flat : flats) {
+            blackhole.consume(flatMapper.toResponseDTO(flat));
+        }
+    }
+    
+    @Benchmark
+    public void controllerConvertToDTO(Blackhole blackhole) throws Throwable {
+        for (Flat flat : flats) {
+            blackhole.consume((FlatResponseDTO) CONVERT_TO_DTO.invokeExact(flatController, flat));
+        }
+    }
+}
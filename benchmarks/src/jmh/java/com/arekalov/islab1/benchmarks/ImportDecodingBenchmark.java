@@ -0,0 +1,76 @@
+package com.arekalov.islab1.benchmarks;
+
+import com.arekalov.islab1.config.ObjectMapperProducer;
+import com.arekalov.islab1.dto.request.ImportOperationRequest;
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Декодирование JSON импорта так же, как ImportService: массив ImportOperationRequest,
+ * затем valueToTree/treeToValue для каждой операции. Время - на одну операцию.
+ * Обращения к БД и валидация не входят в замер.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(ImportDecodingBenchmark.OPERATIONS)
+public class ImportDecodingBenchmark {
+    
+    static final int OPERATIONS = 100;
+    
+    /** Тип операций в файле импорта */
+    @Param({"FLAT", "HOUSE", "COORDINATES"})
+    private String type;
+    
+    private ObjectMapper objectMapper;
+    
+    private JavaType operationsType;
+    
+    private String json;
+    
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapperProducer().getObjectMapper();
+        operationsType = objectMapper.getTypeFactory().constructCollectionType(List.class, ImportOperationRequest.class);
+        
+        json = BenchmarkData.importJson(OPERATIONS, type);
+    }
+    
+    @Benchmark
+    public void decode(Blackhole blackhole) throws Exception {
+        decode(objectMapper, operationsType, json, blackhole);
+    }
+    
+    /**
+     * Шаги ImportService.importObjects() и create*() без обращений к БД
+     */
+    static void decode(ObjectMapper objectMapper, JavaType operationsType, String json, Blackhole blackhole) throws Exception {
+        List<ImportOperationRequest> operations = objectMapper.readValue(json, operationsType);
+        for (ImportOperationRequest operation : operations) {
+            JsonNode dataNode = objectMapper.valueToTree(operation.getData());
+            switch (operation.getType().toUpperCase()) {
+                case "FLAT" -> {
+                    blackhole.consume(objectMapper.treeToValue(dataNode.get("coordinates"), Coordinates.class));
+                    blackhole.consume(objectMapper.treeToValue(dataNode.get("house"), House.class));
+                    ObjectNode flatNode = dataNode.deepCopy();
+                    flatNode.remove("coordinates");
+                    flatNode.remove("house");
+                    blackhole.consume(objectMapper.treeToValue(flatNode, Flat.class));
+                }
+                case "HOUSE" -> blackhole.consume(objectMapper.treeToValue(dataNode, House.class));
+                case "COORDINATES" -> blackhole.consume(objectMapper.treeToValue(dataNode, Coordinates.class));
+                default -> throw new IllegalStateException("Unknown type: " + operation.getType());
+            }
+        }
+    }
+}
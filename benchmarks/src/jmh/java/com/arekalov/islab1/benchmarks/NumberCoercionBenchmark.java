@@ -0,0 +1,46 @@
+package com.arekalov.islab1.benchmarks;
+
+import com.arekalov.islab1.config.ObjectMapperProducer;
+import com.arekalov.islab1.dto.request.ImportOperationRequest;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Импорт из 100 000 операций: глобальный режим BigInteger/BigDecimal (bigNumbers=true)
+ * против RangeCheckedNumbersModule (bigNumbers=false)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class NumberCoercionBenchmark {
+    
+    private static final int OPERATIONS = 100_000;
+    
+    @Param({"true", "false"})
+    private boolean bigNumbers;
+    
+    private ObjectMapper objectMapper;
+    
+    private JavaType operationsType;
+    
+    private String json;
+    
+    @Setup
+    public void setup() {
+        objectMapper = ObjectMapperProducer.create(bigNumbers);
+        operationsType = objectMapper.getTypeFactory().constructCollectionType(List.class, ImportOperationRequest.class);
+        json = BenchmarkData.importJson(OPERATIONS, "FLAT", "HOUSE", "COORDINATES");
+    }
+    
+    @Benchmark
+    public void decodeImport(Blackhole blackhole) throws Exception {
+        ImportDecodingBenchmark.decode(objectMapper, operationsType, json, blackhole);
+    }
+}
@@ -0,0 +1,59 @@
+package com.arekalov.islab1.benchmarks;
+
+import com.arekalov.islab1.config.ObjectMapperProducer;
+import com.arekalov.islab1.dto.response.FlatResponseDTO;
+import com.arekalov.islab1.dto.response.PagedResponse;
+import com.arekalov.islab1.mapper.CoordinatesMapper;
+import com.arekalov.islab1.mapper.FlatMapper;
+import com.arekalov.islab1.mapper.HouseMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация страницы квартир PagedResponse<FlatResponseDTO> с настройками ObjectMapperProducer
+ * (blackbird=true - с BlackbirdModule, как при islab1.json.blackbird=true)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PagedResponseSerializationBenchmark {
+    
+    @Param({"10", "100"})
+    private int pageSize;
+    
+    @Param({"false", "true"})
+    private boolean blackbird;
+    
+    private PagedResponse<FlatResponseDTO> page;
+    
+    private ObjectWriter writer;
+    
+    @Setup
+    public void setup() {
+        FlatMapper flatMapper = new FlatMapper();
+        BenchmarkData.inject(flatMapper, "coordinatesMapper", new CoordinatesMapper());
+        BenchmarkData.inject(flatMapper, "houseMapper", new HouseMapper());
+        
+        List<FlatResponseDTO> flats = BenchmarkData.flats(pageSize).stream()
+            .map(flatMapper::toResponseDTO)
+            .toList();
+        page = new PagedResponse<>(flats, 10_000, 0, pageSize);
+        
+        // Тот же writer, что использует JAX-RS провайдер: тип задан заранее
+        writer = ObjectMapperProducer.create(false, blackbird).writerFor(PagedResponse.class);
+    }
+    
+    @Benchmark
+    public byte[] writeValueAsBytes() throws JsonProcessingException {
+        return writer.writeValueAsBytes(page);
+    }
+    
+    @Benchmark
+    public String writeValueAsString() throws JsonProcessingException {
+        return writer.writeValueAsString(page);
+    }
+}
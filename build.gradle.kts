@@ -33,6 +33,9 @@ dependencies {
     implementation("com.fasterxml.jackson.core:jackson-core:2.15.2")
     implementation("com.fasterxml.jackson.core:jackson-databind:2.15.2")
     implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310:2.15.2")
+    implementation("com.fasterxml.jackson.module:jackson-module-blackbird:2.15.2")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile:2.15.2")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor:2.15.2")
     
     // PostgreSQL driver (provided by WildFly, but needed for compilation)
     compileOnly("org.postgresql:postgresql:42.7.7")
@@ -44,6 +47,8 @@ dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testImplementation("org.mockito:mockito-core:4.11.0")
+    testImplementation("jakarta.platform:jakarta.jakartaee-api:9.1.0")
+    testImplementation("org.postgresql:postgresql:42.7.7")
 }
 
 tasks.test {
@@ -0,0 +1,26 @@
+plugins {
+    java
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    implementation("com.fasterxml.jackson.core:jackson-databind:2.15.2")
+}
+
+application {
+    mainClass.set("com.arekalov.islab1.loadtest.LoadTest")
+}
+
+// Пример: ./gradlew :loadtest:run --args="--houses 200 --flats 20000 --rate 200 --duration 120"
+tasks.named<JavaExec>("run") {
+    workingDir = rootProject.projectDir
+}
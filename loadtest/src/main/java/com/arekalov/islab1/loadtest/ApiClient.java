@@ -0,0 +1,121 @@
+package com.arekalov.islab1.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Запросы к REST API приложения
+ */
+final class ApiClient {
+    
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    
+    private final HttpClient http;
+    
+    private final String baseUrl;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    ApiClient(String baseUrl, Executor executor) {
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+            .executor(executor)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }
+    
+    ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+    
+    CompletableFuture<HttpResponse<byte[]>> get(String path) {
+        return send(HttpRequest.newBuilder(uri(path)).GET());
+    }
+    
+    CompletableFuture<HttpResponse<byte[]>> post(String path, Object body) {
+        return send(HttpRequest.newBuilder(uri(path)).POST(json(body)));
+    }
+    
+    CompletableFuture<HttpResponse<byte[]>> put(String path, Object body) {
+        return send(HttpRequest.newBuilder(uri(path)).PUT(json(body)));
+    }
+    
+    static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+    
+    ObjectNode houseBody(DatasetGenerator.HouseSpec house) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("name", house.name());
+        body.put("year", house.year());
+        body.put("numberOfFlatsOnFloor", house.numberOfFlatsOnFloor());
+        return body;
+    }
+    
+    /**
+     * Тело CreateFlatRequest; houseIds - ID домов на сервере по индексу в наборе
+     */
+    ObjectNode flatBody(DatasetGenerator.FlatSpec flat, List<Long> houseIds) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("name", flat.name());
+        ObjectNode coordinates = body.putObject("coordinates");
+        coordinates.put("x", flat.x());
+        coordinates.put("y", flat.y());
+        body.put("area", flat.area());
+        body.put("price", flat.price());
+        body.put("balcony", flat.balcony());
+        body.put("timeToMetroOnFoot", flat.timeToMetroOnFoot());
+        body.put("numberOfRooms", flat.numberOfRooms());
+        body.put("livingSpace", flat.livingSpace());
+        body.put("furnish", flat.furnish());
+        body.put("view", flat.view());
+        body.put("floor", flat.floor());
+        if (flat.houseIndex() >= 0) {
+            body.put("houseId", houseIds.get(flat.houseIndex()));
+        }
+        return body;
+    }
+    
+    /**
+     * ID из ответа на создание
+     */
+    long readId(HttpResponse<byte[]> response) {
+        try {
+            return objectMapper.readTree(response.body()).path("id").asLong();
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException("Некорректный ответ: " + e.getMessage(), e);
+        }
+    }
+    
+    private CompletableFuture<HttpResponse<byte[]>> send(HttpRequest.Builder request) {
+        return http.sendAsync(request
+                .timeout(TIMEOUT)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+    }
+    
+    private HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+}
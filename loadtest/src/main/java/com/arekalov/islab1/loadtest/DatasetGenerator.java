@@ -0,0 +1,117 @@
+package com.arekalov.islab1.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Воспроизводимый набор домов и квартир, не нарушающий ограничений сервера
+ * 
+ * - координаты у каждой квартиры уникальны, поэтому ограничение "координаты + этаж"
+ *   не срабатывает ни при каком numberOfFlatsOnFloor;
+ * - квартиры раскладываются по этажам дома не больше numberOfFlatsOnFloor на этаж,
+ *   и вид BAD получают только первые numberOfFlatsOnFloor / 2 мест этажа.
+ * Квартиры, не поместившиеся в дома, создаются без дома.
+ */
+final class DatasetGenerator {
+    
+    /** Ширина сетки уникальных координат */
+    private static final int GRID = 2_000;
+    
+    private static final String[] FURNISH = {"DESIGNER", "FINE", "BAD", "LITTLE"};
+    
+    private static final String[] VIEWS = {"YARD", "BAD", "GOOD", "TERRIBLE"};
+    
+    record HouseSpec(String name, int year, int numberOfFlatsOnFloor, int floors) {
+    }
+    
+    /**
+     * @param houseIndex индекс дома в наборе или -1
+     */
+    record FlatSpec(String name, int houseIndex, int x, int y, int floor, long area, long price, boolean balcony,
+                    long timeToMetroOnFoot, int numberOfRooms, long livingSpace, String furnish, String view) {
+        
+        FlatSpec withPrice(long newPrice) {
+            return new FlatSpec(name, houseIndex, x, y, floor, area, newPrice, balcony,
+                timeToMetroOnFoot, numberOfRooms, livingSpace, furnish, view);
+        }
+    }
+    
+    private final long seed;
+    
+    private final List<HouseSpec> houses;
+    
+    private final List<FlatSpec> flats;
+    
+    DatasetGenerator(long seed, int houseCount, int flatCount) {
+        this.seed = seed;
+        Random random = new Random(seed);
+        
+        houses = new ArrayList<>(houseCount);
+        for (int i = 0; i < houseCount; i++) {
+            houses.add(new HouseSpec("LT-" + seed + " дом " + (i + 1),
+                1950 + random.nextInt(75), 2 + random.nextInt(7), 5 + random.nextInt(21)));
+        }
+        
+        flats = new ArrayList<>(flatCount);
+        int[] usedSlots = new int[houseCount];
+        int house = 0;
+        for (int i = 0; i < flatCount; i++) {
+            int houseIndex = -1;
+            int floor = 1 + random.nextInt(25);
+            boolean badAllowed = false;
+            
+            // Ищем дом со свободным местом, начиная со следующего по кругу
+            for (int attempt = 0; attempt < houseCount; attempt++, house = (house + 1) % houseCount) {
+                HouseSpec spec = houses.get(house);
+                if (usedSlots[house] < spec.numberOfFlatsOnFloor() * spec.floors()) {
+                    int slot = usedSlots[house]++;
+                    houseIndex = house;
+                    floor = slot / spec.numberOfFlatsOnFloor() + 1;
+                    badAllowed = slot % spec.numberOfFlatsOnFloor() < spec.numberOfFlatsOnFloor() / 2;
+                    house = (house + 1) % houseCount;
+                    break;
+                }
+            }
+            
+            String view = VIEWS[random.nextInt(VIEWS.length)];
+            if ("BAD".equals(view) && houseIndex >= 0 && !badAllowed) {
+                view = "GOOD";
+            }
+            flats.add(flat(random, i, houseIndex, floor, view));
+        }
+    }
+    
+    List<HouseSpec> houses() {
+        return houses;
+    }
+    
+    List<FlatSpec> flats() {
+        return flats;
+    }
+    
+    /**
+     * Квартира для создания во время теста: без дома, с координатами вне набора
+     */
+    FlatSpec extraFlat(Random random, int sequence) {
+        return flat(random, flats.size() + sequence, -1, 1 + random.nextInt(25), VIEWS[random.nextInt(VIEWS.length)]);
+    }
+    
+    private FlatSpec flat(Random random, int index, int houseIndex, int floor, String view) {
+        long area = 25 + random.nextInt(150);
+        return new FlatSpec(
+            "LT-" + seed + " квартира " + (index + 1),
+            houseIndex,
+            index % GRID,
+            index / GRID,
+            floor,
+            area,
+            1_000_000L + random.nextInt(30_000_000),
+            random.nextBoolean(),
+            1 + random.nextInt(60),
+            1 + random.nextInt(6),
+            Math.max(1, area - 5 - random.nextInt(15)),
+            FURNISH[random.nextInt(FURNISH.length)],
+            view);
+    }
+}
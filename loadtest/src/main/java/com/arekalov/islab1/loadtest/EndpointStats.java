@@ -0,0 +1,81 @@
+package com.arekalov.islab1.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Задержки и ошибки одного эндпоинта
+ * Задержка считается от запланированного момента отправки, поэтому очередь
+ * на стороне клиента не скрывает медленные ответы (coordinated omission).
+ */
+final class EndpointStats {
+    
+    private final String name;
+    
+    private long[] latencies = new long[1024];
+    
+    private int count;
+    
+    private final Map<String, Integer> errors = new TreeMap<>();
+    
+    private int dropped;
+    
+    EndpointStats(String name) {
+        this.name = name;
+    }
+    
+    String name() {
+        return name;
+    }
+    
+    synchronized void success(long latencyNanos) {
+        add(latencyNanos);
+    }
+    
+    /**
+     * @param kind "HTTP 409", "HttpTimeoutException" и т.п.
+     */
+    synchronized void error(long latencyNanos, String kind) {
+        add(latencyNanos);
+        errors.merge(kind, 1, Integer::sum);
+    }
+    
+    /**
+     * Запрос не отправлен: превышен предел одновременных запросов
+     */
+    synchronized void dropped() {
+        dropped++;
+    }
+    
+    synchronized Summary summarize(double seconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int errorCount = errors.values().stream().mapToInt(Integer::intValue).sum();
+        return new Summary(name, count, errorCount, dropped, count / seconds,
+            percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99), percentile(sorted, 0.999),
+            count > 0 ? sorted[count - 1] / 1e6 : 0, new TreeMap<>(errors));
+    }
+    
+    /**
+     * Итог по эндпоинту; задержки в миллисекундах
+     */
+    record Summary(String endpoint, int requests, int errors, int dropped, double throughput,
+                   double p50, double p90, double p99, double p999, double max, Map<String, Integer> errorBreakdown) {
+    }
+    
+    private void add(long latencyNanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+    }
+    
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
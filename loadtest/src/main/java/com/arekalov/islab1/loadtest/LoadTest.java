@@ -0,0 +1,243 @@
+package com.arekalov.islab1.loadtest;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Нагрузочный тест REST API по открытой модели
+ * 
+ * 1. Генерирует воспроизводимый набор домов и квартир (DatasetGenerator) и загружает его через API.
+ * 2. Подает запросы пуассоновским потоком с заданной интенсивностью независимо от времени ответа
+ *    (открытая модель), смесь сценариев задается весами (--mix).
+ * 3. Печатает перцентили задержек и ошибки по эндпоинтам и пишет report.json.
+ * 
+ * Запуск: ./gradlew :loadtest:run --args="--houses 200 --flats 20000 --rate 300 --duration 120"
+ */
+public final class LoadTest {
+    
+    private final LoadTestConfig config;
+    
+    private final ApiClient api;
+    
+    private final DatasetGenerator dataset;
+    
+    private final Random random;
+    
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private final AtomicInteger created = new AtomicInteger();
+    
+    private List<Long> houseIds = List.of();
+    
+    private List<Long> flatIds = List.of();
+    
+    private LoadTest(LoadTestConfig config, ExecutorService executor) {
+        this.config = config;
+        this.api = new ApiClient(config.baseUrl, executor);
+        this.dataset = new DatasetGenerator(config.seed, config.houses, config.flats);
+        this.random = new Random(config.seed + 1);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        try {
+            new LoadTest(config, executor).run();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private void run() throws Exception {
+        Files.createDirectories(config.output);
+        writeDataset();
+        
+        if (config.skipSeed) {
+            System.out.println("Загрузка данных пропущена (--skip-seed): запросы по ID используют ID первой страницы");
+            flatIds = fetchFlatIds();
+        } else {
+            System.out.printf("Загрузка набора: %d домов, %d квартир%n", config.houses, config.flats);
+            Seeder seeder = new Seeder(api, config.seedConcurrency);
+            houseIds = seeder.seedHouses(dataset.houses());
+            flatIds = seeder.seedFlats(dataset.flats(), houseIds);
+        }
+        if (flatIds.isEmpty()) {
+            throw new IllegalStateException("Нет квартир для запросов по ID");
+        }
+        
+        Map<String, Supplier<CompletableFuture<HttpResponse<byte[]>>>> scenarios = scenarios();
+        List<String> weighted = new ArrayList<>();
+        config.mix.forEach((name, weight) -> {
+            if (!scenarios.containsKey(name)) {
+                throw new IllegalArgumentException("Неизвестный сценарий: " + name + ", доступны: " + scenarios.keySet());
+            }
+            for (int i = 0; i < weight; i++) {
+                weighted.add(name);
+            }
+        });
+        
+        System.out.printf("Нагрузка: %.1f запросов/с, прогрев %d с, замер %d с, смесь %s%n",
+            config.rate, config.warmupSeconds, config.durationSeconds, config.mix);
+        
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        long next = start;
+        
+        while (next < end) {
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            
+            String name = weighted.get(random.nextInt(weighted.size()));
+            issue(name, scenarios.get(name), next, next >= measureFrom);
+            
+            // Экспоненциальные интервалы - пуассоновский поток
+            next += (long) (-Math.log(1 - random.nextDouble()) / config.rate * 1e9);
+        }
+        
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(50);
+        }
+        
+        report();
+    }
+    
+    /**
+     * Отправить запрос; задержка считается от запланированного момента
+     */
+    private void issue(String name, Supplier<CompletableFuture<HttpResponse<byte[]>>> scenario,
+                       long scheduledAt, boolean measured) {
+        EndpointStats target = measured ? stats.computeIfAbsent(name, EndpointStats::new) : null;
+        if (inFlight.get() >= config.maxInFlight) {
+            if (target != null) {
+                target.dropped();
+            }
+            return;
+        }
+        
+        inFlight.incrementAndGet();
+        CompletableFuture<HttpResponse<byte[]>> future;
+        try {
+            future = scenario.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, error) -> {
+            inFlight.decrementAndGet();
+            if (target == null) {
+                return;
+            }
+            long latency = System.nanoTime() - scheduledAt;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                target.error(latency, cause.getClass().getSimpleName());
+            } else if (response.statusCode() >= 400) {
+                target.error(latency, "HTTP " + response.statusCode());
+            } else {
+                target.success(latency);
+            }
+        });
+    }
+    
+    /**
+     * Сценарии: имя из --mix -> запрос. Вызываются только из потока планировщика.
+     */
+    private Map<String, Supplier<CompletableFuture<HttpResponse<byte[]>>>> scenarios() {
+        int pages = Math.max(1, flatIds.size() / 10);
+        String[] sorts = {"id", "name", "price", "area"};
+        
+        Map<String, Supplier<CompletableFuture<HttpResponse<byte[]>>>> scenarios = new LinkedHashMap<>();
+        scenarios.put("list", () -> api.get("/flats?page=" + random.nextInt(pages) + "&size=10&sortBy="
+            + sorts[random.nextInt(sorts.length)]));
+        scenarios.put("get", () -> api.get("/flats/" + randomFlatId()));
+        scenarios.put("search", () -> api.get("/flats/search/by-name?substring="
+            + ApiClient.encode("квартира " + (1 + random.nextInt(Math.max(1, config.flats))))));
+        scenarios.put("count", () -> api.get("/flats/count/rooms-greater-than/" + random.nextInt(6)));
+        scenarios.put("houses", () -> api.get("/houses?page=" + random.nextInt(Math.max(1, config.houses / 10)) + "&size=10"));
+        scenarios.put("create", () -> api.post("/flats",
+            api.flatBody(dataset.extraFlat(random, created.getAndIncrement()), houseIds)));
+        scenarios.put("update", () -> {
+            int index = random.nextInt(flatIds.size());
+            if (config.skipSeed || index >= dataset.flats().size()) {
+                return api.get("/flats/" + flatIds.get(index));
+            }
+            DatasetGenerator.FlatSpec flat = dataset.flats().get(index).withPrice(1_000_000L + random.nextInt(30_000_000));
+            return api.put("/flats/" + flatIds.get(index), api.flatBody(flat, houseIds));
+        });
+        return scenarios;
+    }
+    
+    private long randomFlatId() {
+        return flatIds.get(random.nextInt(flatIds.size()));
+    }
+    
+    private List<Long> fetchFlatIds() throws Exception {
+        HttpResponse<byte[]> response = api.get("/flats?page=0&size=100").get(30, TimeUnit.SECONDS);
+        List<Long> ids = new ArrayList<>();
+        api.objectMapper().readTree(response.body()).path("data").forEach(flat -> ids.add(flat.path("id").asLong()));
+        return ids;
+    }
+    
+    private void writeDataset() throws Exception {
+        ObjectNode root = api.objectMapper().createObjectNode();
+        root.put("seed", config.seed);
+        root.set("houses", api.objectMapper().valueToTree(dataset.houses()));
+        root.set("flats", api.objectMapper().valueToTree(dataset.flats()));
+        Path file = config.output.resolve("dataset.json");
+        api.objectMapper().writeValue(file.toFile(), root);
+        System.out.println("Набор данных: " + file);
+    }
+    
+    private void report() throws Exception {
+        List<EndpointStats.Summary> summaries = new ArrayList<>();
+        for (EndpointStats endpoint : stats.values()) {
+            summaries.add(endpoint.summarize(config.durationSeconds));
+        }
+        
+        System.out.println();
+        System.out.printf("%-8s %8s %8s %8s %9s %9s %9s %9s %9s %9s%n",
+            "endpoint", "requests", "errors", "dropped", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (EndpointStats.Summary s : summaries) {
+            System.out.printf("%-8s %8d %8d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                s.endpoint(), s.requests(), s.errors(), s.dropped(), s.throughput(),
+                s.p50(), s.p90(), s.p99(), s.p999(), s.max());
+            s.errorBreakdown().forEach((kind, count) -> System.out.printf("         %-30s %d%n", kind, count));
+        }
+        
+        ObjectNode root = api.objectMapper().createObjectNode();
+        root.put("baseUrl", config.baseUrl);
+        root.put("rate", config.rate);
+        root.put("durationSeconds", config.durationSeconds);
+        root.put("houses", config.houses);
+        root.put("flats", config.flats);
+        root.put("seed", config.seed);
+        root.set("mix", api.objectMapper().valueToTree(config.mix));
+        root.set("endpoints", api.objectMapper().valueToTree(summaries));
+        Path file = config.output.resolve("report.json");
+        api.objectMapper().writer(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), root);
+        System.out.println();
+        System.out.println("Отчет: " + file);
+    }
+}
@@ -0,0 +1,88 @@
+package com.arekalov.islab1.loadtest;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста (аргументы командной строки вида --name value)
+ */
+final class LoadTestConfig {
+    
+    /** Доля запросов по умолчанию: имя сценария -> вес */
+    private static final String DEFAULT_MIX = "list=40,get=25,search=10,count=5,houses=5,create=10,update=5";
+    
+    String baseUrl = "http://localhost:8080/is-lab1/api";
+    
+    int houses = 100;
+    
+    int flats = 10_000;
+    
+    long seed = 42;
+    
+    /** Интенсивность входящего потока, запросов в секунду (открытая модель) */
+    double rate = 100;
+    
+    int warmupSeconds = 10;
+    
+    int durationSeconds = 60;
+    
+    /** Предел одновременно выполняющихся запросов; сверх него запрос считается отброшенным */
+    int maxInFlight = 2_000;
+    
+    int seedConcurrency = 16;
+    
+    boolean skipSeed = false;
+    
+    Map<String, Integer> mix = parseMix(DEFAULT_MIX);
+    
+    Path output = Path.of("loadtest/build/results");
+    
+    static LoadTestConfig parse(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if ("--skip-seed".equals(name)) {
+                config.skipSeed = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Нет значения для " + name);
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--base-url" -> config.baseUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "--houses" -> config.houses = Integer.parseInt(value);
+                case "--flats" -> config.flats = Integer.parseInt(value);
+                case "--seed" -> config.seed = Long.parseLong(value);
+                case "--rate" -> config.rate = Double.parseDouble(value);
+                case "--warmup" -> config.warmupSeconds = Integer.parseInt(value);
+                case "--duration" -> config.durationSeconds = Integer.parseInt(value);
+                case "--max-in-flight" -> config.maxInFlight = Integer.parseInt(value);
+                case "--seed-concurrency" -> config.seedConcurrency = Integer.parseInt(value);
+                case "--mix" -> config.mix = parseMix(value);
+                case "--output" -> config.output = Path.of(value);
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + name);
+            }
+        }
+        if (config.rate <= 0 || config.durationSeconds <= 0) {
+            throw new IllegalArgumentException("--rate и --duration должны быть больше 0");
+        }
+        return config;
+    }
+    
+    private static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Некорректный --mix: " + value);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                mix.put(pair[0].trim(), weight);
+            }
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,78 @@
+package com.arekalov.islab1.loadtest;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Загрузка набора данных через REST API (POST /houses, POST /flats)
+ */
+final class Seeder {
+    
+    private final ApiClient api;
+    
+    private final int concurrency;
+    
+    Seeder(ApiClient api, int concurrency) {
+        this.api = api;
+        this.concurrency = concurrency;
+    }
+    
+    /**
+     * @return ID созданных домов по индексу в наборе
+     */
+    List<Long> seedHouses(List<DatasetGenerator.HouseSpec> houses) throws InterruptedException {
+        return create(houses, house -> api.post("/houses", api.houseBody(house)), "домов");
+    }
+    
+    /**
+     * @return ID созданных квартир в порядке набора
+     */
+    List<Long> seedFlats(List<DatasetGenerator.FlatSpec> flats, List<Long> houseIds) throws InterruptedException {
+        return create(flats, flat -> api.post("/flats", api.flatBody(flat, houseIds)), "квартир");
+    }
+    
+    private <T> List<Long> create(List<T> items, Function<T, CompletableFuture<HttpResponse<byte[]>>> request,
+                                  String what) throws InterruptedException {
+        Long[] ids = new Long[items.size()];
+        Semaphore permits = new Semaphore(concurrency);
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        
+        for (int i = 0; i < items.size(); i++) {
+            permits.acquire();
+            int index = i;
+            request.apply(items.get(i)).whenComplete((response, error) -> {
+                try {
+                    if (error != null) {
+                        errors.add(error.toString());
+                    } else if (response.statusCode() != 201 && response.statusCode() != 200) {
+                        errors.add(response.statusCode() + ": " + new String(response.body(), StandardCharsets.UTF_8));
+                    } else {
+                        ids[index] = api.readId(response);
+                    }
+                } finally {
+                    permits.release();
+                }
+            });
+            if ((i + 1) % 1000 == 0) {
+                System.out.printf("  создано %s: %d/%d%n", what, i + 1, items.size());
+            }
+        }
+        permits.acquire(concurrency);
+        
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Не удалось создать " + errors.size() + " " + what + ", первая ошибка: " + errors.get(0));
+        }
+        System.out.printf("  создано %s: %d за %d мс%n", what, items.size(), (System.nanoTime() - start) / 1_000_000);
+        
+        List<Long> result = new ArrayList<>(ids.length);
+        Collections.addAll(result, ids);
+        return result;
+    }
+}
@@ -1,2 +1,4 @@
 rootProject.name = "is-lab1"
 
+include("benchmarks")
+include("loadtest")
@@ -0,0 +1,14 @@
+-- Журнал изменений для возобновления WebSocket-подписки после переподключения
+-- Клиент подключается с ?since=<seq> и получает только пропущенные события
+
+CREATE TABLE IF NOT EXISTS change_log (
+    seq BIGSERIAL PRIMARY KEY,
+    entity_type VARCHAR(32) NOT NULL,
+    action VARCHAR(32) NOT NULL,
+    payload TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE change_log IS 'Последовательный журнал изменений (FLAT/HOUSE), хранится ограниченное число последних записей';
+COMMENT ON COLUMN change_log.seq IS 'Монотонный номер события';
+COMMENT ON COLUMN change_log.payload IS 'Данные события в формате JSON (поле data WebSocket-сообщения)';
@@ -0,0 +1,12 @@
+-- Кандидаты на фоновую очистку координат (OrphanCoordinatesSweeper)
+-- Запись добавляется в той же транзакции, что удаляет квартиру или заменяет ее координаты.
+-- Самостоятельно созданные координаты (например, импорт COORDINATES CREATE) сюда не попадают
+-- и очисткой не удаляются.
+
+CREATE TABLE IF NOT EXISTS coordinates_sweep_candidates (
+    coordinates_id BIGINT PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE coordinates_sweep_candidates IS 'Координаты, которые могли остаться без квартир после удаления или замены';
+COMMENT ON COLUMN coordinates_sweep_candidates.coordinates_id IS 'ID координат (без внешнего ключа: строка координат может быть уже удалена)';
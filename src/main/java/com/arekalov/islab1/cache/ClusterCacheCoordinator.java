@@ -0,0 +1,322 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.cache.EntityCacheInvalidator.CacheKey;
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.inject.Inject;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Координация кэшей между узлами кластера через PostgreSQL LISTEN/NOTIFY
+ * 
+ * Приложение развернуто как distributable, поэтому локальные кэши каждого узла
+ * нужно инвалидировать при изменениях на других узлах. Ключи, вытесненные локально,
+ * складываются в множество (повторы схлопываются) и раз в flush-interval отправляются
+ * одним NOTIFY в канал islab1_cache. Каждый узел слушает канал на выделенном соединении
+ * и вытесняет полученные ключи у себя, не пересылая их дальше.
+ * 
+ * Формат сообщения: nodeId|timestampMillis|House:1,Coordinates:5,Flat:*,House:7:C
+ * (необязательный суффикс - вид изменения: C - создание, D - удаление, без суффикса - изменение).
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ClusterCacheCoordinator {
+    
+    private static final Logger logger = Logger.getLogger(ClusterCacheCoordinator.class.getName());
+    
+    private static final String CHANNEL = "islab1_cache";
+    
+    private static final String ALL_IDS = "*";
+    
+    /** Лимит payload у NOTIFY - 8000 байт, оставляем запас */
+    private static final int MAX_PAYLOAD_LENGTH = 7000;
+    
+    private static final boolean ENABLED = Boolean.parseBoolean(
+        System.getProperty("islab1.cache.cluster.enabled", "true"));
+    
+    /** Интервал отправки накопленных инвалидаций и опроса канала, мс */
+    private static final int FLUSH_INTERVAL_MS = Integer.getInteger("islab1.cache.cluster.flush-interval-ms", 100);
+    
+    /** Пауза перед переподключением после ошибки, мс */
+    private static final long RECONNECT_DELAY_MS = 5_000L;
+    
+    /** Сущности, которые могут кэшироваться на узлах */
+    private static final Map<String, Class<?>> ENTITY_TYPES = Map.of(
+        House.class.getSimpleName(), House.class,
+        Coordinates.class.getSimpleName(), Coordinates.class,
+        Flat.class.getSimpleName(), Flat.class
+    );
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    
+    private final AtomicLong oldestPendingAt = new AtomicLong();
+    
+    @Resource(lookup = "java:jboss/datasources/flatsPu")
+    private DataSource dataSource;
+    
+    @Resource
+    private ManagedThreadFactory threadFactory;
+    
+    @Inject
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    private volatile boolean running;
+    
+    private Thread worker;
+    
+    @PostConstruct
+    public void start() {
+        if (!ENABLED) {
+            logger.info("ClusterCacheCoordinator - координация кэшей отключена");
+            return;
+        }
+        
+        metricsRegistry.registerGauge("cache_cluster_pending_keys", pending::size);
+        
+        running = true;
+        worker = threadFactory.newThread(this::run);
+        worker.setName("cluster-cache-coordinator");
+        worker.start();
+        logger.info("ClusterCacheCoordinator - запущен, nodeId=" + nodeId + ", интервал=" + FLUSH_INTERVAL_MS + " мс");
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+    
+    /**
+     * Поставить ключи в очередь на рассылку другим узлам
+     */
+    public void publish(Set<CacheKey> keys) {
+        if (!running) {
+            return;
+        }
+        
+        for (CacheKey key : keys) {
+            if (pending.add(encode(key))) {
+                oldestPendingAt.compareAndSet(0, System.currentTimeMillis());
+            } else {
+                metricsRegistry.increment("cache_cluster_coalesced_keys_total");
+            }
+        }
+    }
+    
+    /**
+     * Основной цикл: слушаем канал и периодически отправляем накопленные ключи
+     */
+    private void run() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                
+                // Пока соединения не было, сообщения могли потеряться - сбрасываем локальные кэши
+                evictEverythingLocally();
+                
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(FLUSH_INTERVAL_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                    flush(connection);
+                }
+                
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                metricsRegistry.increment("cache_cluster_reconnects_total");
+                logger.severe("ClusterCacheCoordinator.run() - ошибка соединения: " + e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        logger.info("ClusterCacheCoordinator - остановлен");
+    }
+    
+    /**
+     * Отправить накопленные ключи одним или несколькими NOTIFY
+     * 
+     * Ключи забираются из pending в локальную пачку; если отправка не удалась,
+     * неотправленные ключи возвращаются в pending вместе с временем самого старого,
+     * и уйдут после переподключения.
+     */
+    private void flush(Connection connection) throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        long batchStartedAt = oldestPendingAt.getAndSet(0);
+        if (batchStartedAt == 0) {
+            batchStartedAt = System.currentTimeMillis();
+        }
+        List<String> batch = new ArrayList<>();
+        Iterator<String> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        
+        String header = nodeId + "|" + batchStartedAt + "|";
+        StringBuilder payload = new StringBuilder(header);
+        int payloadFrom = 0;
+        
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            for (int i = 0; i < batch.size(); i++) {
+                String key = batch.get(i);
+                if (i > payloadFrom && payload.length() + key.length() + 1 > MAX_PAYLOAD_LENGTH) {
+                    send(statement, payload.toString(), i - payloadFrom);
+                    payload.setLength(0);
+                    payload.append(header);
+                    payloadFrom = i;
+                }
+                if (i > payloadFrom) {
+                    payload.append(',');
+                }
+                payload.append(key);
+            }
+            if (payloadFrom < batch.size()) {
+                send(statement, payload.toString(), batch.size() - payloadFrom);
+            }
+        } catch (SQLException | RuntimeException e) {
+            requeue(batch.subList(payloadFrom, batch.size()), batchStartedAt);
+            throw e;
+        }
+    }
+    
+    /**
+     * Вернуть неотправленные ключи в очередь
+     */
+    private void requeue(List<String> keys, long batchStartedAt) {
+        pending.addAll(keys);
+        oldestPendingAt.accumulateAndGet(batchStartedAt,
+            (current, restored) -> current == 0 ? restored : Math.min(current, restored));
+        metricsRegistry.add("cache_cluster_requeued_keys_total", keys.size());
+    }
+    
+    private void send(PreparedStatement statement, String payload, int keys) throws SQLException {
+        statement.setString(1, CHANNEL);
+        statement.setString(2, payload);
+        statement.execute();
+        metricsRegistry.increment("cache_cluster_published_messages_total");
+        metricsRegistry.add("cache_cluster_published_keys_total", keys);
+    }
+    
+    /**
+     * Обработать сообщение от другого узла
+     */
+    private void receive(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        
+        Set<CacheKey> keys = new HashSet<>();
+        for (String encoded : parts[2].split(",")) {
+            CacheKey key = decode(encoded);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        entityCacheInvalidator.evictLocal(keys);
+        
+        long lagMs = Math.max(0, System.currentTimeMillis() - Long.parseLong(parts[1]));
+        metricsRegistry.increment("cache_cluster_received_messages_total");
+        metricsRegistry.add("cache_cluster_received_keys_total", keys.size());
+        metricsRegistry.add("cache_cluster_lag_ms_total", lagMs);
+        metricsRegistry.setGauge("cache_cluster_last_lag_ms", lagMs);
+    }
+    
+    private void evictEverythingLocally() {
+        Set<CacheKey> keys = new HashSet<>();
+        for (Class<?> entityClass : ENTITY_TYPES.values()) {
+            keys.add(new CacheKey(entityClass, CacheKey.ALL));
+        }
+        entityCacheInvalidator.evictLocal(keys);
+    }
+    
+    private static String encode(CacheKey key) {
+        String id = key.id() == CacheKey.ALL ? ALL_IDS : String.valueOf(key.id());
+        String encoded = key.entityClass().getSimpleName() + ":" + id;
+        return switch (key.change()) {
+            case CREATED -> encoded + ":C";
+            case DELETED -> encoded + ":D";
+            case UPDATED -> encoded;
+        };
+    }
+    
+    private static CacheKey decode(String encoded) {
+        int separator = encoded.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        Class<?> entityClass = ENTITY_TYPES.get(encoded.substring(0, separator));
+        if (entityClass == null) {
+            return null;
+        }
+        String id = encoded.substring(separator + 1);
+        CacheKey.Change change = CacheKey.Change.UPDATED;
+        if (id.endsWith(":C")) {
+            change = CacheKey.Change.CREATED;
+        } else if (id.endsWith(":D")) {
+            change = CacheKey.Change.DELETED;
+        }
+        if (change != CacheKey.Change.UPDATED) {
+            id = id.substring(0, id.length() - 2);
+        }
+        try {
+            return new CacheKey(entityClass, ALL_IDS.equals(id) ? CacheKey.ALL : Long.valueOf(id), change);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.config.BinaryMediaTypes;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Условные GET-запросы: ETag, If-None-Match и Cache-Control
+ * 
+ * ETag строится из версии EntityVersions и формата ответа (JSON, Smile, CBOR),
+ * поэтому If-None-Match проверяется до обращения к БД и к кэшу ответов.
+ * Версия берется до загрузки данных: если изменение закоммитится во время
+ * загрузки, клиент получит новые данные со старым ETag и перечитает их еще раз.
+ * CompressionInterceptor дописывает к ETag сжатого ответа суффикс -gzip/-deflate,
+ * такие значения тоже считаются совпадением.
+ */
+@ApplicationScoped
+public class ConditionalGet {
+    
+    private static final boolean ENABLED = Boolean.parseBoolean(
+        System.getProperty("islab1.http.etag.enabled", "true"));
+    
+    private static final int MAX_AGE_SECONDS = Integer.getInteger("islab1.http.cache.max-age-seconds", 0);
+    
+    @Inject
+    private EntityVersions entityVersions;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    /**
+     * ETag квартиры; fields - ключ набора полей (ProjectedField.key); null, если ETag отключены
+     */
+    public EntityTag flatTag(Long id, String fields, HttpHeaders headers) {
+        return tag("flat-" + id + "-" + fields + "-" + entityVersions.flat(id), headers);
+    }
+    
+    /**
+     * ETag дома; fields - ключ набора полей (ProjectedField.key); null, если ETag отключены
+     */
+    public EntityTag houseTag(Long id, String fields, HttpHeaders headers) {
+        return tag("house-" + id + "-" + fields + "-" + entityVersions.house(id), headers);
+    }
+    
+    /**
+     * ETag страницы списка; query - параметры, определяющие содержимое страницы
+     */
+    public EntityTag listTag(String list, String query, HttpHeaders headers) {
+        return tag(list + "-" + query + "-" + entityVersions.lists(), headers);
+    }
+    
+    /**
+     * Ответ 304 Not Modified, если клиент прислал совпадающий If-None-Match, иначе null
+     */
+    public Response notModified(EntityTag tag, HttpHeaders headers) {
+        if (tag == null) {
+            return null;
+        }
+        String ifNoneMatch = headers.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null || !matches(ifNoneMatch, tag.getValue())) {
+            return null;
+        }
+        metricsRegistry.increment("http_not_modified_total");
+        return withValidators(Response.notModified(), tag).build();
+    }
+    
+    /**
+     * Добавить к ответу ETag, Cache-Control и Vary
+     */
+    public Response.ResponseBuilder withValidators(Response.ResponseBuilder builder, EntityTag tag) {
+        if (tag == null) {
+            return builder;
+        }
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoTransform(false);
+        cacheControl.setMaxAge(MAX_AGE_SECONDS);
+        cacheControl.setMustRevalidate(true);
+        return builder.tag(tag)
+            .cacheControl(cacheControl)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+    
+    private static EntityTag tag(String value, HttpHeaders headers) {
+        if (!ENABLED) {
+            return null;
+        }
+        return new EntityTag(value + "-" + variant(headers));
+    }
+    
+    /**
+     * Формат ответа, который выберет JAX-RS: q из Accept умножается на qs из @Produces
+     * (0.9 у Smile и CBOR), при равенстве побеждает JSON
+     */
+    private static String variant(HttpHeaders headers) {
+        double json = quality(headers, MediaType.APPLICATION_JSON_TYPE);
+        double smile = quality(headers, BinaryMediaTypes.SMILE_TYPE) * 0.9;
+        double cbor = quality(headers, BinaryMediaTypes.CBOR_TYPE) * 0.9;
+        if (json >= smile && json >= cbor) {
+            return "json";
+        }
+        return smile >= cbor ? "smile" : "cbor";
+    }
+    
+    /**
+     * q самого точного диапазона из Accept, которому соответствует тип (как при выборе @Produces)
+     */
+    private static double quality(HttpHeaders headers, MediaType produced) {
+        double quality = 0;
+        int bestSpecificity = -1;
+        for (MediaType accepted : headers.getAcceptableMediaTypes()) {
+            if (!accepted.isCompatible(produced)) {
+                continue;
+            }
+            int specificity = (accepted.isWildcardType() ? 0 : 1) + (accepted.isWildcardSubtype() ? 0 : 1);
+            if (specificity > bestSpecificity) {
+                bestSpecificity = specificity;
+                quality = parseQuality(accepted.getParameters().get("q"));
+            }
+        }
+        return quality;
+    }
+    
+    private static double parseQuality(String q) {
+        if (q == null) {
+            return 1.0;
+        }
+        try {
+            return Double.parseDouble(q);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    private static boolean matches(String ifNoneMatch, String value) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                tag = tag.substring(1, tag.length() - 1);
+            }
+            if (tag.equals(value) || tag.equals(value + "-gzip") || tag.equals(value + "-deflate")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,143 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.cache.EntityCacheInvalidator.CacheKey;
+import com.arekalov.islab1.config.ObjectMapperProducer;
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Read-through кэш ответов GET /flats/{id} и GET /houses/{id}
+ * 
+ * Хранит уже сериализованные в JSON FlatResponseDTO/HouseResponseDTO.
+ * Инвалидируется после коммита через EntityCacheInvalidator (в том числе
+ * сообщениями от других узлов кластера). Ответ квартиры включает дом и координаты,
+ * поэтому изменение или удаление дома и изменение координат очищают кэш квартир целиком;
+ * создание дома или координат и очистка неиспользуемых координат его не трогают.
+ */
+@ApplicationScoped
+public class DetailResponseCache {
+    
+    private static final Logger logger = Logger.getLogger(DetailResponseCache.class.getName());
+    
+    private static final boolean ENABLED = Boolean.parseBoolean(
+        System.getProperty("islab1.cache.response.enabled", "true"));
+    
+    private static final int MAX_SIZE = Integer.getInteger("islab1.cache.response.max-size", 10_000);
+    
+    private static final long TTL_MS = Long.getLong("islab1.cache.response.ttl-ms", 30_000L);
+    
+    private static final long NEGATIVE_TTL_MS = Long.getLong("islab1.cache.response.negative-ttl-ms", 5_000L);
+    
+    private final ResponseCache<Long> flats = new ResponseCache<>(MAX_SIZE, TTL_MS, NEGATIVE_TTL_MS);
+    
+    private final ResponseCache<Long> houses = new ResponseCache<>(MAX_SIZE, TTL_MS, NEGATIVE_TTL_MS);
+    
+    @Inject
+    private ObjectMapperProducer objectMapperProducer;
+    
+    @Inject
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @PostConstruct
+    public void init() {
+        entityCacheInvalidator.addListener(this::onInvalidate);
+        registerMetrics("flat", flats);
+        registerMetrics("house", houses);
+        logger.info("DetailResponseCache - enabled=" + ENABLED + ", maxSize=" + MAX_SIZE + ", ttl=" + TTL_MS + " мс");
+    }
+    
+    /**
+     * Получить JSON квартиры
+     *
+     * @param loader загружает DTO квартиры или возвращает null, если она не найдена
+     * @return JSON или null, если квартира не найдена
+     */
+    public byte[] getFlat(Long id, Supplier<Object> loader) {
+        return get(flats, id, loader);
+    }
+    
+    /**
+     * Получить JSON дома
+     *
+     * @param loader загружает DTO дома или возвращает null, если он не найден
+     * @return JSON или null, если дом не найден
+     */
+    public byte[] getHouse(Long id, Supplier<Object> loader) {
+        return get(houses, id, loader);
+    }
+    
+    private byte[] get(ResponseCache<Long> cache, Long id, Supplier<Object> loader) {
+        if (!ENABLED) {
+            return serialize(loader.get());
+        }
+        return cache.get(id, () -> serialize(loader.get()));
+    }
+    
+    private byte[] serialize(Object dto) {
+        if (dto == null) {
+            return null;
+        }
+        try {
+            return objectMapperProducer.getObjectMapper().writeValueAsBytes(dto);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing response: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Обработать инвалидацию сущностей
+     */
+    private void onInvalidate(Set<CacheKey> keys) {
+        for (CacheKey key : keys) {
+            Class<?> entityClass = key.entityClass();
+            boolean all = key.id() == CacheKey.ALL;
+            
+            if (entityClass == Flat.class) {
+                if (all) {
+                    flats.invalidateAll();
+                } else {
+                    flats.invalidate((Long) key.id());
+                }
+            } else if (entityClass == House.class) {
+                if (all) {
+                    houses.invalidateAll();
+                } else {
+                    houses.invalidate((Long) key.id());
+                }
+                // Дом встроен в ответы квартир
+                if (key.embeddedInFlats()) {
+                    flats.invalidateAll();
+                }
+            } else if (entityClass == Coordinates.class && key.embeddedInFlats()) {
+                // Координаты встроены в ответы квартир
+                flats.invalidateAll();
+            }
+        }
+    }
+    
+    private void registerMetrics(String name, ResponseCache<Long> cache) {
+        String prefix = "response_cache_" + name + "_";
+        metricsRegistry.registerGauge(prefix + "size", cache::size);
+        metricsRegistry.registerGauge(prefix + "hits_total", cache::hits);
+        metricsRegistry.registerGauge(prefix + "misses_total", cache::misses);
+        metricsRegistry.registerGauge(prefix + "hit_rate_percent", cache::hitRatePercent);
+        metricsRegistry.registerGauge(prefix + "loads_total", cache::loads);
+        metricsRegistry.registerGauge(prefix + "load_time_ms_total", cache::loadTimeMillis);
+        metricsRegistry.registerGauge(prefix + "evictions_size_total", cache::sizeEvictions);
+        metricsRegistry.registerGauge(prefix + "evictions_expired_total", cache::expiredEvictions);
+        metricsRegistry.registerGauge(prefix + "invalidations_total", cache::invalidations);
+    }
+}
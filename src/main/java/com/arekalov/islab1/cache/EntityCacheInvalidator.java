@@ -0,0 +1,184 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.service.EntityManagerService;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Инвалидация общего кэша EclipseLink после завершения транзакции
+ * 
+ * EclipseLink сам обновляет кэш при коммите изменений через EntityManager,
+ * но bulk JPQL и нативные запросы его обходят. Сервисы явно регистрируют
+ * измененные сущности, и после завершения транзакции они вытесняются из кэша.
+ * Вытеснение выполняется и при откате - лишний промах кэша безопасен.
+ * Вытесненные ключи также рассылаются другим узлам кластера (ClusterCacheCoordinator).
+ */
+@ApplicationScoped
+public class EntityCacheInvalidator {
+    
+    private static final Logger logger = Logger.getLogger(EntityCacheInvalidator.class.getName());
+    
+    private static final Object PENDING_KEY = EntityCacheInvalidator.class.getName() + ".pending";
+    
+    /** Локальные кэши, которые нужно очищать вместе с кэшем EclipseLink */
+    private final List<Consumer<Set<CacheKey>>> listeners = new CopyOnWriteArrayList<>();
+    
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    
+    @Inject
+    private EntityManagerService entityManagerService;
+    
+    @Inject
+    private ClusterCacheCoordinator clusterCacheCoordinator;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    /**
+     * Подписать локальный кэш на инвалидации
+     */
+    public void addListener(Consumer<Set<CacheKey>> listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Вытеснить измененную сущность из кэша после завершения текущей транзакции
+     * (или сразу, если транзакции нет)
+     */
+    public void invalidateAfterCommit(Class<?> entityClass, Object id) {
+        invalidateAfterCommit(entityClass, id, CacheKey.Change.UPDATED);
+    }
+    
+    /**
+     * Вытеснить сущность из кэша после завершения текущей транзакции
+     * Вид изменения позволяет локальным кэшам не сбрасывать ответы, в которые
+     * сущность не могла попасть (например, ответы квартир при создании дома).
+     */
+    public void invalidateAfterCommit(Class<?> entityClass, Object id, CacheKey.Change change) {
+        if (id == null) {
+            return;
+        }
+        
+        CacheKey key = new CacheKey(entityClass, id, change);
+        
+        if (!isTransactionActive()) {
+            evict(Set.of(key));
+            return;
+        }
+        
+        @SuppressWarnings("unchecked")
+        Set<CacheKey> pending = (Set<CacheKey>) transactionSynchronizationRegistry.getResource(PENDING_KEY);
+        if (pending == null) {
+            Set<CacheKey> keys = new LinkedHashSet<>();
+            transactionSynchronizationRegistry.putResource(PENDING_KEY, keys);
+            transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    evict(keys);
+                }
+            });
+            pending = keys;
+        }
+        pending.add(key);
+    }
+    
+    /**
+     * Вытеснить все сущности класса из кэша после завершения текущей транзакции
+     */
+    public void invalidateAllAfterCommit(Class<?> entityClass) {
+        invalidateAfterCommit(entityClass, CacheKey.ALL);
+    }
+    
+    /**
+     * Вытеснить набор сущностей из кэша на этом узле и на остальных узлах кластера
+     */
+    public void evict(Set<CacheKey> keys) {
+        evictLocal(keys);
+        clusterCacheCoordinator.publish(keys);
+    }
+    
+    /**
+     * Вытеснить набор сущностей из кэша только на этом узле
+     */
+    public void evictLocal(Set<CacheKey> keys) {
+        try {
+            for (Consumer<Set<CacheKey>> listener : listeners) {
+                listener.accept(keys);
+            }
+            jakarta.persistence.Cache cache = entityManagerService.getSharedCache();
+            for (CacheKey key : keys) {
+                if (key.id() == CacheKey.ALL) {
+                    cache.evict(key.entityClass());
+                } else {
+                    cache.evict(key.entityClass(), key.id());
+                }
+            }
+            metricsRegistry.add("entity_cache_invalidations_total", keys.size());
+            
+        } catch (Exception e) {
+            // Кэш ограничен по времени жизни (expiry), поэтому ошибка здесь не фатальна
+            metricsRegistry.increment("entity_cache_invalidation_failures_total");
+            logger.severe("EntityCacheInvalidator.evict() - ошибка вытеснения из кэша: " + e.getMessage());
+        }
+    }
+    
+    private boolean isTransactionActive() {
+        return transactionSynchronizationRegistry != null
+            && transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE;
+    }
+    
+    /**
+     * Ключ сущности в кэше и вид ее изменения
+     */
+    public record CacheKey(Class<?> entityClass, Object id, Change change) {
+        /** Маркер вытеснения всех сущностей класса */
+        public static final Object ALL = new Object();
+        
+        /**
+         * Вид изменения; если неизвестен - UPDATED (сбрасывает все зависимые ответы)
+         */
+        public enum Change {
+            CREATED,
+            UPDATED,
+            DELETED
+        }
+        
+        public CacheKey(Class<?> entityClass, Object id) {
+            this(entityClass, id, Change.UPDATED);
+        }
+        
+        /**
+         * Может ли изменение быть видно в ответах квартир, в которые встроены дом и координаты
+         * Новый дом еще не связан с квартирами. Новые координаты еще не привязаны, а удаляются
+         * только неиспользуемые (внешний ключ flats.coordinates_id, OrphanCoordinatesSweeper).
+         */
+        public boolean embeddedInFlats() {
+            if (entityClass == House.class) {
+                return change != Change.CREATED;
+            }
+            if (entityClass == Coordinates.class) {
+                return change == Change.UPDATED;
+            }
+            return false;
+        }
+    }
+}
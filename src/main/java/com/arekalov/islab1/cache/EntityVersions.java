@@ -0,0 +1,106 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.cache.EntityCacheInvalidator.CacheKey;
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Версии квартир и домов для ETag, без обращений к БД
+ * 
+ * Версии увеличиваются по событиям EntityCacheInvalidator (в том числе пришедшим
+ * от других узлов кластера). Версия отдельной сущности хранится в одном из
+ * фиксированного числа слотов по хэшу ID: память не растет с числом сущностей,
+ * а коллизия лишь заставляет клиента перечитать ответ. Эпоха узла входит
+ * в версию, поэтому после перезапуска или на другом узле ETag не совпадет.
+ */
+@ApplicationScoped
+public class EntityVersions {
+    
+    private static final int SLOTS = 4096;
+    
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    
+    private final AtomicLongArray flatSlots = new AtomicLongArray(SLOTS);
+    
+    private final AtomicLongArray houseSlots = new AtomicLongArray(SLOTS);
+    
+    /** Инвалидации всех квартир / всех домов */
+    private final AtomicLong allFlats = new AtomicLong();
+    
+    private final AtomicLong allHouses = new AtomicLong();
+    
+    /** Изменения домов и координат - они встроены в ответы квартир */
+    private final AtomicLong embedded = new AtomicLong();
+    
+    /** Глобальный счетчик изменений - версия страниц списков */
+    private final AtomicLong changes = new AtomicLong();
+    
+    @Inject
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
+    @PostConstruct
+    public void init() {
+        entityCacheInvalidator.addListener(this::onInvalidate);
+    }
+    
+    /**
+     * Версия ответа GET /flats/{id}
+     */
+    public String flat(Long id) {
+        return epoch + "." + flatSlots.get(slot(id)) + "." + allFlats.get() + "." + embedded.get();
+    }
+    
+    /**
+     * Версия ответа GET /houses/{id}
+     */
+    public String house(Long id) {
+        return epoch + "." + houseSlots.get(slot(id)) + "." + allHouses.get();
+    }
+    
+    /**
+     * Версия страниц списков: меняется при любом изменении квартир, домов или координат
+     */
+    public String lists() {
+        return epoch + "." + changes.get();
+    }
+    
+    private void onInvalidate(Set<CacheKey> keys) {
+        for (CacheKey key : keys) {
+            Class<?> entityClass = key.entityClass();
+            boolean all = key.id() == CacheKey.ALL;
+            
+            if (entityClass == Flat.class) {
+                if (all) {
+                    allFlats.incrementAndGet();
+                } else {
+                    flatSlots.incrementAndGet(slot(key.id()));
+                }
+            } else if (entityClass == House.class) {
+                if (all) {
+                    allHouses.incrementAndGet();
+                } else {
+                    houseSlots.incrementAndGet(slot(key.id()));
+                }
+                if (key.embeddedInFlats()) {
+                    embedded.incrementAndGet();
+                }
+            } else if (entityClass == Coordinates.class && key.embeddedInFlats()) {
+                embedded.incrementAndGet();
+            }
+        }
+        changes.incrementAndGet();
+    }
+    
+    private static int slot(Object id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (SLOTS - 1);
+    }
+}
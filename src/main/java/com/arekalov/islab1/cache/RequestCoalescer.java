@@ -0,0 +1,216 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+/**
+ * Объединение одинаковых одновременных запросов на чтение (single-flight)
+ * 
+ * Если запрос с тем же ключом уже выполняется, новый вызов не идет в БД,
+ * а дожидается результата текущего. Результаты не кэшируются: как только
+ * запрос завершился, следующий вызов снова выполнит его.
+ * 
+ * Присоединиться можно только к запросу, начатому после последней
+ * закоммиченной записи: каждая инвалидация из EntityCacheInvalidator
+ * (локальный коммит или сообщение от другого узла) сдвигает эпоху записей,
+ * и вызов, чья транзакция только что записала данные, выполнит свой запрос,
+ * а не получит результат, прочитанный до коммита.
+ * 
+ * Вызов внутри JTA-транзакции не объединяется ни в какую сторону: чужой запрос не видит
+ * его незафиксированных изменений, а его результат не должен достаться другим.
+ * 
+ * Результат общего запроса - detached-сущности, поэтому каждый
+ * присоединившийся вызов (и владелец, если кто-то присоединился)
+ * получает свою копию.
+ * 
+ * Объединение включается отдельно для каждой точки через system property
+ * islab1.coalescing.&lt;endpoint&gt;.enabled (по умолчанию включено).
+ */
+@ApplicationScoped
+public class RequestCoalescer {
+    
+    private static final Logger logger = Logger.getLogger(RequestCoalescer.class.getName());
+    
+    /** Заменяет null-ключ: ConcurrentHashMap не допускает null */
+    private static final Object NULL_KEY = new Object();
+    
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    
+    /** Номер последней закоммиченной записи, видимой этому узлу */
+    private final AtomicLong writeEpoch = new AtomicLong();
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @Inject
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    
+    @PostConstruct
+    public void init() {
+        entityCacheInvalidator.addListener(keys -> writeEpoch.incrementAndGet());
+    }
+    
+    /**
+     * Выполнить запрос или присоединиться к уже выполняющемуся с тем же ключом
+     * 
+     * Только для неизменяемых результатов (например, количества): все вызовы
+     * получают один и тот же объект.
+     *
+     * @param endpoint имя точки (например, flats.page)
+     * @param key      параметры запроса; должны корректно реализовывать equals/hashCode
+     * @param loader   выполняет запрос
+     */
+    public <V> V execute(String endpoint, Object key, Supplier<V> loader) {
+        return execute(endpoint, key, loader, UnaryOperator.identity());
+    }
+    
+    /**
+     * Выполнить запрос или присоединиться к уже выполняющемуся с тем же ключом
+     *
+     * @param endpoint имя точки (например, flats.page)
+     * @param key      параметры запроса; должны корректно реализовывать equals/hashCode
+     * @param loader   выполняет запрос
+     * @param copy     копирует результат для вызова, который делит его с другими
+     */
+    public <V> V execute(String endpoint, Object key, Supplier<V> loader, UnaryOperator<V> copy) {
+        Endpoint state = endpoints.computeIfAbsent(endpoint, this::createEndpoint);
+        state.calls.increment();
+        
+        if (!state.enabled) {
+            state.executions.increment();
+            return loader.get();
+        }
+        
+        if (isInTransaction()) {
+            state.executions.increment();
+            state.bypassed.increment();
+            return loader.get();
+        }
+        
+        Object mapKey = key != null ? key : NULL_KEY;
+        Flight own = new Flight(writeEpoch.get());
+        Flight inFlight = state.inFlight.compute(mapKey, (k, current) -> {
+            // Запрос, начатый до последней записи, мог ее не увидеть - его заменяет новый
+            if (current != null && current.epoch == own.epoch) {
+                current.joiners.incrementAndGet();
+                return current;
+            }
+            return own;
+        });
+        
+        if (inFlight != own) {
+            state.joined.increment();
+            return copy.apply(await(inFlight));
+        }
+        
+        state.executions.increment();
+        V result;
+        try {
+            result = loader.get();
+            own.result.complete(result);
+        } catch (RuntimeException | Error e) {
+            own.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            state.inFlight.remove(mapKey, own);
+        }
+        // После удаления из map число присоединившихся больше не меняется
+        return own.joiners.get() == 0 ? result : copy.apply(result);
+    }
+    
+    private boolean isInTransaction() {
+        return transactionSynchronizationRegistry != null
+            && transactionSynchronizationRegistry.getTransactionKey() != null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <V> V await(Flight flight) {
+        try {
+            return (V) flight.result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+    
+    private Endpoint createEndpoint(String name) {
+        boolean enabled = Boolean.parseBoolean(
+            System.getProperty("islab1.coalescing." + name + ".enabled", "true"));
+        Endpoint endpoint = new Endpoint(enabled);
+        
+        String prefix = "coalescing_" + name.replace('.', '_').replace('-', '_') + "_";
+        metricsRegistry.registerGauge(prefix + "calls_total", endpoint.calls::sum);
+        metricsRegistry.registerGauge(prefix + "executions_total", endpoint.executions::sum);
+        metricsRegistry.registerGauge(prefix + "joined_total", endpoint.joined::sum);
+        metricsRegistry.registerGauge(prefix + "bypassed_total", endpoint.bypassed::sum);
+        metricsRegistry.registerGauge(prefix + "ratio_percent", endpoint::ratioPercent);
+        metricsRegistry.registerGauge(prefix + "in_flight", endpoint.inFlight::size);
+        
+        logger.info("RequestCoalescer - точка " + name + ", enabled=" + enabled);
+        return endpoint;
+    }
+    
+    /**
+     * Выполняющийся запрос
+     */
+    private static final class Flight {
+        /** Эпоха записей на момент начала запроса */
+        private final long epoch;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final AtomicInteger joiners = new AtomicInteger();
+        
+        private Flight(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+    
+    /**
+     * Состояние одной точки
+     */
+    private static final class Endpoint {
+        private final boolean enabled;
+        private final Map<Object, Flight> inFlight = new ConcurrentHashMap<>();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder joined = new LongAdder();
+        
+        /** Вызовы внутри транзакции, выполненные без объединения */
+        private final LongAdder bypassed = new LongAdder();
+        
+        private Endpoint(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        /**
+         * Доля вызовов, обслуженных чужим запросом, в процентах
+         */
+        private long ratioPercent() {
+            long total = calls.sum();
+            return total == 0 ? 0 : joined.sum() * 100 / total;
+        }
+    }
+}
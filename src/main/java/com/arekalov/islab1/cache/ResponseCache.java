@@ -0,0 +1,170 @@
+package com.arekalov.islab1.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный по размеру и времени жизни кэш сериализованных ответов
+ * 
+ * Вытеснение по размеру - LRU, по времени - при обращении. Отсутствующие объекты
+ * (null от загрузчика) кэшируются отдельно с коротким TTL (negative caching).
+ * Загрузка выполняется вне блокировки; если во время загрузки кэш был
+ * инвалидирован, результат не сохраняется, чтобы не вернуть устаревшие данные.
+ */
+public class ResponseCache<K> {
+    
+    private static final byte[] NOT_FOUND = new byte[0];
+    
+    private final int maxSize;
+    
+    private final long ttlNanos;
+    
+    private final long negativeTtlNanos;
+    
+    private final LinkedHashMap<K, Entry> entries;
+    
+    /** Увеличивается при каждой инвалидации */
+    private final AtomicLong generation = new AtomicLong();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTimeNanos = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expiredEvictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    
+    public ResponseCache(int maxSize, long ttlMillis, long negativeTtlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.negativeTtlNanos = negativeTtlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+    
+    /**
+     * Получить ответ из кэша или загрузить его
+     *
+     * @param loader возвращает сериализованный ответ или null, если объект не найден
+     * @return сериализованный ответ или null, если объект не найден
+     */
+    public byte[] get(K key, Supplier<byte[]> loader) {
+        long now = System.nanoTime();
+        long startGeneration;
+        
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - now > 0) {
+                    hits.increment();
+                    return entry.body == NOT_FOUND ? null : entry.body;
+                }
+                entries.remove(key);
+                expiredEvictions.increment();
+            }
+            startGeneration = generation.get();
+        }
+        
+        misses.increment();
+        byte[] body = loader.get();
+        long loadedAt = System.nanoTime();
+        loads.increment();
+        loadTimeNanos.add(loadedAt - now);
+        
+        synchronized (entries) {
+            if (generation.get() == startGeneration) {
+                long ttl = body != null ? ttlNanos : negativeTtlNanos;
+                entries.put(key, new Entry(body != null ? body : NOT_FOUND, loadedAt + ttl));
+                evictOverflow();
+            }
+        }
+        return body;
+    }
+    
+    /**
+     * Удалить ключ из кэша
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(key);
+        }
+        invalidations.increment();
+    }
+    
+    /**
+     * Очистить кэш целиком
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+        invalidations.increment();
+    }
+    
+    private void evictOverflow() {
+        Iterator<Map.Entry<K, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            sizeEvictions.increment();
+        }
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    public long hits() {
+        return hits.sum();
+    }
+    
+    public long misses() {
+        return misses.sum();
+    }
+    
+    public long loads() {
+        return loads.sum();
+    }
+    
+    public long loadTimeMillis() {
+        return loadTimeNanos.sum() / 1_000_000L;
+    }
+    
+    public long sizeEvictions() {
+        return sizeEvictions.sum();
+    }
+    
+    public long expiredEvictions() {
+        return expiredEvictions.sum();
+    }
+    
+    public long invalidations() {
+        return invalidations.sum();
+    }
+    
+    /**
+     * Доля попаданий в процентах
+     */
+    public long hitRatePercent() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : hitCount * 100 / total;
+    }
+    
+    private static final class Entry {
+        private final byte[] body;
+        private final long expiresAt;
+        
+        private Entry(byte[] body, long expiresAt) {
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.arekalov.islab1.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Поток ответа, который начинает сжатие только после порога
+ * 
+ * Первые threshold байт накапливаются в буфере. Если ответ закончился раньше,
+ * он уходит без сжатия. Если порог превышен, вызывается onCompress (выставить
+ * Content-Encoding до отправки заголовков) и дальше данные сжимаются по мере записи.
+ * flush() до порога отправляет накопленное без сжатия и переключает поток
+ * в прозрачный режим, чтобы не задерживать потоковые ответы; flush() после
+ * начала сжатия делает SYNC_FLUSH, и клиент сразу получает записанные данные.
+ * Deflater берется из DeflaterPool и возвращается в release().
+ */
+class CompressingOutputStream extends OutputStream {
+    
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    
+    private enum State { BUFFERING, IDENTITY, COMPRESSING, FINISHED }
+    
+    private final OutputStream out;
+    
+    private final ContentCoding coding;
+    
+    private final DeflaterPool pool;
+    
+    private final Runnable onCompress;
+    
+    private byte[] buffer;
+    
+    private int count;
+    
+    private State state = State.BUFFERING;
+    
+    private boolean compressed;
+    
+    private Deflater deflater;
+    
+    private CRC32 crc;
+    
+    private byte[] chunk;
+    
+    private long bytesIn;
+    
+    private long bytesOut;
+    
+    CompressingOutputStream(OutputStream out, ContentCoding coding, int threshold, DeflaterPool pool, Runnable onCompress) {
+        this.out = out;
+        this.coding = coding;
+        this.pool = pool;
+        this.onCompress = onCompress;
+        this.buffer = new byte[Math.max(threshold, 1)];
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        bytesIn += len;
+        switch (state) {
+            case BUFFERING -> {
+                if (count + len <= buffer.length) {
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                } else {
+                    startCompression();
+                    deflate(buffer, 0, count);
+                    buffer = null;
+                    deflate(b, off, len);
+                }
+            }
+            case IDENTITY -> {
+                out.write(b, off, len);
+                bytesOut += len;
+            }
+            case COMPRESSING -> deflate(b, off, len);
+            case FINISHED -> throw new IOException("Поток ответа уже завершен");
+        }
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        if (state == State.BUFFERING) {
+            writeBuffered();
+            state = State.IDENTITY;
+        } else if (state == State.COMPRESSING) {
+            int written;
+            do {
+                written = drain(Deflater.SYNC_FLUSH);
+            } while (written == chunk.length);
+        }
+        out.flush();
+    }
+    
+    /**
+     * Дописать остаток ответа: несжатый буфер или хвост DEFLATE и трейлер gzip
+     */
+    void finish() throws IOException {
+        if (state == State.BUFFERING) {
+            writeBuffered();
+        } else if (state == State.COMPRESSING) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(Deflater.NO_FLUSH);
+            }
+            if (coding == ContentCoding.GZIP) {
+                writeGzipTrailer();
+            }
+        }
+        state = State.FINISHED;
+        release();
+    }
+    
+    /**
+     * Вернуть Deflater в пул (в том числе после ошибки записи)
+     */
+    void release() {
+        if (deflater != null) {
+            pool.release(deflater, coding == ContentCoding.GZIP);
+            deflater = null;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (state != State.FINISHED) {
+            finish();
+        }
+        out.close();
+    }
+    
+    boolean isCompressed() {
+        return compressed;
+    }
+    
+    long getBytesIn() {
+        return bytesIn;
+    }
+    
+    long getBytesOut() {
+        return bytesOut;
+    }
+    
+    private void startCompression() throws IOException {
+        onCompress.run();
+        compressed = true;
+        boolean gzip = coding == ContentCoding.GZIP;
+        deflater = pool.acquire(gzip);
+        chunk = new byte[8192];
+        if (gzip) {
+            crc = new CRC32();
+            out.write(GZIP_HEADER);
+            bytesOut += GZIP_HEADER.length;
+        }
+        state = State.COMPRESSING;
+    }
+    
+    private void deflate(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            drain(Deflater.NO_FLUSH);
+        }
+    }
+    
+    private int drain(int flush) throws IOException {
+        int written = deflater.deflate(chunk, 0, chunk.length, flush);
+        if (written > 0) {
+            out.write(chunk, 0, written);
+            bytesOut += written;
+        }
+        return written;
+    }
+    
+    private void writeBuffered() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            bytesOut += count;
+            count = 0;
+        }
+    }
+    
+    private void writeGzipTrailer() throws IOException {
+        byte[] trailer = new byte[8];
+        writeIntLE(trailer, 0, (int) crc.getValue());
+        writeIntLE(trailer, 4, (int) deflater.getBytesRead());
+        out.write(trailer);
+        bytesOut += trailer.length;
+    }
+    
+    private static void writeIntLE(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >> 8);
+        target[offset + 2] = (byte) (value >> 16);
+        target[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,98 @@
+package com.arekalov.islab1.compression;
+
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Сжатие ответов REST API (gzip или deflate по Accept-Encoding)
+ * 
+ * Ответы меньше порога уходят без сжатия, решение принимается по мере записи
+ * (см. CompressingOutputStream), поэтому размер ответа заранее знать не нужно.
+ * Server-Sent Events и ответы с уже заданным Content-Encoding не сжимаются.
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements WriterInterceptor {
+    
+    private static final boolean ENABLED = Boolean.parseBoolean(
+        System.getProperty("islab1.compression.enabled", "true"));
+    
+    private static final int THRESHOLD_BYTES = Integer.getInteger("islab1.compression.threshold-bytes", 1024);
+    
+    private static final int LEVEL = Integer.getInteger("islab1.compression.level", 6);
+    
+    private static final int POOL_SIZE = Integer.getInteger("islab1.compression.pool-size", 32);
+    
+    private final DeflaterPool deflaterPool = new DeflaterPool(LEVEL, POOL_SIZE);
+    
+    @Context
+    private HttpHeaders httpHeaders;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @PostConstruct
+    public void init() {
+        metricsRegistry.registerGauge("http_compression_deflater_pool_size", deflaterPool::size);
+    }
+    
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (!ENABLED || !isCompressible(context.getMediaType(), headers)) {
+            context.proceed();
+            return;
+        }
+        
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        ContentCoding coding = ContentCoding.negotiate(httpHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (coding == null) {
+            context.proceed();
+            return;
+        }
+        
+        OutputStream original = context.getOutputStream();
+        CompressingOutputStream stream = new CompressingOutputStream(original, coding, THRESHOLD_BYTES, deflaterPool, () -> {
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, coding.token());
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            // Сжатое представление - другие байты, строгий ETag должен отличаться (см. ConditionalGet)
+            if (headers.getFirst(HttpHeaders.ETAG) instanceof EntityTag tag) {
+                headers.putSingle(HttpHeaders.ETAG, new EntityTag(tag.getValue() + "-" + coding.token(), tag.isWeak()));
+            }
+        });
+        context.setOutputStream(stream);
+        try {
+            context.proceed();
+            stream.finish();
+        } finally {
+            stream.release();
+        }
+        
+        if (stream.isCompressed()) {
+            metricsRegistry.increment("http_responses_compressed_total");
+            metricsRegistry.add("http_compression_bytes_in_total", stream.getBytesIn());
+            metricsRegistry.add("http_compression_bytes_out_total", stream.getBytesOut());
+        }
+    }
+    
+    private static boolean isCompressible(MediaType mediaType, MultivaluedMap<String, Object> headers) {
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return false;
+        }
+        return mediaType == null || !MediaType.SERVER_SENT_EVENTS_TYPE.isCompatible(mediaType);
+    }
+}
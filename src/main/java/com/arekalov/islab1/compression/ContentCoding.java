@@ -0,0 +1,85 @@
+package com.arekalov.islab1.compression;
+
+/**
+ * Поддерживаемые значения Content-Encoding
+ */
+public enum ContentCoding {
+    GZIP("gzip"),
+    DEFLATE("deflate");
+    
+    private final String token;
+    
+    ContentCoding(String token) {
+        this.token = token;
+    }
+    
+    public String token() {
+        return token;
+    }
+    
+    /**
+     * Выбрать кодирование по заголовку Accept-Encoding: gzip предпочтительнее deflate,
+     * значения с q=0 запрещают кодирование
+     *
+     * @return кодирование или null, если клиент не принимает ни gzip, ни deflate
+     */
+    public static ContentCoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            float q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Float.parseFloat(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzip = q;
+                case "deflate" -> deflate = q;
+                case "*" -> any = q;
+                default -> {
+                }
+            }
+        }
+        
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        if (deflate > 0) {
+            return DEFLATE;
+        }
+        return null;
+    }
+    
+    /**
+     * Найти кодирование по значению Content-Encoding
+     *
+     * @return кодирование или null, если оно не поддерживается
+     */
+    public static ContentCoding of(String contentEncoding) {
+        String value = contentEncoding.trim().toLowerCase();
+        return switch (value) {
+            case "gzip", "x-gzip" -> GZIP;
+            case "deflate" -> DEFLATE;
+            default -> null;
+        };
+    }
+}
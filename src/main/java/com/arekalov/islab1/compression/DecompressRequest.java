@@ -0,0 +1,17 @@
+package com.arekalov.islab1.compression;
+
+import jakarta.ws.rs.NameBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод принимает тело запроса с Content-Encoding: gzip или deflate (см. RequestDecompressionInterceptor)
+ */
+@NameBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DecompressRequest {
+}
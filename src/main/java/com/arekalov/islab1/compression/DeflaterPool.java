@@ -0,0 +1,66 @@
+package com.arekalov.islab1.compression;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Пул Deflater для сжатия ответов
+ * 
+ * Deflater держит нативный буфер (~256 КБ для уровня 6), поэтому создавать его
+ * на каждый ответ дорого. Экземпляры nowrap (сырой DEFLATE для gzip) и zlib
+ * (Content-Encoding: deflate) хранятся раздельно. Лишние экземпляры сверх
+ * размера пула освобождаются через end().
+ */
+public class DeflaterPool {
+    
+    private final int level;
+    
+    private final int maxSize;
+    
+    private final Queue<Deflater> raw = new ConcurrentLinkedQueue<>();
+    
+    private final Queue<Deflater> zlib = new ConcurrentLinkedQueue<>();
+    
+    private final AtomicInteger rawSize = new AtomicInteger();
+    
+    private final AtomicInteger zlibSize = new AtomicInteger();
+    
+    public DeflaterPool(int level, int maxSize) {
+        this.level = level;
+        this.maxSize = maxSize;
+    }
+    
+    /**
+     * Взять Deflater из пула или создать новый
+     *
+     * @param nowrap true - без zlib-заголовка (для gzip)
+     */
+    public Deflater acquire(boolean nowrap) {
+        Deflater deflater = (nowrap ? raw : zlib).poll();
+        if (deflater == null) {
+            return new Deflater(level, nowrap);
+        }
+        (nowrap ? rawSize : zlibSize).decrementAndGet();
+        return deflater;
+    }
+    
+    /**
+     * Вернуть Deflater в пул
+     */
+    public void release(Deflater deflater, boolean nowrap) {
+        AtomicInteger size = nowrap ? rawSize : zlibSize;
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        (nowrap ? raw : zlib).offer(deflater);
+    }
+    
+    public int size() {
+        return rawSize.get() + zlibSize.get();
+    }
+}
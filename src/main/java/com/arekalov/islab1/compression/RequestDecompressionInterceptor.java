@@ -0,0 +1,102 @@
+package com.arekalov.islab1.compression;
+
+import com.arekalov.islab1.dto.response.ErrorResponse;
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.ReaderInterceptor;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Распаковка тела запроса с Content-Encoding: gzip или deflate
+ * 
+ * Применяется только к методам с @DecompressRequest. Размер распакованного
+ * тела ограничен, чтобы маленький архив не раздулся в памяти до гигабайт.
+ */
+@Provider
+@DecompressRequest
+@Priority(Priorities.ENTITY_CODER)
+public class RequestDecompressionInterceptor implements ReaderInterceptor {
+    
+    private static final long MAX_REQUEST_BYTES = Long.getLong("islab1.compression.max-request-bytes", 64L * 1024 * 1024);
+    
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        String encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null || encoding.isBlank() || "identity".equalsIgnoreCase(encoding.trim())) {
+            return context.proceed();
+        }
+        
+        ContentCoding coding = ContentCoding.of(encoding);
+        if (coding == null) {
+            throw error(Response.Status.UNSUPPORTED_MEDIA_TYPE, "Content-Encoding " + encoding + " не поддерживается");
+        }
+        
+        InputStream compressed = context.getInputStream();
+        InputStream decompressed = coding == ContentCoding.GZIP
+            ? new GZIPInputStream(compressed, 8192)
+            : new InflaterInputStream(compressed);
+        context.setInputStream(new LimitedInputStream(decompressed, MAX_REQUEST_BYTES));
+        context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        return context.proceed();
+    }
+    
+    private static WebApplicationException error(Response.Status status, String message) {
+        return new WebApplicationException(message, Response.status(status)
+            .type(MediaType.APPLICATION_JSON)
+            .entity(new ErrorResponse(message))
+            .build());
+    }
+    
+    /**
+     * Поток, который прерывает чтение после limit байт
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        
+        private final long limit;
+        
+        private long read;
+        
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+        
+        private void count(int n) {
+            read += n;
+            if (read > limit) {
+                throw error(Response.Status.REQUEST_ENTITY_TOO_LARGE,
+                    "Распакованное тело запроса больше " + limit + " байт");
+            }
+        }
+    }
+}
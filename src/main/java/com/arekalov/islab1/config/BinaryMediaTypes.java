@@ -0,0 +1,28 @@
+package com.arekalov.islab1.config;
+
+import jakarta.ws.rs.core.MediaType;
+
+/**
+ * Бинарные форматы ответов REST API (см. BinaryMessageBodyWriter)
+ */
+public final class BinaryMediaTypes {
+    
+    public static final String SMILE = "application/x-jackson-smile";
+    
+    public static final String CBOR = "application/cbor";
+    
+    /**
+     * Значения для @Produces контроллеров: qs ниже, чем у JSON, поэтому
+     * без явного Accept или с маской клиент по-прежнему получает JSON
+     */
+    public static final String SMILE_QS = SMILE + ";qs=0.9";
+    
+    public static final String CBOR_QS = CBOR + ";qs=0.9";
+    
+    public static final MediaType SMILE_TYPE = MediaType.valueOf(SMILE);
+    
+    public static final MediaType CBOR_TYPE = MediaType.valueOf(CBOR);
+    
+    private BinaryMediaTypes() {
+    }
+}
@@ -0,0 +1,73 @@
+package com.arekalov.islab1.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Запись ответов в Smile и CBOR по заголовку Accept
+ * 
+ * Имена полей в Smile передаются один раз и дальше заменяются ссылками, поэтому
+ * большие страницы квартир заметно короче JSON и быстрее разбираются.
+ * Уже сериализованный JSON (byte[] из DetailResponseCache) перекодируется
+ * потоково, токен за токеном, без построения DTO.
+ */
+@Provider
+@Produces({BinaryMediaTypes.SMILE, BinaryMediaTypes.CBOR})
+public class BinaryMessageBodyWriter implements MessageBodyWriter<Object> {
+    
+    @Inject
+    private ObjectMapperProducer objectMapperProducer;
+    
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return mapperFor(mediaType) != null;
+    }
+    
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException {
+        ObjectMapper mapper = mapperFor(mediaType);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(entityStream)) {
+            // Поток ответа закрывает контейнер
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            
+            if (entity instanceof byte[] json) {
+                try (JsonParser parser = objectMapperProducer.getObjectMapper().getFactory().createParser(json)) {
+                    parser.nextToken();
+                    generator.copyCurrentStructure(parser);
+                }
+            } else {
+                mapper.writeValue(generator, entity);
+            }
+        }
+    }
+    
+    private ObjectMapper mapperFor(MediaType mediaType) {
+        if (matches(BinaryMediaTypes.SMILE_TYPE, mediaType)) {
+            return objectMapperProducer.getSmileMapper();
+        }
+        if (matches(BinaryMediaTypes.CBOR_TYPE, mediaType)) {
+            return objectMapperProducer.getCborMapper();
+        }
+        return null;
+    }
+    
+    private static boolean matches(MediaType expected, MediaType mediaType) {
+        return mediaType != null
+            && expected.getType().equalsIgnoreCase(mediaType.getType())
+            && expected.getSubtype().equalsIgnoreCase(mediaType.getSubtype());
+    }
+}
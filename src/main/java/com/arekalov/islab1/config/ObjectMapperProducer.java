@@ -3,30 +3,98 @@ package com.arekalov.islab1.config;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 
 @ApplicationScoped
 public class ObjectMapperProducer {
     
+    /**
+     * Прежний режим: все числа без типа читаются как BigInteger/BigDecimal
+     * По умолчанию выключен - диапазоны проверяет RangeCheckedNumbersModule.
+     */
+    private static final boolean BIG_NUMBERS = Boolean.parseBoolean(
+        System.getProperty("islab1.json.big-numbers", "false"));
+    
+    /**
+     * Blackbird: доступ к свойствам DTO через сгенерированные лямбды (LambdaMetafactory) вместо рефлексии
+     */
+    private static final boolean BLACKBIRD = Boolean.parseBoolean(
+        System.getProperty("islab1.json.blackbird", "false"));
+    
     private final ObjectMapper objectMapper;
     
+    private final ObjectMapper smileMapper;
+    
+    private final ObjectMapper cborMapper;
+    
     public ObjectMapperProducer() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.objectMapper = create(BIG_NUMBERS, BLACKBIRD);
+        this.smileMapper = configure(new ObjectMapper(new SmileFactory()), BIG_NUMBERS, BLACKBIRD);
+        this.cborMapper = configure(new ObjectMapper(new CBORFactory()), BIG_NUMBERS, BLACKBIRD);
+    }
+    
+    /**
+     * Создать ObjectMapper с настройками приложения и значением islab1.json.blackbird
+     */
+    public static ObjectMapper create(boolean bigNumbers) {
+        return create(bigNumbers, BLACKBIRD);
+    }
+    
+    /**
+     * Создать ObjectMapper с настройками приложения
+     *
+     * @param bigNumbers читать числа как BigInteger/BigDecimal (медленнее, прежнее поведение)
+     * @param blackbird зарегистрировать BlackbirdModule
+     */
+    public static ObjectMapper create(boolean bigNumbers, boolean blackbird) {
+        return configure(new ObjectMapper(), bigNumbers, blackbird);
+    }
+    
+    /**
+     * Применить настройки приложения к ObjectMapper любого формата (JSON, Smile, CBOR)
+     */
+    private static ObjectMapper configure(ObjectMapper objectMapper, boolean bigNumbers, boolean blackbird) {
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         
         // Обработка пустых строк как null для примитивных типов
-        this.objectMapper.enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT);
+        objectMapper.enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT);
         
         // Более строгая обработка чисел
-        this.objectMapper.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
-        this.objectMapper.enable(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS);
+        if (bigNumbers) {
+            objectMapper.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+            objectMapper.enable(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS);
+        } else {
+            objectMapper.registerModule(new RangeCheckedNumbersModule());
+        }
+        
+        if (blackbird) {
+            objectMapper.registerModule(new BlackbirdModule());
+        }
+        return objectMapper;
     }
     
     @Produces
     public ObjectMapper getObjectMapper() {
         return objectMapper;
     }
+    
+    /**
+     * ObjectMapper для application/x-jackson-smile
+     */
+    public ObjectMapper getSmileMapper() {
+        return smileMapper;
+    }
+    
+    /**
+     * ObjectMapper для application/cbor
+     */
+    public ObjectMapper getCborMapper() {
+        return cborMapper;
+    }
 }
@@ -0,0 +1,104 @@
+package com.arekalov.islab1.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.NumberDeserializers;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * Десериализаторы Integer/Long с явной проверкой диапазона
+ * 
+ * Заменяют глобальный режим USE_BIG_INTEGER_FOR_INTS/USE_BIG_DECIMAL_FOR_FLOATS: целые читаются
+ * из парсера напрямую, без BigInteger, а значение вне диапазона поля (в том числе дробное
+ * или бесконечное) отклоняется с InvalidFormatException. Дробные значения в диапазоне
+ * обрезаются, как и раньше.
+ */
+public class RangeCheckedNumbersModule extends SimpleModule {
+    
+    public RangeCheckedNumbersModule() {
+        super("RangeCheckedNumbers");
+        addDeserializer(Integer.class, new RangeCheckedIntegerDeserializer(Integer.class, null));
+        addDeserializer(Integer.TYPE, new RangeCheckedIntegerDeserializer(Integer.TYPE, 0));
+        addDeserializer(Long.class, new RangeCheckedLongDeserializer(Long.class, null));
+        addDeserializer(Long.TYPE, new RangeCheckedLongDeserializer(Long.TYPE, 0L));
+    }
+    
+    static final class RangeCheckedIntegerDeserializer extends NumberDeserializers.IntegerDeserializer {
+        
+        RangeCheckedIntegerDeserializer(Class<Integer> type, Integer nullValue) {
+            super(type, nullValue);
+        }
+        
+        @Override
+        public Integer deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+                if (p.getNumberType() == JsonParser.NumberType.INT) {
+                    return p.getIntValue();
+                }
+                Number value = p.getNumberValue();
+                if (!fits(value, 31)) {
+                    throw outOfRange(p, value, _valueClass);
+                }
+                return value.intValue();
+            }
+            if (p.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+                double value = p.getDoubleValue();
+                if (!(value > Integer.MIN_VALUE - 1.0 && value < Integer.MAX_VALUE + 1.0)) {
+                    throw outOfRange(p, p.getNumberValue(), _valueClass);
+                }
+            }
+            return super.deserialize(p, ctxt);
+        }
+    }
+    
+    static final class RangeCheckedLongDeserializer extends NumberDeserializers.LongDeserializer {
+        
+        RangeCheckedLongDeserializer(Class<Long> type, Long nullValue) {
+            super(type, nullValue);
+        }
+        
+        @Override
+        public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+                JsonParser.NumberType type = p.getNumberType();
+                if (type == JsonParser.NumberType.INT || type == JsonParser.NumberType.LONG) {
+                    return p.getLongValue();
+                }
+                Number value = p.getNumberValue();
+                if (!fits(value, 63)) {
+                    throw outOfRange(p, value, _valueClass);
+                }
+                return value.longValue();
+            }
+            if (p.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+                double value = p.getDoubleValue();
+                // 2^63 точно представимо в double, Long.MAX_VALUE - нет
+                if (!(value >= -0x1p63 && value < 0x1p63)) {
+                    throw outOfRange(p, p.getNumberValue(), _valueClass);
+                }
+            }
+            return super.deserialize(p, ctxt);
+        }
+    }
+    
+    /**
+     * Помещается ли целое в знаковый тип с заданным числом значащих бит
+     */
+    private static boolean fits(Number value, int bits) {
+        if (value instanceof BigInteger big) {
+            return big.bitLength() <= bits;
+        }
+        long longValue = value.longValue();
+        return bits >= 63 || (longValue >= -(1L << bits) && longValue < (1L << bits));
+    }
+    
+    private static InvalidFormatException outOfRange(JsonParser p, Number value, Class<?> type) {
+        return InvalidFormatException.from(p,
+            "Значение " + value + " вне диапазона " + type.getSimpleName(), value, type);
+    }
+}
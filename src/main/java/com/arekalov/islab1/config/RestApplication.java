@@ -1,11 +1,19 @@
 package com.arekalov.islab1.config;
 
+import com.arekalov.islab1.compression.CompressionInterceptor;
+import com.arekalov.islab1.compression.RequestDecompressionInterceptor;
+import com.arekalov.islab1.controller.EventStreamController;
 import com.arekalov.islab1.controller.FlatController;
 import com.arekalov.islab1.controller.HouseController;
 import com.arekalov.islab1.controller.ImportController;
+import com.arekalov.islab1.controller.LoggingController;
+import com.arekalov.islab1.controller.MetricsController;
 import com.arekalov.islab1.exception.JsonParsingExceptionMapper;
 import com.arekalov.islab1.exception.ValidationExceptionMapper;
 import com.arekalov.islab1.exception.UniqueConstraintViolationExceptionMapper;
+import com.arekalov.islab1.logging.RequestLoggingFilter;
+import com.arekalov.islab1.metrics.HttpMetricsFilter;
+import com.arekalov.islab1.metrics.HttpMetricsInterceptor;
 import jakarta.ws.rs.ApplicationPath;
 import jakarta.ws.rs.core.Application;
 import java.util.Set;
@@ -23,9 +31,18 @@ public class RestApplication extends Application {
             FlatController.class,
             HouseController.class,
             ImportController.class,
+            MetricsController.class,
+            EventStreamController.class,
+            LoggingController.class,
             
             // Конфигурация
             JacksonConfig.class,
+            BinaryMessageBodyWriter.class,
+            RequestLoggingFilter.class,
+            HttpMetricsFilter.class,
+            HttpMetricsInterceptor.class,
+            CompressionInterceptor.class,
+            RequestDecompressionInterceptor.class,
             
             // Обработчики ошибок
             JsonParsingExceptionMapper.class,
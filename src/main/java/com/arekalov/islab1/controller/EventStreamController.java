@@ -0,0 +1,78 @@
+package com.arekalov.islab1.controller;
+
+import com.arekalov.islab1.sse.SseEventStream;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Поток изменений через Server-Sent Events
+ * GET /api/events?topics=FLAT,HOUSE
+ * 
+ * События: name = FLAT/HOUSE, id = seq, data = JSON как в WebSocket.
+ * После подключения приходит READY (или RESYNC, если пропущенные события не восстановить).
+ * Возобновление - заголовок Last-Event-ID (браузер присылает его сам) или параметр since.
+ */
+@Path("/events")
+public class EventStreamController {
+    
+    private static final Logger logger = Logger.getLogger(EventStreamController.class.getName());
+    
+    @Inject
+    private SseEventStream eventStream;
+    
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void stream(@Context SseEventSink sink,
+                       @Context Sse sse,
+                       @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
+                       @QueryParam("since") String since,
+                       @QueryParam("topics") String topics) {
+        Set<String> selected = new HashSet<>();
+        if (topics == null || topics.isBlank()) {
+            selected.addAll(SseEventStream.TOPICS);
+        } else {
+            for (String topic : topics.split(",")) {
+                String name = topic.trim().toUpperCase();
+                if (!SseEventStream.TOPICS.contains(name)) {
+                    logger.warning("EventStreamController.stream() - неизвестный топик: " + topic);
+                    sink.send(sse.newEventBuilder()
+                        .name("ERROR")
+                        .data("{\"message\":\"Неизвестный топик: " + name.replace("\"", "") + "\"}")
+                        .build());
+                    sink.close();
+                    return;
+                }
+                selected.add(name);
+            }
+        }
+        
+        eventStream.open(sink, sse, selected, parseSeq(lastEventId != null ? lastEventId : since));
+    }
+    
+    /**
+     * Некорректный номер - -1 (полная ресинхронизация)
+     */
+    private static Long parseSeq(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
@@ -1,29 +1,39 @@
 package com.arekalov.islab1.controller;
 
+import com.arekalov.islab1.cache.ConditionalGet;
+import com.arekalov.islab1.cache.DetailResponseCache;
+import com.arekalov.islab1.config.BinaryMediaTypes;
 import com.arekalov.islab1.dto.response.*;
 import com.arekalov.islab1.dto.request.CreateFlatRequest;
 import com.arekalov.islab1.dto.request.UpdateFlatRequest;
 import com.arekalov.islab1.dto.response.ErrorResponse;
 import com.arekalov.islab1.dto.response.PagedResponse;
+import com.arekalov.islab1.logging.Log;
 import com.arekalov.islab1.mapper.FlatMapper;
+import com.arekalov.islab1.repository.FlatField;
+import com.arekalov.islab1.repository.ProjectedField;
 import com.arekalov.islab1.service.FlatService;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import java.util.List;
-import java.util.logging.Logger;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * REST контроллер для работы с квартирами
  */
 @Path("/flats")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryMediaTypes.SMILE_QS, BinaryMediaTypes.CBOR_QS})
 @Consumes(MediaType.APPLICATION_JSON)
 public class FlatController {
     
-    private static final Logger logger = Logger.getLogger(FlatController.class.getName());
+    private static final Log log = Log.get(FlatController.class);
     
     @Inject
     private FlatService flatService;
@@ -31,29 +41,40 @@ public class FlatController {
     @Inject
     private FlatMapper flatMapper;
     
+    @Inject
+    private DetailResponseCache detailResponseCache;
+    
+    @Inject
+    private ConditionalGet conditionalGet;
+    
     /**
      * Получить список всех квартир с пагинацией
+     * ETag страницы - глобальный счетчик изменений, If-None-Match проверяется до запроса к БД
+     * fields=id,name,price - только перечисленные поля: из БД читаются только их колонки,
+     * координаты и дом присоединяются, только если запрошены
      */
     @GET
     public Response getFlats(@QueryParam("page") @DefaultValue("0") int page,
                             @QueryParam("size") @DefaultValue("10") int size,
-                            @QueryParam("sortBy") @DefaultValue("id") String sortBy) {
+                            @QueryParam("sortBy") @DefaultValue("id") String sortBy,
+                            @QueryParam("fields") String fields,
+                            @Context HttpHeaders headers) {
         try {
             // Расширенная валидация параметров пагинации
             if (page < 0) {
-                logger.warning("FlatController.getFlats() - Некорректный page: " + page);
+                log.warn("FlatController.getFlats() - Некорректный page: {}", page);
                 return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorResponse("Номер страницы не может быть отрицательным"))
                     .build();
             }
             if (size <= 0) {
-                logger.warning("FlatController.getFlats() - Некорректный size: " + size);
+                log.warn("FlatController.getFlats() - Некорректный size: {}", size);
                 return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorResponse("Размер страницы должен быть больше 0"))
                     .build();
             }
             if (size > 100) {
-                logger.warning("FlatController.getFlats() - Слишком большой size: " + size);
+                log.warn("FlatController.getFlats() - Слишком большой size: {}", size);
                 return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorResponse("Размер страницы не может быть больше 100"))
                     .build();
@@ -61,20 +82,45 @@ public class FlatController {
             
             // Валидация параметра сортировки
             if (!isValidSortBy(sortBy)) {
-                logger.warning("FlatController.getFlats() - Некорректный sortBy: " + sortBy);
+                log.warn("FlatController.getFlats() - Некорректный sortBy: {}", sortBy);
                 return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorResponse("Недопустимое поле для сортировки: " + sortBy + 
                         ". Доступные поля: id, name, price, area"))
                     .build();
             }
             
-            logger.info("FlatController.getFlats() - Запрос пагинации: page=" + page + ", size=" + size + ", sortBy=" + sortBy);
+            Set<FlatField> fieldSet;
+            try {
+                fieldSet = ProjectedField.parse(FlatField.class, fields);
+            } catch (IllegalArgumentException e) {
+                log.warn("FlatController.getFlats() - Некорректный fields: {}", fields);
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+            }
+            
+            log.debug("FlatController.getFlats() - Запрос пагинации: page={}, size={}, sortBy={}", page, size, sortBy);
+            
+            EntityTag tag = conditionalGet.listTag("flats",
+                page + "." + size + "." + sortBy + "." + ProjectedField.key(fieldSet), headers);
+            Response notModified = conditionalGet.notModified(tag, headers);
+            if (notModified != null) {
+                return notModified;
+            }
+            
+            if (fieldSet != null) {
+                List<Map<String, Object>> rows = flatService.getFlatsProjected(page, size, sortBy, fieldSet).stream()
+                    .map(row -> flatMapper.toSparseMap(row, fieldSet))
+                    .toList();
+                PagedResponse<Map<String, Object>> sparseResponse = new PagedResponse<>(rows, flatService.countFlats(), page, size);
+                return conditionalGet.withValidators(Response.ok(sparseResponse), tag).build();
+            }
             
             // Получаем данные с пагинацией
             List<com.arekalov.islab1.entity.Flat> flats = flatService.getAllFlats(page, size, sortBy);
             long total = flatService.countFlats();
             
-            logger.info("FlatController.getFlats() - Получено квартир: " + flats.size() + ", общее количество: " + total);
+            log.debug("FlatController.getFlats() - Получено квартир: {}, общее количество: {}", flats.size(), total);
             
             // Конвертируем в DTO
             List<FlatResponseDTO> flatDTOs = flats.stream()
@@ -84,9 +130,9 @@ public class FlatController {
             // Создаем пагинированный ответ
             PagedResponse<FlatResponseDTO> pagedResponse = new PagedResponse<>(flatDTOs, total, page, size);
             
-            return Response.ok(pagedResponse).build();
+            return conditionalGet.withValidators(Response.ok(pagedResponse), tag).build();
         } catch (Exception e) {
-            logger.severe("FlatController.getFlats() - Ошибка: " + e.getMessage());
+            log.error("FlatController.getFlats() - Ошибка: {}", e.getMessage());
             e.printStackTrace();
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                 .entity(new ErrorResponse("Ошибка получения списка квартир: " + e.getMessage()))
@@ -104,15 +150,47 @@ public class FlatController {
     
     /**
      * Получить квартиру по ID
+     * Ответ (в том числе 404) берется из кэша сериализованных ответов,
+     * при совпадении If-None-Match - 304 без обращения к кэшу и БД.
+     * С fields= ответ содержит только перечисленные поля и читается узким запросом мимо кэша
      */
     @GET
     @Path("/{id}")
-    public Response getFlatById(@PathParam("id") Long id) {
+    public Response getFlatById(@PathParam("id") Long id,
+                                @QueryParam("fields") String fields,
+                                @Context HttpHeaders headers) {
         try {
-            com.arekalov.islab1.entity.Flat flat = flatService.getFlatById(id);
-            if (flat != null) {
-                FlatResponseDTO flatDTO = convertToDTO(flat);
-                return Response.ok(flatDTO).build();
+            Set<FlatField> fieldSet;
+            try {
+                fieldSet = ProjectedField.parse(FlatField.class, fields);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+            }
+            
+            EntityTag tag = conditionalGet.flatTag(id, ProjectedField.key(fieldSet), headers);
+            Response notModified = conditionalGet.notModified(tag, headers);
+            if (notModified != null) {
+                return notModified;
+            }
+            
+            if (fieldSet != null) {
+                Object[] row = flatService.getFlatProjectedById(id, fieldSet);
+                if (row == null) {
+                    return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Квартира с ID " + id + " не найдена"))
+                        .build();
+                }
+                return conditionalGet.withValidators(Response.ok(flatMapper.toSparseMap(row, fieldSet)), tag).build();
+            }
+            
+            byte[] body = detailResponseCache.getFlat(id, () -> {
+                com.arekalov.islab1.entity.Flat flat = flatService.getFlatById(id);
+                return flat != null ? convertToDTO(flat) : null;
+            });
+            if (body != null) {
+                return conditionalGet.withValidators(Response.ok(body), tag).build();
             } else {
                 return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Квартира с ID " + id + " не найдена"))
@@ -220,7 +298,8 @@ public class FlatController {
      */
     @GET
     @Path("/search/by-name")
-    public Response findByNameContaining(@QueryParam("substring") String nameSubstring) {
+    public Response findByNameContaining(@QueryParam("substring") String nameSubstring,
+                                         @QueryParam("fields") String fields) {
         try {
             // Проверка входных данных
             if (nameSubstring == null || nameSubstring.trim().isEmpty()) {
@@ -244,12 +323,18 @@ public class FlatController {
                     .build();
             }
             
-            List<com.arekalov.islab1.entity.Flat> flats = flatService.findByNameContaining(trimmedSubstring);
-            List<FlatResponseDTO> flatDTOs = flats.stream()
-                .map(this::convertToDTO)
-                .toList();
+            Set<FlatField> fieldSet;
+            try {
+                fieldSet = ProjectedField.parse(FlatField.class, fields);
+            } catch (IllegalArgumentException e) {
+                log.warn("FlatController.findByNameContaining() - Некорректный fields: {}", fields);
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+            }
             
-            return Response.ok(flatDTOs).build();
+            List<com.arekalov.islab1.entity.Flat> flats = flatService.findByNameContaining(trimmedSubstring);
+            return listResponse(flats, fieldSet);
             
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -263,7 +348,8 @@ public class FlatController {
      */
     @GET
     @Path("/search/by-living-space-less-than/{maxSpace}")
-    public Response findByLivingSpaceLessThan(@PathParam("maxSpace") Long maxSpace) {
+    public Response findByLivingSpaceLessThan(@PathParam("maxSpace") Long maxSpace,
+                                              @QueryParam("fields") String fields) {
         try {
             if (maxSpace == null || maxSpace <= 0) {
                 return Response.status(Response.Status.BAD_REQUEST)
@@ -271,12 +357,18 @@ public class FlatController {
                     .build();
             }
             
-            List<com.arekalov.islab1.entity.Flat> flats = flatService.findByLivingSpaceLessThan(maxSpace);
-            List<FlatResponseDTO> flatDTOs = flats.stream()
-                .map(this::convertToDTO)
-                .toList();
+            Set<FlatField> fieldSet;
+            try {
+                fieldSet = ProjectedField.parse(FlatField.class, fields);
+            } catch (IllegalArgumentException e) {
+                log.warn("FlatController.findByLivingSpaceLessThan() - Некорректный fields: {}", fields);
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+            }
             
-            return Response.ok(flatDTOs).build();
+            List<com.arekalov.islab1.entity.Flat> flats = flatService.findByLivingSpaceLessThan(maxSpace);
+            return listResponse(flats, fieldSet);
             
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -290,11 +382,24 @@ public class FlatController {
      */
     @GET
     @Path("/search/cheapest-with-balcony")
-    public Response findCheapestWithBalcony() {
+    public Response findCheapestWithBalcony(@QueryParam("fields") String fields) {
         try {
+            Set<FlatField> fieldSet;
+            try {
+                fieldSet = ProjectedField.parse(FlatField.class, fields);
+            } catch (IllegalArgumentException e) {
+                log.warn("FlatController.findCheapestWithBalcony() - Некорректный fields: {}", fields);
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+            }
+            
             com.arekalov.islab1.entity.Flat flat = flatService.findCheapestWithBalcony();
             
             if (flat != null) {
+                if (fieldSet != null) {
+                    return Response.ok(flatMapper.toSparseMap(FlatField.row(flat, fieldSet), fieldSet)).build();
+                }
                 FlatResponseDTO flatDTO = convertToDTO(flat);
                 return Response.ok(flatDTO).build();
             } else {
@@ -315,14 +420,20 @@ public class FlatController {
      */
     @GET
     @Path("/sorted-by-metro-time")
-    public Response findAllSortedByMetroTime() {
+    public Response findAllSortedByMetroTime(@QueryParam("fields") String fields) {
         try {
-            List<com.arekalov.islab1.entity.Flat> flats = flatService.findAllSortedByMetroTime();
-            List<FlatResponseDTO> flatDTOs = flats.stream()
-                .map(this::convertToDTO)
-                .toList();
+            Set<FlatField> fieldSet;
+            try {
+                fieldSet = ProjectedField.parse(FlatField.class, fields);
+            } catch (IllegalArgumentException e) {
+                log.warn("FlatController.findAllSortedByMetroTime() - Некорректный fields: {}", fields);
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+            }
             
-            return Response.ok(flatDTOs).build();
+            List<com.arekalov.islab1.entity.Flat> flats = flatService.findAllSortedByMetroTime();
+            return listResponse(flats, fieldSet);
             
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -331,6 +442,26 @@ public class FlatController {
         }
     }
     
+    /**
+     * Ответ поисковой выборки: полные DTO или, с fields=, только перечисленные поля
+     * 
+     * Выборки читают квартиры целиком (запросы объединяет RequestCoalescer),
+     * fields сокращает только тело ответа.
+     */
+    private Response listResponse(List<com.arekalov.islab1.entity.Flat> flats, Set<FlatField> fieldSet) {
+        if (fieldSet != null) {
+            List<Map<String, Object>> rows = flats.stream()
+                .map(flat -> flatMapper.toSparseMap(FlatField.row(flat, fieldSet), fieldSet))
+                .toList();
+            return Response.ok(rows).build();
+        }
+        
+        List<FlatResponseDTO> flatDTOs = flats.stream()
+            .map(this::convertToDTO)
+            .toList();
+        return Response.ok(flatDTOs).build();
+    }
+    
     /**
      * Конвертировать Entity в DTO
      */
@@ -1,34 +1,54 @@
 package com.arekalov.islab1.controller;
 
+import com.arekalov.islab1.cache.ConditionalGet;
+import com.arekalov.islab1.cache.DetailResponseCache;
+import com.arekalov.islab1.config.BinaryMediaTypes;
 import com.arekalov.islab1.dto.request.CreateHouseRequest;
 import com.arekalov.islab1.dto.response.ErrorResponse;
 import com.arekalov.islab1.dto.response.PagedResponse;
 import com.arekalov.islab1.dto.response.HouseResponseDTO;
+import com.arekalov.islab1.repository.HouseField;
+import com.arekalov.islab1.repository.ProjectedField;
 import com.arekalov.islab1.service.HouseService;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * REST контроллер для работы с домами
  */
 @Path("/houses")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryMediaTypes.SMILE_QS, BinaryMediaTypes.CBOR_QS})
 @Consumes(MediaType.APPLICATION_JSON)
 public class HouseController {
     
     @Inject
     private HouseService houseService;
     
+    @Inject
+    private DetailResponseCache detailResponseCache;
+    
+    @Inject
+    private ConditionalGet conditionalGet;
+    
     /**
      * Получить список всех домов с пагинацией
+     * ETag страницы - глобальный счетчик изменений, If-None-Match проверяется до запроса к БД
+     * fields=id,name - только перечисленные поля (из БД читаются только их колонки)
      */
     @GET
     public Response getAllHouses(@QueryParam("page") @DefaultValue("0") int page,
-                                @QueryParam("size") @DefaultValue("10") int size) {
+                                @QueryParam("size") @DefaultValue("10") int size,
+                                @QueryParam("fields") String fields,
+                                @Context HttpHeaders headers) {
         try {
             // Валидация параметров пагинации
             if (page < 0) {
@@ -42,6 +62,27 @@ public class HouseController {
                     .build();
             }
             
+            Set<HouseField> fieldSet;
+            try {
+                fieldSet = ProjectedField.parse(HouseField.class, fields);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+            }
+            
+            EntityTag tag = conditionalGet.listTag("houses", page + "." + size + "." + ProjectedField.key(fieldSet), headers);
+            Response notModified = conditionalGet.notModified(tag, headers);
+            if (notModified != null) {
+                return notModified;
+            }
+            
+            if (fieldSet != null) {
+                List<Map<String, Object>> rows = houseService.getHousesProjected(page, size, fieldSet);
+                PagedResponse<Map<String, Object>> sparseResponse = new PagedResponse<>(rows, houseService.countHouses(), page, size);
+                return conditionalGet.withValidators(Response.ok(sparseResponse), tag).build();
+            }
+            
             // Получаем данные с пагинацией
             List<HouseResponseDTO> houses = houseService.getAllHouses(page, size);
             long total = houseService.countHouses();
@@ -49,7 +90,7 @@ public class HouseController {
             // Создаем пагинированный ответ
             PagedResponse<HouseResponseDTO> pagedResponse = new PagedResponse<>(houses, total, page, size);
             
-            return Response.ok(pagedResponse).build();
+            return conditionalGet.withValidators(Response.ok(pagedResponse), tag).build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                 .entity(new ErrorResponse("Ошибка получения списка домов: " + e.getMessage()))
@@ -59,14 +100,44 @@ public class HouseController {
     
     /**
      * Получить дом по ID
+     * Ответ (в том числе 404) берется из кэша сериализованных ответов,
+     * при совпадении If-None-Match - 304 без обращения к кэшу и БД.
+     * С fields= ответ содержит только перечисленные поля и читается узким запросом мимо кэша
      */
     @GET
     @Path("/{id}")
-    public Response getHouseById(@PathParam("id") Long id) {
+    public Response getHouseById(@PathParam("id") Long id,
+                                 @QueryParam("fields") String fields,
+                                 @Context HttpHeaders headers) {
         try {
-            HouseResponseDTO house = houseService.getHouseById(id);
-            if (house != null) {
-                return Response.ok(house).build();
+            Set<HouseField> fieldSet;
+            try {
+                fieldSet = ProjectedField.parse(HouseField.class, fields);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+            }
+            
+            EntityTag tag = conditionalGet.houseTag(id, ProjectedField.key(fieldSet), headers);
+            Response notModified = conditionalGet.notModified(tag, headers);
+            if (notModified != null) {
+                return notModified;
+            }
+            
+            if (fieldSet != null) {
+                Map<String, Object> house = houseService.getHouseProjectedById(id, fieldSet);
+                if (house == null) {
+                    return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Дом с ID " + id + " не найден"))
+                        .build();
+                }
+                return conditionalGet.withValidators(Response.ok(house), tag).build();
+            }
+            
+            byte[] body = detailResponseCache.getHouse(id, () -> houseService.getHouseById(id));
+            if (body != null) {
+                return conditionalGet.withValidators(Response.ok(body), tag).build();
             } else {
                 return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Дом с ID " + id + " не найден"))
@@ -1,7 +1,10 @@
 package com.arekalov.islab1.controller;
 
+import com.arekalov.islab1.compression.DecompressRequest;
+import com.arekalov.islab1.config.BinaryMediaTypes;
 import com.arekalov.islab1.dto.response.ImportHistoryResponseDTO;
 import com.arekalov.islab1.entity.ImportHistory;
+import com.arekalov.islab1.logging.Log;
 import com.arekalov.islab1.mapper.ImportHistoryMapper;
 import com.arekalov.islab1.repository.ImportHistoryRepository;
 import com.arekalov.islab1.service.ImportService;
@@ -11,18 +14,17 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
 import java.util.List;
-import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
  * REST контроллер для операций импорта
  */
 @Path("/import")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryMediaTypes.SMILE_QS, BinaryMediaTypes.CBOR_QS})
 @Consumes(MediaType.APPLICATION_JSON)
 public class ImportController {
     
-    private static final Logger logger = Logger.getLogger(ImportController.class.getName());
+    private static final Log log = Log.get(ImportController.class);
     
     @Inject
     private ImportService importService;
@@ -63,10 +65,13 @@ public class ImportController {
      *     "data": { "id": 5 }
      *   }
      * ]
+     * 
+     * Тело можно передать сжатым: Content-Encoding: gzip или deflate
      */
     @POST
+    @DecompressRequest
     public Response importObjects(String json) {
-        logger.info("ImportController.importObjects() - получен запрос на универсальный импорт");
+        log.debug("ImportController.importObjects() - получен запрос на универсальный импорт");
         
         // Выполняем импорт (исключения будут обработаны ValidationExceptionMapper)
             ImportHistory history = importService.importObjects(json);
@@ -74,7 +79,7 @@ public class ImportController {
             // Конвертируем в DTO
             ImportHistoryResponseDTO response = importHistoryMapper.toResponseDTO(history);
             
-            logger.info("ImportController.importObjects() - импорт успешен, id=" + history.getId());
+            log.info("ImportController.importObjects() - импорт успешен, id={}", history.getId());
             
             return Response
                 .status(Response.Status.CREATED)
@@ -92,7 +97,7 @@ public class ImportController {
         @QueryParam("page") @DefaultValue("0") int page,
         @QueryParam("size") @DefaultValue("10") int size
     ) {
-        logger.info("ImportController.getImportHistory() - page=" + page + ", size=" + size);
+        log.debug("ImportController.getImportHistory() - page={}, size={}", page, size);
         
         try {
             List<ImportHistory> history = importHistoryRepository.findAll(page, size);
@@ -109,7 +114,7 @@ public class ImportController {
             return Response.ok(response).build();
             
         } catch (Exception e) {
-            logger.severe("ImportController.getImportHistory() - ошибка: " + e.getMessage());
+            log.error("ImportController.getImportHistory() - ошибка: {}", e.getMessage());
             return Response
                 .status(Response.Status.INTERNAL_SERVER_ERROR)
                 .entity(new ErrorMessage("Ошибка получения истории: " + e.getMessage()))
@@ -126,7 +131,7 @@ public class ImportController {
     public Response getLatestImportHistory(
         @QueryParam("limit") @DefaultValue("5") int limit
     ) {
-        logger.info("ImportController.getLatestImportHistory() - limit=" + limit);
+        log.debug("ImportController.getLatestImportHistory() - limit={}", limit);
         
         try {
             List<ImportHistory> history = importHistoryRepository.findLatest(limit);
@@ -138,7 +143,7 @@ public class ImportController {
             return Response.ok(items).build();
             
         } catch (Exception e) {
-            logger.severe("ImportController.getLatestImportHistory() - ошибка: " + e.getMessage());
+            log.error("ImportController.getLatestImportHistory() - ошибка: {}", e.getMessage());
             return Response
                 .status(Response.Status.INTERNAL_SERVER_ERROR)
                 .entity(new ErrorMessage("Ошибка получения истории: " + e.getMessage()))
@@ -0,0 +1,88 @@
+package com.arekalov.islab1.controller;
+
+import com.arekalov.islab1.config.BinaryMediaTypes;
+import com.arekalov.islab1.dto.response.ErrorResponse;
+import com.arekalov.islab1.logging.LogLevels;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * REST контроллер для управления уровнями логирования во время работы
+ */
+@Path("/admin/logging")
+@Produces({MediaType.APPLICATION_JSON, BinaryMediaTypes.SMILE_QS, BinaryMediaTypes.CBOR_QS})
+public class LoggingController {
+    
+    /**
+     * Текущие настройки
+     * GET /api/admin/logging
+     */
+    @GET
+    public Response getLogging() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rootLevel", LogLevels.rootLevel().getName());
+        result.put("sampleRate", LogLevels.sampleRate());
+        result.put("categories", LogLevels.overrides());
+        return Response.ok(result).build();
+    }
+    
+    /**
+     * Установить уровень категории (класс или пакет)
+     * PUT /api/admin/logging/com.arekalov.islab1.repository?level=FINE
+     */
+    @PUT
+    @Path("/{category}")
+    public Response setLevel(@PathParam("category") String category, @QueryParam("level") String level) {
+        try {
+            if (level == null || level.isBlank()) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Параметр 'level' не может быть пустым"))
+                    .build();
+            }
+            LogLevels.setLevel(category, Level.parse(level.trim().toUpperCase()));
+            return getLogging();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse("Некорректный уровень логирования: " + level))
+                .build();
+        }
+    }
+    
+    /**
+     * Сбросить уровень категории
+     * DELETE /api/admin/logging/com.arekalov.islab1.repository
+     */
+    @DELETE
+    @Path("/{category}")
+    public Response resetLevel(@PathParam("category") String category) {
+        LogLevels.resetLevel(category);
+        return getLogging();
+    }
+    
+    /**
+     * Установить долю запросов с debug-логами
+     * PUT /api/admin/logging/sampling?rate=0.01
+     */
+    @PUT
+    @Path("/sampling")
+    public Response setSampleRate(@QueryParam("rate") Double rate) {
+        try {
+            if (rate == null) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Параметр 'rate' не может быть пустым"))
+                    .build();
+            }
+            LogLevels.setSampleRate(rate);
+            return getLogging();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.arekalov.islab1.controller;
+
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.metrics.PrometheusFormatter;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * REST контроллер для получения метрик приложения
+ * По умолчанию - текстовый формат Prometheus, при Accept: application/json - снимок счетчиков в JSON
+ */
+@Path("/metrics")
+public class MetricsController {
+    
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @Inject
+    private PrometheusFormatter prometheusFormatter;
+    
+    /**
+     * Получить метрики в формате Prometheus
+     * GET /api/metrics
+     */
+    @GET
+    @Produces(PROMETHEUS_TEXT)
+    public Response getPrometheusMetrics() {
+        return Response.ok(prometheusFormatter.format()).build();
+    }
+    
+    /**
+     * Получить снимок всех метрик
+     * GET /api/metrics (Accept: application/json)
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON + ";qs=0.5")
+    public Response getMetrics() {
+        return Response.ok(metricsRegistry.snapshot()).build();
+    }
+}
@@ -0,0 +1,42 @@
+package com.arekalov.islab1.dto.websocket;
+
+import com.arekalov.islab1.entity.Furnish;
+import com.arekalov.islab1.entity.View;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Компактное представление квартиры для WebSocket-уведомлений
+ * 
+ * Вместо вложенных объектов - только скалярные поля: дом передается по ID,
+ * координаты - парой x/y. Полные данные клиент при необходимости берет через REST.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FlatEventDTO {
+    private Long id;
+    private String name;
+    private Integer x;
+    private Integer y;
+    
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime creationDate;
+    
+    private Long area;
+    private Long price;
+    private Boolean balcony;
+    private Long timeToMetroOnFoot;
+    private Integer numberOfRooms;
+    private Long livingSpace;
+    private Furnish furnish;
+    private View view;
+    private Integer floor;
+    private Long houseId;
+}
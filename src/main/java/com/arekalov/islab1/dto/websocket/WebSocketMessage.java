@@ -1,10 +1,13 @@
 package com.arekalov.islab1.dto.websocket;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * DTO для WebSocket сообщений
  */
@@ -19,13 +22,31 @@ public class WebSocketMessage {
     private String type;
     
     /**
-     * Действие (например, "create", "update", "delete")
+     * Действие (например, "create", "update", "delete", "BATCH")
      */
     private String action;
     
     /**
      * Данные сообщения
      */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Object data;
+    
+    /**
+     * События одной транзакции (только для action = "BATCH")
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<WebSocketMessage> items;
+    
+    /**
+     * Номер события в журнале изменений (для возобновления через ?since=)
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long seq;
+    
+    public WebSocketMessage(String type, String action, Object data) {
+        this.type = type;
+        this.action = action;
+        this.data = data;
+    }
 }
-
@@ -6,11 +6,16 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheType;
 
 /**
  * Координаты (Entity)
+ * Кэшируется в общем (shared) кэше EclipseLink: читается часто, меняется редко
  */
 @Entity
+@Cacheable
+@Cache(type = CacheType.SOFT_WEAK, size = 5000, expiry = 600000)
 @Table(name = "coordinates")
 @Data
 @NoArgsConstructor
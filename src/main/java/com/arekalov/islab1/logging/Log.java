@@ -0,0 +1,174 @@
+package com.arekalov.islab1.logging;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Фасад логирования для горячих путей
+ * 
+ * Сообщения задаются шаблоном с {} (debugf/infof - форматом String.format) или Supplier'ом
+ * и собираются только если уровень категории включен, поэтому выключенные строки стоят
+ * одну проверку. debug-строки дополнительно семплируются по запросам (LogLevels.sampleRate).
+ * К каждой строке добавляется ID запроса: "... [req=1a2b]".
+ * 
+ * Пример: log.debug("FlatRepository.findById() - поиск квартиры с id={}", id);
+ */
+public final class Log {
+    
+    private final Logger logger;
+    
+    private final String category;
+    
+    private volatile int generation = -1;
+    
+    private volatile int threshold;
+    
+    private Log(String category) {
+        this.category = category;
+        this.logger = Logger.getLogger(category);
+    }
+    
+    public static Log get(Class<?> type) {
+        return new Log(type.getName());
+    }
+    
+    /**
+     * Включен ли уровень для категории (без учета выборки)
+     */
+    public boolean isEnabled(Level level) {
+        int current = LogLevels.generation();
+        if (generation != current) {
+            threshold = LogLevels.effectiveLevel(category).intValue();
+            generation = current;
+        }
+        return level.intValue() >= threshold;
+    }
+    
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.FINE) && RequestLogContext.isSampled();
+    }
+    
+    public void debug(String message) {
+        if (isDebugEnabled()) {
+            write(Level.FINE, message);
+        }
+    }
+    
+    public void debug(String template, Object arg) {
+        if (isDebugEnabled()) {
+            write(Level.FINE, format(template, arg));
+        }
+    }
+    
+    public void debug(String template, Object arg1, Object arg2) {
+        if (isDebugEnabled()) {
+            write(Level.FINE, format(template, arg1, arg2));
+        }
+    }
+    
+    public void debug(String template, Object arg1, Object arg2, Object arg3) {
+        if (isDebugEnabled()) {
+            write(Level.FINE, format(template, arg1, arg2, arg3));
+        }
+    }
+    
+    public void debug(String template, Object... args) {
+        if (isDebugEnabled()) {
+            write(Level.FINE, format(template, args));
+        }
+    }
+    
+    public void debug(Supplier<String> message) {
+        if (isDebugEnabled()) {
+            write(Level.FINE, message.get());
+        }
+    }
+    
+    /**
+     * debug с шаблоном String.format
+     */
+    public void debugf(String format, Object... args) {
+        if (isDebugEnabled()) {
+            write(Level.FINE, String.format(format, args));
+        }
+    }
+    
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, message);
+        }
+    }
+    
+    public void info(String template, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, format(template, args));
+        }
+    }
+    
+    /**
+     * info с шаблоном String.format
+     */
+    public void infof(String format, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, String.format(format, args));
+        }
+    }
+    
+    public void warn(String message) {
+        if (isEnabled(Level.WARNING)) {
+            write(Level.WARNING, message);
+        }
+    }
+    
+    public void warn(String template, Object... args) {
+        if (isEnabled(Level.WARNING)) {
+            write(Level.WARNING, format(template, args));
+        }
+    }
+    
+    public void error(String message) {
+        if (isEnabled(Level.SEVERE)) {
+            write(Level.SEVERE, message);
+        }
+    }
+    
+    public void error(String template, Object... args) {
+        if (isEnabled(Level.SEVERE)) {
+            write(Level.SEVERE, format(template, args));
+        }
+    }
+    
+    public void error(String message, Throwable error) {
+        if (isEnabled(Level.SEVERE)) {
+            logger.log(Level.SEVERE, withContext(message), error);
+        }
+    }
+    
+    private void write(Level level, String message) {
+        logger.log(level, withContext(message));
+    }
+    
+    private static String withContext(String message) {
+        String requestId = RequestLogContext.requestId();
+        return requestId != null ? message + " [req=" + requestId + "]" : message;
+    }
+    
+    /**
+     * Подставить аргументы вместо {} по порядку
+     */
+    static String format(String template, Object... args) {
+        if (args == null || args.length == 0) {
+            return template;
+        }
+        StringBuilder result = new StringBuilder(template.length() + 16 * args.length);
+        int argIndex = 0;
+        int from = 0;
+        int at;
+        while (argIndex < args.length && (at = template.indexOf("{}", from)) >= 0) {
+            result.append(template, from, at).append(args[argIndex++]);
+            from = at + 2;
+        }
+        return result.append(template, from, template.length()).toString();
+    }
+}
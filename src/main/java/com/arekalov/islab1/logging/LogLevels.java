@@ -0,0 +1,110 @@
+package com.arekalov.islab1.logging;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Уровни логирования по категориям, изменяемые во время работы
+ * 
+ * Категория - имя класса или пакета; уровень наследуется от ближайшего родителя
+ * (com.arekalov.islab1.repository действует на все репозитории). Каждое изменение
+ * увеличивает generation, и экземпляры Log пересчитывают свой порог один раз.
+ */
+public final class LogLevels {
+    
+    private static final Level ROOT_LEVEL = Level.parse(System.getProperty("islab1.logging.level", "INFO"));
+    
+    private static final Map<String, Level> overrides = new ConcurrentHashMap<>();
+    
+    /**
+     * JUL-логгеры с измененным уровнем
+     * LogManager держит логгеры слабыми ссылками: без сильной ссылки логгер пакета без
+     * собственных экземпляров мог быть собран GC вместе с установленным уровнем.
+     */
+    private static final Map<String, Logger> adjustedLoggers = new ConcurrentHashMap<>();
+    
+    private static final AtomicInteger generation = new AtomicInteger();
+    
+    /** Доля запросов, для которых пишутся debug-строки (0..1) */
+    private static volatile double sampleRate = parseRate(System.getProperty("islab1.logging.sample-rate", "1.0"));
+    
+    private LogLevels() {
+    }
+    
+    static int generation() {
+        return generation.get();
+    }
+    
+    /**
+     * Действующий уровень категории
+     */
+    public static Level effectiveLevel(String category) {
+        String name = category;
+        while (true) {
+            Level level = overrides.get(name);
+            if (level != null) {
+                return level;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                return ROOT_LEVEL;
+            }
+            name = name.substring(0, dot);
+        }
+    }
+    
+    /**
+     * Установить уровень категории
+     * Уровень JUL-логгера тоже меняется, чтобы записи не отбрасывались до обработчиков.
+     */
+    public static void setLevel(String category, Level level) {
+        overrides.put(category, level);
+        adjustedLoggers.computeIfAbsent(category, Logger::getLogger).setLevel(level);
+        generation.incrementAndGet();
+    }
+    
+    /**
+     * Сбросить уровень категории к унаследованному
+     */
+    public static void resetLevel(String category) {
+        if (overrides.remove(category) != null) {
+            Logger logger = adjustedLoggers.remove(category);
+            (logger != null ? logger : Logger.getLogger(category)).setLevel(null);
+            generation.incrementAndGet();
+        }
+    }
+    
+    public static Map<String, String> overrides() {
+        Map<String, String> result = new TreeMap<>();
+        overrides.forEach((category, level) -> result.put(category, level.getName()));
+        return result;
+    }
+    
+    public static Level rootLevel() {
+        return ROOT_LEVEL;
+    }
+    
+    public static double sampleRate() {
+        return sampleRate;
+    }
+    
+    public static void setSampleRate(double rate) {
+        if (rate < 0 || rate > 1 || Double.isNaN(rate)) {
+            throw new IllegalArgumentException("Доля выборки должна быть от 0 до 1: " + rate);
+        }
+        sampleRate = rate;
+    }
+    
+    private static double parseRate(String value) {
+        try {
+            double rate = Double.parseDouble(value);
+            return rate < 0 || rate > 1 ? 1.0 : rate;
+        } catch (NumberFormatException e) {
+            return 1.0;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.arekalov.islab1.logging;
+
+/**
+ * Контекст текущего HTTP-запроса для логирования: ID запроса и решение выборки
+ * Вне запросов (фоновые потоки) debug-строки не семплируются.
+ */
+public final class RequestLogContext {
+    
+    private static final ThreadLocal<RequestLogContext> CURRENT = new ThreadLocal<>();
+    
+    private final String requestId;
+    
+    private final boolean sampled;
+    
+    private RequestLogContext(String requestId, boolean sampled) {
+        this.requestId = requestId;
+        this.sampled = sampled;
+    }
+    
+    static void begin(String requestId, boolean sampled) {
+        CURRENT.set(new RequestLogContext(requestId, sampled));
+    }
+    
+    static void end() {
+        CURRENT.remove();
+    }
+    
+    /**
+     * Писать ли debug-строки в текущем потоке
+     */
+    public static boolean isSampled() {
+        RequestLogContext context = CURRENT.get();
+        return context == null || context.sampled;
+    }
+    
+    /**
+     * ID текущего запроса или null вне запроса
+     */
+    public static String requestId() {
+        RequestLogContext context = CURRENT.get();
+        return context != null ? context.requestId : null;
+    }
+}
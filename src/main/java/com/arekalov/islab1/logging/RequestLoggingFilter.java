@@ -0,0 +1,45 @@
+package com.arekalov.islab1.logging;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Задает контекст логирования для каждого REST-запроса
+ * 
+ * ID берется из заголовка X-Request-ID или генерируется. Решение о выборке
+ * debug-строк принимается один раз на запрос, поэтому попавший в выборку
+ * запрос логируется целиком.
+ */
+@Provider
+public class RequestLoggingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    
+    public static final String REQUEST_ID_HEADER = "X-Request-ID";
+    
+    private static final AtomicLong counter = new AtomicLong();
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String requestId = requestContext.getHeaderString(REQUEST_ID_HEADER);
+        if (requestId == null || requestId.isBlank() || requestId.length() > 64) {
+            requestId = Long.toString(counter.incrementAndGet(), 36);
+        }
+        double rate = LogLevels.sampleRate();
+        boolean sampled = rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+        RequestLogContext.begin(requestId, sampled);
+    }
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        String requestId = RequestLogContext.requestId();
+        if (requestId != null) {
+            responseContext.getHeaders().putSingle(REQUEST_ID_HEADER, requestId);
+        }
+        RequestLogContext.end();
+    }
+}
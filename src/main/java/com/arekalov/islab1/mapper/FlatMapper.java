@@ -2,17 +2,30 @@ package com.arekalov.islab1.mapper;
 
 import com.arekalov.islab1.dto.request.CreateFlatRequest;
 import com.arekalov.islab1.dto.request.UpdateFlatRequest;
+import com.arekalov.islab1.dto.response.CoordinatesResponseDTO;
 import com.arekalov.islab1.dto.response.FlatResponseDTO;
+import com.arekalov.islab1.dto.response.HouseResponseDTO;
+import com.arekalov.islab1.dto.websocket.FlatEventDTO;
 import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.repository.FlatField;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Mapper для конвертации между Flat entity и DTO
  */
 @ApplicationScoped
 public class FlatMapper {
     
+    /** Формат creationDate, как в @JsonFormat FlatResponseDTO */
+    private static final DateTimeFormatter CREATION_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    
     @Inject
     private CoordinatesMapper coordinatesMapper;
     
@@ -48,6 +61,60 @@ public class FlatMapper {
         return dto;
     }
     
+    /**
+     * Конвертировать строку проекции (см. FlatField) в ответ только с запрошенными полями
+     * Имена и формат значений совпадают с FlatResponseDTO
+     */
+    public Map<String, Object> toSparseMap(Object[] row, Set<FlatField> fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        int i = 0;
+        for (FlatField field : fields) {
+            Object value = switch (field) {
+                case COORDINATES -> row[i] != null
+                    ? new CoordinatesResponseDTO((Long) row[i], (Integer) row[i + 1], (Integer) row[i + 2])
+                    : null;
+                case HOUSE -> row[i] != null
+                    ? new HouseResponseDTO((Long) row[i], (String) row[i + 1], (Integer) row[i + 2], (Integer) row[i + 3])
+                    : null;
+                case CREATION_DATE -> row[i] != null ? CREATION_DATE_FORMAT.format((LocalDateTime) row[i]) : null;
+                default -> row[i];
+            };
+            result.put(field.fieldName(), value);
+            i += field.columns().size();
+        }
+        return result;
+    }
+    
+    /**
+     * Конвертировать Entity в компактный DTO для WebSocket-уведомлений
+     */
+    public FlatEventDTO toEventDTO(Flat flat) {
+        if (flat == null) {
+            return null;
+        }
+        
+        FlatEventDTO dto = new FlatEventDTO();
+        dto.setId(flat.getId());
+        dto.setName(flat.getName());
+        if (flat.getCoordinates() != null) {
+            dto.setX(flat.getCoordinates().getX());
+            dto.setY(flat.getCoordinates().getY());
+        }
+        dto.setCreationDate(flat.getCreationDate());
+        dto.setArea(flat.getArea());
+        dto.setPrice(flat.getPrice());
+        dto.setBalcony(flat.getBalcony());
+        dto.setTimeToMetroOnFoot(flat.getTimeToMetroOnFoot());
+        dto.setNumberOfRooms(flat.getNumberOfRooms());
+        dto.setLivingSpace(flat.getLivingSpace());
+        dto.setFurnish(flat.getFurnish());
+        dto.setView(flat.getView());
+        dto.setFloor(flat.getFloor());
+        dto.setHouseId(flat.getHouse() != null ? flat.getHouse().getId() : null);
+        
+        return dto;
+    }
+    
     /**
      * Конвертировать CreateRequest в Entity
      */
@@ -4,8 +4,13 @@ import com.arekalov.islab1.dto.request.CreateHouseRequest;
 import com.arekalov.islab1.dto.request.UpdateHouseRequest;
 import com.arekalov.islab1.dto.response.HouseResponseDTO;
 import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.repository.HouseField;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Mapper для конвертации между House entity и DTO
  */
@@ -29,6 +34,18 @@ public class HouseMapper {
         return dto;
     }
     
+    /**
+     * Конвертировать строку проекции (см. HouseField) в ответ только с запрошенными полями
+     */
+    public Map<String, Object> toSparseMap(Object[] row, Set<HouseField> fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        int i = 0;
+        for (HouseField field : fields) {
+            result.put(field.fieldName(), row[i++]);
+        }
+        return result;
+    }
+    
     /**
      * Конвертировать CreateRequest в Entity
      */
@@ -0,0 +1,30 @@
+package com.arekalov.islab1.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR-событие: снимок заблокированных сессий PostgreSQL (pg_locks/pg_stat_activity)
+ */
+@Name("com.arekalov.islab1.BlockedSessions")
+@Label("Blocked DB Sessions")
+@Category({"IS Lab1", "Database"})
+@Description("Сессии БД, ожидающие блокировку")
+@StackTrace(false)
+public class BlockedSessionsEvent extends Event {
+    
+    @Label("Blocked Sessions")
+    public int blockedSessions;
+    
+    @Label("Longest Wait")
+    @Timespan(Timespan.MILLISECONDS)
+    public long longestWaitMs;
+    
+    @Label("Longest Waiting Query")
+    public String longestWaitQuery;
+}
@@ -0,0 +1,143 @@
+package com.arekalov.islab1.metrics;
+
+import com.arekalov.islab1.config.RestApplication;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.ApplicationPath;
+import jakarta.ws.rs.Path;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Метрики REST-запросов: гистограммы задержек по шаблону маршрута и коду ответа,
+ * количество выполняющихся запросов по маршруту
+ * 
+ * Маршрут определяется по методу ресурса (/api/flats/{id}), а не по фактическому URI,
+ * поэтому число рядов ограничено числом методов контроллеров.
+ */
+@ApplicationScoped
+public class HttpMetrics {
+    
+    private static final String APPLICATION_PATH = RestApplication.class.getAnnotation(ApplicationPath.class).value();
+    
+    private static final String UNMATCHED = "UNMATCHED";
+    
+    private final Map<Method, Route> routes = new ConcurrentHashMap<>();
+    
+    private final Map<String, Route> unmatched = new ConcurrentHashMap<>();
+    
+    /**
+     * Метрики одного маршрута
+     */
+    public static final class Route {
+        
+        private final String method;
+        
+        private final String template;
+        
+        private final AtomicLong inFlight = new AtomicLong();
+        
+        /** Гистограмма по коду ответа (индекс - код) */
+        private final AtomicReferenceArray<LatencyHistogram> byStatus = new AtomicReferenceArray<>(600);
+        
+        Route(String method, String template) {
+            this.method = method;
+            this.template = template;
+        }
+        
+        public String getMethod() {
+            return method;
+        }
+        
+        public String getTemplate() {
+            return template;
+        }
+        
+        public long getInFlight() {
+            return inFlight.get();
+        }
+        
+        public void started() {
+            inFlight.incrementAndGet();
+        }
+        
+        public void finished() {
+            inFlight.decrementAndGet();
+        }
+        
+        /**
+         * Записать длительность запроса
+         */
+        public void record(int status, long nanos) {
+            int index = status >= 0 && status < byStatus.length() ? status : 0;
+            LatencyHistogram histogram = byStatus.get(index);
+            if (histogram == null) {
+                byStatus.compareAndSet(index, null, new LatencyHistogram());
+                histogram = byStatus.get(index);
+            }
+            histogram.recordNanos(nanos);
+        }
+        
+        /**
+         * Гистограммы по кодам ответа
+         */
+        public List<Map.Entry<Integer, LatencyHistogram>> histograms() {
+            List<Map.Entry<Integer, LatencyHistogram>> result = new ArrayList<>();
+            for (int status = 0; status < byStatus.length(); status++) {
+                LatencyHistogram histogram = byStatus.get(status);
+                if (histogram != null) {
+                    result.add(Map.entry(status, histogram));
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Маршрут метода ресурса
+     */
+    public Route route(Class<?> resourceClass, Method resourceMethod, String httpMethod) {
+        Route route = routes.get(resourceMethod);
+        if (route == null) {
+            route = routes.computeIfAbsent(resourceMethod,
+                key -> new Route(httpMethod, template(resourceClass, resourceMethod)));
+        }
+        return route;
+    }
+    
+    /**
+     * Маршрут для запросов, не сопоставленных ни одному методу (404, 405)
+     */
+    public Route unmatched(String httpMethod) {
+        return unmatched.computeIfAbsent(httpMethod, key -> new Route(key, UNMATCHED));
+    }
+    
+    public Collection<Route> getRoutes() {
+        List<Route> result = new ArrayList<>(routes.values());
+        result.addAll(unmatched.values());
+        result.sort((a, b) -> a.template.equals(b.template)
+            ? a.method.compareTo(b.method)
+            : a.template.compareTo(b.template));
+        return result;
+    }
+    
+    private static String template(Class<?> resourceClass, Method resourceMethod) {
+        StringBuilder template = new StringBuilder(APPLICATION_PATH);
+        Path classPath = resourceClass.getAnnotation(Path.class);
+        if (classPath != null) {
+            template.append('/').append(classPath.value());
+        }
+        Path methodPath = resourceMethod.getAnnotation(Path.class);
+        if (methodPath != null) {
+            template.append('/').append(methodPath.value());
+        }
+        String result = template.toString().replaceAll("/{2,}", "/");
+        return result.length() > 1 && result.endsWith("/") ? result.substring(0, result.length() - 1) : result;
+    }
+}
@@ -0,0 +1,63 @@
+package com.arekalov.islab1.metrics;
+
+import jakarta.servlet.*;
+import java.io.IOException;
+
+/**
+ * Снятие REST-запроса с учета выполняющихся (http_server_requests_in_flight)
+ * 
+ * HttpMetricsFilter увеличивает счетчик маршрута после сопоставления с методом,
+ * а уменьшается он здесь: сервлет-фильтр завершается при любом исходе запроса -
+ * ответ без тела, HEAD, исключение без ExceptionMapper. Асинхронные запросы (SSE)
+ * снимаются с учета по завершении асинхронного контекста.
+ * Свойства JAX-RS-запроса в RESTEasy хранятся в атрибутах сервлет-запроса.
+ */
+public class HttpMetricsCompletionFilter implements Filter {
+    
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(request));
+            } else {
+                HttpMetricsFilter.finish(request::getAttribute);
+            }
+        }
+    }
+    
+    /**
+     * Завершение асинхронного запроса
+     */
+    private static final class CompletionListener implements AsyncListener {
+        
+        private final ServletRequest request;
+        
+        private CompletionListener(ServletRequest request) {
+            this.request = request;
+        }
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            HttpMetricsFilter.finish(request::getAttribute);
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            HttpMetricsFilter.finish(request::getAttribute);
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            HttpMetricsFilter.finish(request::getAttribute);
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Повторный startAsync сбрасывает слушателей - регистрируемся снова
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.arekalov.islab1.metrics;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Замер времени REST-запросов по маршрутам
+ * Начало запроса фиксируется после сопоставления с методом ресурса. Ответ с телом
+ * дописывает HttpMetricsInterceptor после сериализации и сжатия, без тела - этот фильтр.
+ * Счетчик выполняющихся запросов уменьшает HttpMetricsCompletionFilter: ответ может
+ * не дойти ни до фильтра ответа, ни до перехватчика записи (исключение без маппера, SSE).
+ */
+@Provider
+public class HttpMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    
+    static final String START_PROPERTY = HttpMetricsFilter.class.getName() + ".start";
+    
+    static final String ROUTE_PROPERTY = HttpMetricsFilter.class.getName() + ".route";
+    
+    static final String STATUS_PROPERTY = HttpMetricsFilter.class.getName() + ".status";
+    
+    /** true, пока запрос учтен в in-flight маршрута */
+    static final String IN_FLIGHT_PROPERTY = HttpMetricsFilter.class.getName() + ".inFlight";
+    
+    @Inject
+    private HttpMetrics httpMetrics;
+    
+    @Context
+    private ResourceInfo resourceInfo;
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Method method = resourceInfo != null ? resourceInfo.getResourceMethod() : null;
+        HttpMetrics.Route route = method != null
+            ? httpMetrics.route(resourceInfo.getResourceClass(), method, requestContext.getMethod())
+            : httpMetrics.unmatched(requestContext.getMethod());
+        
+        route.started();
+        requestContext.setProperty(ROUTE_PROPERTY, route);
+        requestContext.setProperty(IN_FLIGHT_PROPERTY, new AtomicBoolean(true));
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+    
+    /**
+     * Снять запрос с учета выполняющихся; повторный вызов ничего не делает
+     *
+     * @param properties свойства запроса (атрибуты сервлет-запроса)
+     */
+    static void finish(Function<String, Object> properties) {
+        if (properties.apply(ROUTE_PROPERTY) instanceof HttpMetrics.Route route
+                && properties.apply(IN_FLIGHT_PROPERTY) instanceof AtomicBoolean inFlight
+                && inFlight.compareAndSet(true, false)) {
+            route.finished();
+        }
+    }
+    
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        HttpMetrics.Route route = (HttpMetrics.Route) requestContext.getProperty(ROUTE_PROPERTY);
+        Object start = requestContext.getProperty(START_PROPERTY);
+        
+        if (route == null || start == null) {
+            // Запрос отклонен до сопоставления с методом - длительность неизвестна
+            httpMetrics.unmatched(requestContext.getMethod()).record(responseContext.getStatus(), 0);
+            return;
+        }
+        
+        if (responseContext.hasEntity()) {
+            // Тело еще не записано - замер завершит HttpMetricsInterceptor
+            requestContext.setProperty(STATUS_PROPERTY, responseContext.getStatus());
+            return;
+        }
+        
+        route.record(responseContext.getStatus(), System.nanoTime() - (Long) start);
+    }
+}
@@ -0,0 +1,36 @@
+package com.arekalov.islab1.metrics;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.IOException;
+
+/**
+ * Завершение замера REST-запросов с телом ответа
+ * 
+ * Самый внешний перехватчик записи: длительность включает сериализацию тела,
+ * сжатие (CompressionInterceptor) и запись в сокет. Ответы без тела
+ * записываются сразу в HttpMetricsFilter.
+ */
+@Provider
+@Priority(0)
+public class HttpMetricsInterceptor implements WriterInterceptor {
+    
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        try {
+            context.proceed();
+        } finally {
+            HttpMetrics.Route route = (HttpMetrics.Route) context.getProperty(HttpMetricsFilter.ROUTE_PROPERTY);
+            Object start = context.getProperty(HttpMetricsFilter.START_PROPERTY);
+            Object status = context.getProperty(HttpMetricsFilter.STATUS_PROPERTY);
+            if (route != null && start != null && status != null) {
+                // Снимаем свойства: потоковые ответы могут проходить через перехватчик несколько раз
+                context.removeProperty(HttpMetricsFilter.START_PROPERTY);
+                route.record((Integer) status, System.nanoTime() - (Long) start);
+            }
+        }
+    }
+}
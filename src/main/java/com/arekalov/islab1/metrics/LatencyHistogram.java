@@ -0,0 +1,106 @@
+package com.arekalov.islab1.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с логарифмически-линейными корзинами (в духе HdrHistogram)
+ * 
+ * Значения хранятся в микросекундах: каждая степень двойки делится на 8 корзин,
+ * поэтому относительная ошибка квантилей не больше 12.5%, а весь диапазон до ~13 суток
+ * занимает 312 счетчиков. Запись - вычисление индекса и инкремент, без выделения памяти.
+ */
+public final class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 3;
+    
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    private static final int MAX_EXPONENT = 40;
+    
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS);
+    
+    private final LongAdder count = new LongAdder();
+    
+    private final LongAdder sumMicros = new LongAdder();
+    
+    private final AtomicLong maxMicros = new AtomicLong();
+    
+    /**
+     * Записать длительность в наносекундах
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts.incrementAndGet(index(micros));
+        count.increment();
+        sumMicros.add(micros);
+        
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+    
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+    
+    /**
+     * Квантиль в микросекундах (верхняя граница корзины)
+     *
+     * @param quantile от 0 до 1
+     */
+    public long quantileMicros(double quantile) {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+    
+    private int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        int index = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        return Math.min(index, counts.length() - 1);
+    }
+    
+    /**
+     * Наибольшее значение, попадающее в корзину
+     */
+    private static long upperBound(int index) {
+        int block = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        if (block == 0) {
+            return subBucket;
+        }
+        long lower = (long) (SUB_BUCKETS + subBucket) << (block - 1);
+        return lower + (1L << (block - 1)) - 1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.arekalov.islab1.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-событие: ожидание пессимистической блокировки строки
+ * Длительность события - время em.find(..., PESSIMISTIC_WRITE).
+ */
+@Name("com.arekalov.islab1.LockWait")
+@Label("Lock Wait")
+@Category({"IS Lab1", "Database"})
+@Description("Ожидание SELECT ... FOR UPDATE")
+@StackTrace(true)
+public class LockWaitEvent extends Event {
+    
+    @Label("Entity")
+    String entity;
+    
+    @Label("Call Site")
+    String site;
+    
+    @Label("Entity ID")
+    String entityId;
+    
+    @Label("Found")
+    boolean found;
+    
+    @Label("Acquired")
+    boolean acquired;
+}
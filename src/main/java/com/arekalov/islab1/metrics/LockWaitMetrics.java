@@ -0,0 +1,93 @@
+package com.arekalov.islab1.metrics;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Время ожидания пессимистических блокировок (SELECT ... FOR UPDATE)
+ * 
+ * Каждая блокировка записывается в гистограмму по сущности и месту вызова
+ * и в JFR-событие LockWaitEvent для офлайн-профилирования.
+ */
+@ApplicationScoped
+public class LockWaitMetrics {
+    
+    /**
+     * Заблокированная строка всегда читается из БД и обновляет общий кэш:
+     * проверки ограничений под блокировкой не должны видеть House/Coordinates
+     * из кэша, устаревшие из-за записи на другом узле
+     */
+    private static final Map<String, Object> LOCKED_READ_HINTS = Map.of(
+        "jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS,
+        "jakarta.persistence.cache.storeMode", CacheStoreMode.REFRESH
+    );
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    /** "сущность|место" -> гистограмма */
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    
+    /**
+     * Гистограмма ожидания для одной пары сущность/место вызова
+     */
+    public record Series(String entity, String site, LatencyHistogram histogram) {
+    }
+    
+    /**
+     * Найти сущность с блокировкой PESSIMISTIC_WRITE, замерив ожидание
+     *
+     * @param site место вызова, например "house.constraint"
+     */
+    public <T> T findForUpdate(EntityManager em, Class<T> type, Object id, String site) {
+        Series target = series(type.getSimpleName(), site);
+        LockWaitEvent event = new LockWaitEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            T entity = em.find(type, id, LockModeType.PESSIMISTIC_WRITE, LOCKED_READ_HINTS);
+            acquired = true;
+            event.found = entity != null;
+            return entity;
+        } finally {
+            target.histogram().recordNanos(System.nanoTime() - start);
+            metricsRegistry.increment(acquired ? "db_lock_acquisitions_total" : "db_lock_failures_total");
+            
+            event.end();
+            if (event.shouldCommit()) {
+                event.entity = target.entity();
+                event.site = site;
+                event.entityId = String.valueOf(id);
+                event.acquired = acquired;
+                event.commit();
+            }
+        }
+    }
+    
+    public List<Series> getSeries() {
+        List<Series> result = new ArrayList<>(series.values());
+        result.sort((a, b) -> a.entity().equals(b.entity())
+            ? a.site().compareTo(b.site())
+            : a.entity().compareTo(b.entity()));
+        return result;
+    }
+    
+    private Series series(String entity, String site) {
+        String key = entity + "|" + site;
+        Series existing = series.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        return series.computeIfAbsent(key, k -> new Series(entity, site, new LatencyHistogram()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.arekalov.islab1.metrics;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Реестр метрик приложения
+ * Счетчики (монотонно растущие) и gauge-значения, доступные через /api/metrics
+ */
+@ApplicationScoped
+public class MetricsRegistry {
+    
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    
+    private final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    
+    private final Map<String, LongSupplier> gaugeSuppliers = new ConcurrentHashMap<>();
+    
+    /**
+     * Увеличить счетчик на 1
+     */
+    public void increment(String name) {
+        add(name, 1);
+    }
+    
+    /**
+     * Увеличить счетчик на delta
+     */
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+    
+    /**
+     * Установить значение gauge
+     */
+    public void setGauge(String name, long value) {
+        gauges.computeIfAbsent(name, key -> new AtomicLong()).set(value);
+    }
+    
+    /**
+     * Зарегистрировать gauge, значение которого вычисляется при чтении
+     */
+    public void registerGauge(String name, LongSupplier supplier) {
+        gaugeSuppliers.put(name, supplier);
+    }
+    
+    /**
+     * Получить текущее значение счетчика
+     */
+    public long getCounter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+    
+    /**
+     * Снимок счетчиков, отсортированный по имени
+     */
+    public Map<String, Long> counterSnapshot() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return result;
+    }
+    
+    /**
+     * Снимок gauge-значений, отсортированный по имени
+     */
+    public Map<String, Long> gaugeSnapshot() {
+        Map<String, Long> result = new TreeMap<>();
+        gauges.forEach((name, gauge) -> result.put(name, gauge.get()));
+        gaugeSuppliers.forEach((name, supplier) -> result.put(name, supplier.getAsLong()));
+        return result;
+    }
+    
+    /**
+     * Снимок всех метрик, отсортированный по имени
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> result.put(name, gauge.get()));
+        gaugeSuppliers.forEach((name, supplier) -> result.put(name, supplier.getAsLong()));
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package com.arekalov.islab1.metrics;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Map;
+
+/**
+ * Вывод метрик в текстовом формате Prometheus (exposition format 0.0.4)
+ * 
+ * Значения MetricsRegistry с именем на _total (в том числе вычисляемые через registerGauge,
+ * например hits_total кэшей) выводятся как counter, остальные - как gauge.
+ * Задержки REST-запросов и ожидание блокировок - summary с квантилями.
+ */
+@ApplicationScoped
+public class PrometheusFormatter {
+    
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @Inject
+    private HttpMetrics httpMetrics;
+    
+    @Inject
+    private LockWaitMetrics lockWaitMetrics;
+    
+    public String format() {
+        StringBuilder out = new StringBuilder(8192);
+        
+        for (Map.Entry<String, Long> entry : metricsRegistry.counterSnapshot().entrySet()) {
+            sample(out, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : metricsRegistry.gaugeSnapshot().entrySet()) {
+            sample(out, entry.getKey(), entry.getValue());
+        }
+        
+        out.append("# HELP http_server_requests_seconds Время обработки REST-запросов\n");
+        out.append("# TYPE http_server_requests_seconds summary\n");
+        for (HttpMetrics.Route route : httpMetrics.getRoutes()) {
+            for (Map.Entry<Integer, LatencyHistogram> entry : route.histograms()) {
+                summary(out, "http_server_requests_seconds", labels(route, entry.getKey()), entry.getValue());
+            }
+        }
+        
+        out.append("# HELP http_server_requests_seconds_max Максимальное время обработки REST-запроса\n");
+        out.append("# TYPE http_server_requests_seconds_max gauge\n");
+        for (HttpMetrics.Route route : httpMetrics.getRoutes()) {
+            for (Map.Entry<Integer, LatencyHistogram> entry : route.histograms()) {
+                out.append("http_server_requests_seconds_max{").append(labels(route, entry.getKey())).append("} ")
+                    .append(seconds(entry.getValue().getMaxMicros())).append('\n');
+            }
+        }
+        
+        out.append("# HELP http_server_requests_in_flight Выполняющиеся REST-запросы\n");
+        out.append("# TYPE http_server_requests_in_flight gauge\n");
+        for (HttpMetrics.Route route : httpMetrics.getRoutes()) {
+            out.append("http_server_requests_in_flight{method=\"").append(escape(route.getMethod()))
+                .append("\",route=\"").append(escape(route.getTemplate())).append("\"} ")
+                .append(route.getInFlight()).append('\n');
+        }
+        
+        out.append("# HELP db_lock_wait_seconds Ожидание блокировок PESSIMISTIC_WRITE\n");
+        out.append("# TYPE db_lock_wait_seconds summary\n");
+        for (LockWaitMetrics.Series series : lockWaitMetrics.getSeries()) {
+            String labels = "entity=\"" + escape(series.entity()) + "\",site=\"" + escape(series.site()) + "\"";
+            summary(out, "db_lock_wait_seconds", labels, series.histogram());
+        }
+        
+        out.append("# TYPE db_lock_wait_seconds_max gauge\n");
+        for (LockWaitMetrics.Series series : lockWaitMetrics.getSeries()) {
+            out.append("db_lock_wait_seconds_max{entity=\"").append(escape(series.entity()))
+                .append("\",site=\"").append(escape(series.site())).append("\"} ")
+                .append(seconds(series.histogram().getMaxMicros())).append('\n');
+        }
+        
+        return out.toString();
+    }
+    
+    private static void sample(StringBuilder out, String name, long value) {
+        String type = name.endsWith("_total") ? "counter" : "gauge";
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+    
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels)
+                .append(",quantile=\"").append(quantile).append("\"} ")
+                .append(seconds(histogram.quantileMicros(quantile))).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ")
+            .append(seconds(histogram.getSumMicros())).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ")
+            .append(histogram.getCount()).append('\n');
+    }
+    
+    private static String labels(HttpMetrics.Route route, int status) {
+        return "method=\"" + escape(route.getMethod()) + "\",route=\"" + escape(route.getTemplate())
+            + "\",status=\"" + status + "\"";
+    }
+    
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1_000_000.0);
+    }
+    
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,88 @@
+package com.arekalov.islab1.metrics;
+
+import com.arekalov.islab1.logging.Log;
+import com.arekalov.islab1.logging.RequestLoggingFilter;
+import jakarta.inject.Inject;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Учет SQL-запросов на каждый HTTP-запрос
+ * 
+ * Сервлет-фильтр охватывает и сериализацию ответа, поэтому ленивые загрузки
+ * при записи JSON тоже попадают в счет. Запросы, превысившие пороги по числу
+ * SQL или времени БД, и повторы одного и того же SQL (N+1) пишутся в лог.
+ */
+public class SqlProfilingFilter implements Filter {
+    
+    private static final Log log = Log.get(SqlProfilingFilter.class);
+    
+    private static final boolean ENABLED = Boolean.parseBoolean(
+        System.getProperty("islab1.sql.profiling.enabled", "true"));
+    
+    /** Число SQL-запросов, после которого HTTP-запрос считается тяжелым */
+    private static final int SLOW_STATEMENTS = Integer.getInteger("islab1.sql.slow-request-statements", 20);
+    
+    /** Суммарное время БД, после которого HTTP-запрос считается тяжелым */
+    private static final long SLOW_MILLIS = Long.getLong("islab1.sql.slow-request-ms", 200L);
+    
+    /** Сколько раз один и тот же SQL должен выполниться, чтобы считаться N+1 */
+    private static final int N_PLUS_ONE_THRESHOLD = Integer.getInteger("islab1.sql.n-plus-one-threshold", 5);
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) 
+            throws IOException, ServletException {
+        
+        if (!ENABLED) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        SqlRequestStats stats = SqlRequestStats.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlRequestStats.end();
+            publish((HttpServletRequest) request, (HttpServletResponse) response, stats);
+        }
+    }
+    
+    private void publish(HttpServletRequest request, HttpServletResponse response, SqlRequestStats stats) {
+        int statements = stats.getStatements();
+        if (statements == 0) {
+            return;
+        }
+        long millis = stats.getTotalNanos() / 1_000_000;
+        
+        metricsRegistry.increment("sql_profiled_requests_total");
+        metricsRegistry.add("sql_statements_total", statements);
+        metricsRegistry.add("sql_time_micros_total", stats.getTotalNanos() / 1_000);
+        
+        String target = request.getMethod() + " " + request.getRequestURI();
+        String requestId = response.getHeader(RequestLoggingFilter.REQUEST_ID_HEADER);
+        
+        if (statements >= SLOW_STATEMENTS || millis >= SLOW_MILLIS) {
+            metricsRegistry.increment("sql_heavy_requests_total");
+            log.warn("SqlProfilingFilter - {}: {} SQL-запросов, {} мс в БД [req={}]", target, statements, millis, requestId);
+        }
+        
+        Map<String, Integer> repeated = stats.repeated(N_PLUS_ONE_THRESHOLD);
+        if (!repeated.isEmpty()) {
+            metricsRegistry.increment("sql_n_plus_one_total");
+            repeated.forEach((shape, count) ->
+                log.warn("SqlProfilingFilter - {}: возможный N+1, запрос выполнен {} раз: {} [req={}]", target, count, shape, requestId));
+        }
+    }
+    
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {}
+    
+    @Override
+    public void destroy() {}
+}
@@ -0,0 +1,115 @@
+package com.arekalov.islab1.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Счетчики SQL-запросов текущего HTTP-запроса: количество, время и повторы одинаковых запросов
+ * 
+ * Заполняется SqlStatementListener в потоке, выполняющем запрос к БД. Вне HTTP-запросов
+ * (фоновые потоки) контекста нет и запросы не учитываются.
+ */
+public final class SqlRequestStats {
+    
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+    
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    private static final int MAX_CACHED_SHAPES = 1000;
+    
+    /** SQL -> форма запроса; EclipseLink переиспользует строки подготовленных запросов */
+    private static final Map<String, String> shapes = new ConcurrentHashMap<>();
+    
+    private int statements;
+    
+    private long totalNanos;
+    
+    private long callStart;
+    
+    /** Форма запроса -> количество выполнений */
+    private Map<String, int[]> executions;
+    
+    private SqlRequestStats() {
+    }
+    
+    static SqlRequestStats begin() {
+        SqlRequestStats stats = new SqlRequestStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+    
+    static void end() {
+        CURRENT.remove();
+    }
+    
+    static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+    
+    void callStarted() {
+        callStart = System.nanoTime();
+    }
+    
+    void callFinished(String sql) {
+        if (callStart != 0) {
+            totalNanos += System.nanoTime() - callStart;
+            callStart = 0;
+        }
+        statements++;
+        if (sql != null) {
+            if (executions == null) {
+                executions = new HashMap<>();
+            }
+            executions.computeIfAbsent(shape(sql), key -> new int[1])[0]++;
+        }
+    }
+    
+    public int getStatements() {
+        return statements;
+    }
+    
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+    
+    /**
+     * Формы запросов, выполненные не меньше threshold раз
+     */
+    public Map<String, Integer> repeated(int threshold) {
+        Map<String, Integer> result = new HashMap<>();
+        if (executions != null) {
+            executions.forEach((shape, count) -> {
+                if (count[0] >= threshold) {
+                    result.put(shape, count[0]);
+                }
+            });
+        }
+        return result;
+    }
+    
+    /**
+     * Форма запроса: литералы и списки параметров заменены на ?, пробелы схлопнуты
+     */
+    static String shape(String sql) {
+        String shape = shapes.get(sql);
+        if (shape == null) {
+            shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+            shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+            shape = PARAMETER_LIST.matcher(shape).replaceAll("(?)");
+            shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+            if (shapes.size() >= MAX_CACHED_SHAPES) {
+                shapes.clear();
+            }
+            shapes.put(sql, shape);
+        }
+        return shape;
+    }
+}
@@ -0,0 +1,30 @@
+package com.arekalov.islab1.metrics;
+
+import org.eclipse.persistence.internal.databaseaccess.DatabaseCall;
+import org.eclipse.persistence.queries.Call;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+/**
+ * Слушатель сессии EclipseLink: засекает каждый SQL-вызов и учитывает его в SqlRequestStats
+ * Подключается в persistence.xml (eclipselink.session-event-listener).
+ */
+public class SqlStatementListener extends SessionEventAdapter {
+    
+    @Override
+    public void preExecuteCall(SessionEvent event) {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.callStarted();
+        }
+    }
+    
+    @Override
+    public void postExecuteCall(SessionEvent event) {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            Call call = event.getCall();
+            stats.callFinished(call instanceof DatabaseCall databaseCall ? databaseCall.getSQLString() : null);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.arekalov.islab1.repository;
+
+import com.arekalov.islab1.service.EntityManagerService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.transaction.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Репозиторий журнала изменений (таблица change_log)
+ */
+@ApplicationScoped
+public class ChangeLogRepository {
+    
+    private static final Logger logger = Logger.getLogger(ChangeLogRepository.class.getName());
+    
+    /**
+     * Строк в одном INSERT: 4 параметра на строку, PostgreSQL допускает не больше 32767 параметров
+     */
+    private static final int INSERT_CHUNK = 8000;
+    
+    /**
+     * Запись журнала
+     */
+    public record Row(long seq, String type, String action, String payload) {
+    }
+    
+    @Inject
+    private EntityManagerService entityManagerService;
+    
+    /**
+     * Получить EntityManager
+     */
+    private EntityManager getEntityManager() {
+        return entityManagerService.getEntityManager();
+    }
+    
+    /**
+     * Получить номер последнего события
+     */
+    public long findMaxSeq() {
+        try {
+            Object maxSeq = getEntityManager()
+                .createNativeQuery("SELECT COALESCE(MAX(seq), 0) FROM change_log")
+                .getSingleResult();
+            return ((Number) maxSeq).longValue();
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка получения номера последнего события: " + e.getMessage());
+            throw new RuntimeException("Error finding max change log seq: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Получить номер самого старого хранимого события
+     */
+    public long findMinSeq() {
+        try {
+            Object minSeq = getEntityManager()
+                .createNativeQuery("SELECT COALESCE(MIN(seq), 0) FROM change_log")
+                .getSingleResult();
+            return ((Number) minSeq).longValue();
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка получения номера первого события: " + e.getMessage());
+            throw new RuntimeException("Error finding min change log seq: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Записать события в отдельной транзакции
+     * Номера выделяются из последовательности заранее, поэтому порядок номеров
+     * совпадает с порядком переданных событий. Вставка идет частями по INSERT_CHUNK строк
+     * в той же транзакции.
+     *
+     * @return номера событий в том же порядке
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public List<Long> append(List<Row> rows) {
+        try {
+            EntityManager em = getEntityManager();
+            List<?> result = em.createNativeQuery(
+                    "SELECT nextval(pg_get_serial_sequence('change_log', 'seq')) FROM generate_series(1, ?1)")
+                .setParameter(1, rows.size())
+                .getResultList();
+            
+            List<Long> seqs = new ArrayList<>(rows.size());
+            for (Object seq : result) {
+                seqs.add(((Number) seq).longValue());
+            }
+            seqs.sort(null);
+            
+            for (int from = 0; from < rows.size(); from += INSERT_CHUNK) {
+                insert(em, rows, seqs, from, Math.min(from + INSERT_CHUNK, rows.size()));
+            }
+            
+            return seqs;
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка записи журнала изменений: " + e.getMessage());
+            throw new RuntimeException("Error appending change log: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Записать строки [from, to) одним многострочным INSERT
+     */
+    private static void insert(EntityManager em, List<Row> rows, List<Long> seqs, int from, int to) {
+        StringBuilder sql = new StringBuilder("INSERT INTO change_log (seq, entity_type, action, payload) VALUES ");
+        for (int i = 0; i < to - from; i++) {
+            int base = i * 4;
+            sql.append(i == 0 ? "" : ", ")
+                .append("(?").append(base + 1)
+                .append(", ?").append(base + 2)
+                .append(", ?").append(base + 3)
+                .append(", ?").append(base + 4).append(")");
+        }
+        
+        Query insert = em.createNativeQuery(sql.toString());
+        for (int i = from; i < to; i++) {
+            Row row = rows.get(i);
+            int base = (i - from) * 4;
+            insert.setParameter(base + 1, seqs.get(i));
+            insert.setParameter(base + 2, row.type());
+            insert.setParameter(base + 3, row.action());
+            insert.setParameter(base + 4, row.payload());
+        }
+        insert.executeUpdate();
+    }
+    
+    /**
+     * Найти события с номером больше since
+     *
+     * @param limit максимальное количество событий
+     */
+    public List<Row> findSince(long since, int limit) {
+        try {
+            List<?> result = getEntityManager().createNativeQuery(
+                    "SELECT seq, entity_type, action, payload FROM change_log " +
+                    "WHERE seq > ?1 ORDER BY seq LIMIT ?2")
+                .setParameter(1, since)
+                .setParameter(2, limit)
+                .getResultList();
+            
+            List<Row> rows = new ArrayList<>(result.size());
+            for (Object item : result) {
+                Object[] columns = (Object[]) item;
+                rows.add(new Row(((Number) columns[0]).longValue(), (String) columns[1],
+                    (String) columns[2], (String) columns[3]));
+            }
+            return rows;
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка чтения журнала изменений: " + e.getMessage());
+            throw new RuntimeException("Error reading change log: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Удалить события с номером не больше seq
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public int deleteUpTo(long seq) {
+        try {
+            return getEntityManager().createNativeQuery("DELETE FROM change_log WHERE seq <= ?1")
+                .setParameter(1, seq)
+                .executeUpdate();
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка очистки журнала изменений: " + e.getMessage());
+            throw new RuntimeException("Error pruning change log: " + e.getMessage(), e);
+        }
+    }
+}
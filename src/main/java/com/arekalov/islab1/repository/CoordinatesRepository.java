@@ -0,0 +1,199 @@
+package com.arekalov.islab1.repository;
+
+import com.arekalov.islab1.service.EntityManagerService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.transaction.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Репозиторий для обслуживания таблицы координат
+ * 
+ * Фоновая очистка рассматривает только кандидатов (таблица coordinates_sweep_candidates),
+ * записанных при удалении квартиры или замене ее координат. Координаты, созданные сами
+ * по себе и еще не привязанные к квартире, очисткой не затрагиваются.
+ */
+@ApplicationScoped
+public class CoordinatesRepository {
+    
+    private static final Logger logger = Logger.getLogger(CoordinatesRepository.class.getName());
+    
+    @Inject
+    private EntityManagerService entityManagerService;
+    
+    /**
+     * Получить EntityManager
+     */
+    private EntityManager getEntityManager() {
+        return entityManagerService.getEntityManager();
+    }
+    
+    /**
+     * Результат одной пачки очистки
+     *
+     * @param cleared    сколько кандидатов снято (удалены или снова используются)
+     * @param deletedIds ID удаленных координат
+     */
+    public record SweepBatch(int cleared, List<Long> deletedIds) {
+    }
+    
+    /**
+     * Создать таблицу кандидатов, если миграция create-coordinates-sweep-candidates-table.sql не применена
+     * Без таблицы удаление квартир и домов и замена координат падают, поэтому ошибка
+     * здесь (например, нет прав на DDL) останавливает развертывание.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void ensureCandidatesTable() {
+        try {
+            EntityManager em = getEntityManager();
+            Object existing = em.createNativeQuery("SELECT to_regclass('coordinates_sweep_candidates')::text")
+                .getSingleResult();
+            if (existing != null) {
+                return;
+            }
+            
+            em.createNativeQuery(
+                    "CREATE TABLE IF NOT EXISTS coordinates_sweep_candidates (" +
+                    "coordinates_id BIGINT PRIMARY KEY, " +
+                    "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)")
+                .executeUpdate();
+            logger.info("CoordinatesRepository - создана таблица coordinates_sweep_candidates");
+            
+        } catch (Exception e) {
+            logger.severe("Таблица coordinates_sweep_candidates недоступна, примените "
+                + "sql/create-coordinates-sweep-candidates-table.sql: " + e.getMessage());
+            throw new RuntimeException("Error creating coordinates_sweep_candidates table " +
+                "(apply sql/create-coordinates-sweep-candidates-table.sql): " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Записать координаты в кандидаты на очистку
+     * Выполняется в транзакции вызывающего: при откате запись тоже откатывается.
+     */
+    @Transactional
+    public void recordCandidate(Long coordinatesId) {
+        if (coordinatesId == null) {
+            return;
+        }
+        
+        try {
+            getEntityManager().createNativeQuery(
+                    "INSERT INTO coordinates_sweep_candidates (coordinates_id) VALUES (?1) " +
+                    "ON CONFLICT (coordinates_id) DO NOTHING")
+                .setParameter(1, coordinatesId)
+                .executeUpdate();
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка записи кандидата на очистку координат: " + e.getMessage());
+            throw new RuntimeException("Error recording coordinates sweep candidate: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Записать в кандидаты координаты всех квартир дома (перед каскадным удалением квартир)
+     */
+    @Transactional
+    public void recordCandidatesOfHouse(Long houseId) {
+        try {
+            getEntityManager().createNativeQuery(
+                    "INSERT INTO coordinates_sweep_candidates (coordinates_id) " +
+                    "SELECT DISTINCT f.coordinates_id FROM flats f WHERE f.house_id = ?1 " +
+                    "ON CONFLICT (coordinates_id) DO NOTHING")
+                .setParameter(1, houseId)
+                .executeUpdate();
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка записи кандидатов на очистку координат дома: " + e.getMessage());
+            throw new RuntimeException("Error recording coordinates sweep candidates of house: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Обработать пачку кандидатов: удалить координаты, на которые не ссылается ни одна квартира
+     * Каждая пачка выполняется в отдельной транзакции, чтобы не держать блокировки долго.
+     * Координаты, заблокированные параллельными транзакциями (например, вставкой квартиры
+     * с этими координатами), пропускаются через SKIP LOCKED и остаются в кандидатах
+     * до следующего прохода.
+     *
+     * @param batchSize максимальный размер пачки
+     * @return число снятых кандидатов и ID удаленных координат
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public SweepBatch sweepCandidatesBatch(int batchSize) {
+        try {
+            EntityManager em = getEntityManager();
+            
+            // Кандидаты блокируются до конца транзакции - параллельный проход (другой узел) их пропустит
+            List<?> candidateRows = em.createNativeQuery(
+                    "SELECT coordinates_id FROM coordinates_sweep_candidates " +
+                    "ORDER BY coordinates_id LIMIT ?1 FOR UPDATE SKIP LOCKED")
+                .setParameter(1, batchSize)
+                .getResultList();
+            if (candidateRows.isEmpty()) {
+                return new SweepBatch(0, List.of());
+            }
+            
+            List<Long> candidates = toIds(candidateRows);
+            String in = placeholders(candidates.size());
+            
+            Query delete = em.createNativeQuery(
+                    "DELETE FROM coordinates WHERE id IN (" +
+                    "SELECT c.id FROM coordinates c " +
+                    "WHERE c.id IN (" + in + ") " +
+                    "AND NOT EXISTS (SELECT 1 FROM flats f WHERE f.coordinates_id = c.id) " +
+                    "FOR UPDATE SKIP LOCKED) " +
+                    "RETURNING id");
+            bind(delete, candidates);
+            List<Long> deletedIds = toIds(delete.getResultList());
+            
+            // Снимаем кандидатов, с которыми все решено: координат больше нет или они снова используются
+            Query clear = em.createNativeQuery(
+                    "DELETE FROM coordinates_sweep_candidates s " +
+                    "WHERE s.coordinates_id IN (" + in + ") " +
+                    "AND (NOT EXISTS (SELECT 1 FROM coordinates c WHERE c.id = s.coordinates_id) " +
+                    "OR EXISTS (SELECT 1 FROM flats f WHERE f.coordinates_id = s.coordinates_id))");
+            bind(clear, candidates);
+            int cleared = clear.executeUpdate();
+            
+            return new SweepBatch(cleared, deletedIds);
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка удаления неиспользуемых координат: " + e.getMessage());
+            throw new RuntimeException("Error deleting orphan coordinates: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Позиционные параметры ?1, ?2, ... для списка из count значений
+     */
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                sb.append(", ");
+            }
+            sb.append('?').append(i);
+        }
+        return sb.toString();
+    }
+    
+    private static void bind(Query query, List<Long> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            query.setParameter(i + 1, ids.get(i));
+        }
+    }
+    
+    private static List<Long> toIds(List<?> rows) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            ids.add(((Number) row).longValue());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,107 @@
+package com.arekalov.islab1.repository;
+
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Поля FlatResponseDTO для fields=
+ * Координаты выбираются через JOIN f.coordinates c, дом - через LEFT JOIN f.house h;
+ * без этих полей соединения не выполняются.
+ */
+public enum FlatField implements ProjectedField {
+    ID("id", "f.id"),
+    NAME("name", "f.name"),
+    COORDINATES("coordinates", "c.id", "c.x", "c.y"),
+    CREATION_DATE("creationDate", "f.creationDate"),
+    AREA("area", "f.area"),
+    PRICE("price", "f.price"),
+    BALCONY("balcony", "f.balcony"),
+    TIME_TO_METRO_ON_FOOT("timeToMetroOnFoot", "f.timeToMetroOnFoot"),
+    NUMBER_OF_ROOMS("numberOfRooms", "f.numberOfRooms"),
+    LIVING_SPACE("livingSpace", "f.livingSpace"),
+    FURNISH("furnish", "f.furnish"),
+    VIEW("view", "f.view"),
+    FLOOR("floor", "f.floor"),
+    HOUSE("house", "h.id", "h.name", "h.year", "h.numberOfFlatsOnFloor");
+    
+    private final String fieldName;
+    
+    private final List<String> columns;
+    
+    FlatField(String fieldName, String... columns) {
+        this.fieldName = fieldName;
+        this.columns = List.of(columns);
+    }
+    
+    @Override
+    public String fieldName() {
+        return fieldName;
+    }
+    
+    @Override
+    public List<String> columns() {
+        return columns;
+    }
+    
+    /**
+     * JOIN-ы, которые нужны выбранным полям
+     */
+    public static String joins(Set<FlatField> fields) {
+        String joins = "";
+        if (fields.contains(COORDINATES)) {
+            joins += " JOIN f.coordinates c";
+        }
+        if (fields.contains(HOUSE)) {
+            joins += " LEFT JOIN f.house h";
+        }
+        return joins;
+    }
+    
+    /**
+     * Строка проекции из сущности - в том же виде, что возвращает JPQL-запрос
+     * (для InMemoryFlatRepository)
+     */
+    public static Object[] row(Flat flat, Set<FlatField> fields) {
+        Object[] row = new Object[fields.stream().mapToInt(field -> field.columns.size()).sum()];
+        int i = 0;
+        for (FlatField field : fields) {
+            switch (field) {
+                case ID -> row[i] = flat.getId();
+                case NAME -> row[i] = flat.getName();
+                case COORDINATES -> {
+                    Coordinates coordinates = flat.getCoordinates();
+                    if (coordinates != null) {
+                        row[i] = coordinates.getId();
+                        row[i + 1] = coordinates.getX();
+                        row[i + 2] = coordinates.getY();
+                    }
+                }
+                case CREATION_DATE -> row[i] = flat.getCreationDate();
+                case AREA -> row[i] = flat.getArea();
+                case PRICE -> row[i] = flat.getPrice();
+                case BALCONY -> row[i] = flat.getBalcony();
+                case TIME_TO_METRO_ON_FOOT -> row[i] = flat.getTimeToMetroOnFoot();
+                case NUMBER_OF_ROOMS -> row[i] = flat.getNumberOfRooms();
+                case LIVING_SPACE -> row[i] = flat.getLivingSpace();
+                case FURNISH -> row[i] = flat.getFurnish();
+                case VIEW -> row[i] = flat.getView();
+                case FLOOR -> row[i] = flat.getFloor();
+                case HOUSE -> {
+                    House house = flat.getHouse();
+                    if (house != null) {
+                        row[i] = house.getId();
+                        row[i + 1] = house.getName();
+                        row[i + 2] = house.getYear();
+                        row[i + 3] = house.getNumberOfFlatsOnFloor();
+                    }
+                }
+            }
+            i += field.columns.size();
+        }
+        return row;
+    }
+}
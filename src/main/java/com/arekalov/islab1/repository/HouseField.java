@@ -0,0 +1,52 @@
+package com.arekalov.islab1.repository;
+
+import com.arekalov.islab1.entity.House;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Поля HouseResponseDTO для fields=
+ */
+public enum HouseField implements ProjectedField {
+    ID("id", "h.id"),
+    NAME("name", "h.name"),
+    YEAR("year", "h.year"),
+    NUMBER_OF_FLATS_ON_FLOOR("numberOfFlatsOnFloor", "h.numberOfFlatsOnFloor");
+    
+    private final String fieldName;
+    
+    private final String column;
+    
+    HouseField(String fieldName, String column) {
+        this.fieldName = fieldName;
+        this.column = column;
+    }
+    
+    @Override
+    public String fieldName() {
+        return fieldName;
+    }
+    
+    @Override
+    public List<String> columns() {
+        return List.of(column);
+    }
+    
+    /**
+     * Строка проекции из сущности (для InMemoryHouseRepository)
+     */
+    public static Object[] row(House house, Set<HouseField> fields) {
+        Object[] row = new Object[fields.size()];
+        int i = 0;
+        for (HouseField field : fields) {
+            row[i++] = switch (field) {
+                case ID -> house.getId();
+                case NAME -> house.getName();
+                case YEAR -> house.getYear();
+                case NUMBER_OF_FLATS_ON_FLOOR -> house.getNumberOfFlatsOnFloor();
+            };
+        }
+        return row;
+    }
+}
@@ -1,304 +1,78 @@
 package com.arekalov.islab1.repository;
 
 import com.arekalov.islab1.entity.House;
-import com.arekalov.islab1.service.EntityManagerService;
-import jakarta.enterprise.context.ApplicationScoped;
-import jakarta.inject.Inject;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.TypedQuery;
-import jakarta.transaction.Transactional;
 
 import java.util.List;
-import java.util.logging.Logger;
+import java.util.Set;
 
 /**
- * Репозиторий для работы с домами через JPA API
+ * Репозиторий домов
+ * Реализации: JpaHouseRepository (БД), InMemoryHouseRepository (в памяти)
  */
-@ApplicationScoped
-public class HouseRepository {
-    
-    private static final Logger logger = Logger.getLogger(HouseRepository.class.getName());
-    
-    @Inject
-    private EntityManagerService entityManagerService;
+public interface HouseRepository {
     
     /**
-     * Получить EntityManager
+     * Создать дом (id == null) или обновить существующий под блокировкой
      */
-    private EntityManager getEntityManager() {
-        return entityManagerService.getEntityManager();
-    }
+    House save(House house);
     
     /**
-     * Сохранить дом с транзакцией
+     * Найти дома с пагинацией (по возрастанию ID)
      */
-    @Transactional
-    public House save(House house) {
-        logger.info("HouseRepository.save() - сохранение дома: " + house.getName());
-        
-        try {
-            EntityManager em = getEntityManager();
-            
-            if (house.getId() == null) {
-                // Новый дом - persist (блокировка не нужна)
-                em.persist(house);
-                em.flush(); // Форсируем INSERT чтобы получить ID
-                logger.info("HouseRepository.save() - дом создан с id=" + house.getId());
-            } else {
-                // Существующий дом - блокируем и обновляем
-                House existingHouse = em.find(House.class, house.getId(), jakarta.persistence.LockModeType.PESSIMISTIC_WRITE);
-                if (existingHouse == null) {
-                    throw new RuntimeException("House not found with id: " + house.getId());
-                }
-                
-                // Обновляем поля
-                existingHouse.setName(house.getName());
-                existingHouse.setYear(house.getYear());
-                existingHouse.setNumberOfFlatsOnFloor(house.getNumberOfFlatsOnFloor());
-                
-                em.flush(); // Форсируем UPDATE
-                house = existingHouse;
-                logger.info("HouseRepository.save() - дом обновлен с id=" + house.getId());
-            }
-            
-            return house;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка сохранения дома: " + e.getMessage());
-            throw new RuntimeException("Error saving house: " + e.getMessage(), e);
-        }
-    }
+    List<House> findAll(int page, int size);
     
     /**
-     * Найти все дома с пагинацией
+     * Найти дома с пагинацией, выбирая только колонки полей fields (по возрастанию ID)
      */
-    public List<House> findAll(int page, int size) {
-        logger.info("HouseRepository.findAll() - поиск домов с пагинацией: page=" + page + ", size=" + size);
-        
-        // Валидация параметров
-        if (page < 0) {
-            logger.warning("HouseRepository.findAll() - page не может быть отрицательным: " + page);
-            page = 0;
-        }
-        if (size <= 0) {
-            logger.warning("HouseRepository.findAll() - size должен быть положительным: " + size);
-            size = 10;
-        }
-        if (size > 100) {
-            logger.warning("HouseRepository.findAll() - size слишком большой: " + size);
-            size = 100;
-        }
-        
-        try {
-            EntityManager em = getEntityManager();
-            
-            TypedQuery<House> query = em.createQuery("SELECT h FROM House h ORDER BY h.id ASC", House.class);
-            query.setFirstResult(page * size);
-            query.setMaxResults(size);
-            
-            List<House> houses = query.getResultList();
-            logger.info("HouseRepository.findAll() - найдено домов: " + houses.size());
-            return houses;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка поиска домов с пагинацией: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Error finding houses with pagination: " + e.getMessage(), e);
-        }
-    }
+    List<Object[]> findProjected(int page, int size, Set<HouseField> fields);
     
     /**
      * Подсчитать общее количество домов
      */
-    public long count() {
-        logger.info("HouseRepository.count() - подсчет общего количества домов");
-        
-        try {
-            EntityManager em = getEntityManager();
-            TypedQuery<Long> query = em.createQuery("SELECT COUNT(h) FROM House h", Long.class);
-            Long count = query.getSingleResult();
-            logger.info("HouseRepository.count() - общее количество домов: " + count);
-            return count;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка подсчета домов: " + e.getMessage());
-            throw new RuntimeException("Error counting houses: " + e.getMessage(), e);
-        }
-    }
+    long count();
     
     /**
      * Найти все дома (без пагинации)
      */
-    public List<House> findAll() {
-        logger.info("HouseRepository.findAll() - поиск всех домов");
-        
-        try {
-            EntityManager em = getEntityManager();
-            TypedQuery<House> query = em.createQuery("SELECT h FROM House h ORDER BY h.id", House.class);
-            List<House> houses = query.getResultList();
-            logger.info("HouseRepository.findAll() - найдено домов: " + houses.size());
-            return houses;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка поиска всех домов: " + e.getMessage());
-            throw new RuntimeException("Error finding all houses: " + e.getMessage(), e);
-        }
-    }
+    List<House> findAll();
     
     /**
      * Найти дом по ID
      */
-    public House findById(Long id) {
-        logger.info("HouseRepository.findById() - поиск дома с id=" + id);
-        
-        try {
-            EntityManager em = getEntityManager();
-            House house = em.find(House.class, id);
-            
-            if (house != null) {
-                logger.info("HouseRepository.findById() - дом найден: " + house.getName());
-            } else {
-                logger.info("HouseRepository.findById() - дом с id=" + id + " не найден");
-            }
-            
-            return house;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка поиска дома по ID: " + e.getMessage());
-            throw new RuntimeException("Error finding house by id: " + e.getMessage(), e);
-        }
-    }
+    House findById(Long id);
+    
+    /**
+     * Найти дом по ID, выбирая только колонки полей fields; null, если не найден
+     */
+    Object[] findProjectedById(Long id, Set<HouseField> fields);
     
     /**
-     * Найти дом с пессимистической блокировкой (для проверки ограничений)
-     * Это предотвращает race conditions при создании квартир в параллельных потоках
+     * Найти дом с блокировкой до конца транзакции (для проверки ограничений)
      */
-    @Transactional
-    public House findByIdWithLock(Long id) {
-        logger.info("HouseRepository.findByIdWithLock() - поиск дома с блокировкой, id=" + id);
-        
-        try {
-            EntityManager em = getEntityManager();
-            House house = em.find(House.class, id, jakarta.persistence.LockModeType.PESSIMISTIC_WRITE);
-            
-            if (house != null) {
-                logger.info("HouseRepository.findByIdWithLock() - дом найден и заблокирован: " + house.getName());
-            } else {
-                logger.info("HouseRepository.findByIdWithLock() - дом с id=" + id + " не найден");
-            }
-            
-            return house;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка поиска дома с блокировкой: " + e.getMessage());
-            throw new RuntimeException("Error finding house with lock: " + e.getMessage(), e);
-        }
-    }
+    House findByIdWithLock(Long id);
     
     /**
      * Получить количество квартир в доме
      */
-    public long getFlatsCount(Long houseId) {
-        logger.info("HouseRepository.getFlatsCount() - подсчет квартир для дома с id=" + houseId);
-        
-        try {
-            EntityManager em = getEntityManager();
-            TypedQuery<Long> query = em.createQuery(
-                "SELECT COUNT(f) FROM Flat f WHERE f.house.id = :houseId", Long.class);
-            query.setParameter("houseId", houseId);
-            Long count = query.getSingleResult();
-            logger.info("HouseRepository.getFlatsCount() - найдено квартир: " + count);
-            return count;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка подсчета квартир в доме: " + e.getMessage());
-            throw new RuntimeException("Error counting flats in house: " + e.getMessage(), e);
-        }
-    }
+    long getFlatsCount(Long houseId);
     
     /**
      * Проверить, есть ли квартиры в доме
      */
-    public boolean hasFlats(Long houseId) {
-        return getFlatsCount(houseId) > 0;
-    }
+    boolean hasFlats(Long houseId);
     
     /**
      * Удалить все квартиры в доме
      */
-    @Transactional
-    public void deleteFlatsInHouse(Long houseId) {
-        logger.info("HouseRepository.deleteFlatsInHouse() - удаление всех квартир в доме с id=" + houseId);
-        
-        try {
-            EntityManager em = getEntityManager();
-            int deletedCount = em.createQuery("DELETE FROM Flat f WHERE f.house.id = :houseId")
-                .setParameter("houseId", houseId)
-                .executeUpdate();
-            logger.info("HouseRepository.deleteFlatsInHouse() - удалено квартир: " + deletedCount);
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка удаления квартир в доме: " + e.getMessage());
-            throw new RuntimeException("Error deleting flats in house: " + e.getMessage(), e);
-        }
-    }
+    void deleteFlatsInHouse(Long houseId);
     
     /**
-     * Удалить дом с каскадным удалением связанных квартир
+     * Удалить дом вместе с его квартирами
      */
-    @Transactional
-    public boolean deleteById(Long id) {
-        logger.info("HouseRepository.deleteById() - каскадное удаление дома с id=" + id);
-        
-        try {
-            EntityManager em = getEntityManager();
-            
-            // Блокируем строку в БД для предотвращения race condition
-            House house = em.find(House.class, id, jakarta.persistence.LockModeType.PESSIMISTIC_WRITE);
-            if (house == null) {
-                logger.info("HouseRepository.deleteById() - дом не найден для удаления");
-                return false;
-            }
-            
-            // Сначала удаляем все квартиры в доме (каскадное удаление)
-            long flatsCount = getFlatsCount(id);
-            if (flatsCount > 0) {
-                logger.info("HouseRepository.deleteById() - найдено " + flatsCount + " квартир(ы) для каскадного удаления");
-                deleteFlatsInHouse(id);
-                logger.info("HouseRepository.deleteById() - все квартиры в доме удалены");
-            }
-            
-            // Теперь удаляем сам дом
-            logger.info("HouseRepository.deleteById() - выполняем DELETE дома");
-            em.remove(house);
-            logger.info("HouseRepository.deleteById() - дом и все связанные квартиры успешно удалены");
-            return true;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка каскадного удаления дома: " + e.getMessage());
-            throw new RuntimeException("Error deleting house with cascade: " + e.getMessage(), e);
-        }
-    }
+    boolean deleteById(Long id);
     
     /**
-     * Поиск по названию
+     * Поиск по названию (без учета регистра)
      */
-    public List<House> findByNameContaining(String substring) {
-        logger.info("HouseRepository.findByNameContaining() - поиск домов с подстрокой: " + substring);
-        
-        try {
-            EntityManager em = getEntityManager();
-            TypedQuery<House> query = em.createQuery(
-                "SELECT h FROM House h WHERE LOWER(h.name) LIKE :search", House.class);
-            query.setParameter("search", "%" + substring.toLowerCase() + "%");
-            
-            List<House> houses = query.getResultList();
-            logger.info("HouseRepository.findByNameContaining() - найдено домов: " + houses.size());
-            return houses;
-            
-        } catch (Exception e) {
-            logger.severe("Ошибка поиска домов по названию: " + e.getMessage());
-            throw new RuntimeException("Error finding houses by name: " + e.getMessage(), e);
-        }
-    }
+    List<House> findByNameContaining(String substring);
 }
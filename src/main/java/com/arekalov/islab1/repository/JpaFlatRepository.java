@@ -0,0 +1,503 @@
+package com.arekalov.islab1.repository;
+
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.entity.View;
+import com.arekalov.islab1.logging.Log;
+import com.arekalov.islab1.metrics.LockWaitMetrics;
+import com.arekalov.islab1.service.EntityManagerService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Репозиторий для работы с квартирами через JPA API
+ */
+@ApplicationScoped
+public class JpaFlatRepository implements FlatRepository {
+    
+    private static final Log log = Log.get(JpaFlatRepository.class);
+    
+    @Inject
+    private EntityManagerService entityManagerService;
+    
+    @Inject
+    private LockWaitMetrics lockWaitMetrics;
+    
+    @Inject
+    private CoordinatesRepository coordinatesRepository;
+    
+    /**
+     * Получить EntityManager
+     */
+    private EntityManager getEntityManager() {
+        return entityManagerService.getEntityManager();
+    }
+    
+    /**
+     * Найти все квартиры с пагинацией
+     */
+    public List<Flat> findAll(int page, int size, String sortBy) {
+        log.debug("FlatRepository.findAll() - поиск квартир: page={}, size={}, sortBy={}", page, size, sortBy);
+        
+        // Валидация параметров
+        if (page < 0) {
+            log.warn("FlatRepository.findAll() - page не может быть отрицательным: {}", page);
+            page = 0;
+        }
+        if (size <= 0) {
+            log.warn("FlatRepository.findAll() - size должен быть положительным: {}", size);
+            size = 10;
+        }
+        if (size > 100) {
+            log.warn("FlatRepository.findAll() - size слишком большой: {}", size);
+            size = 100;
+        }
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            String jpql = "SELECT f FROM Flat f ORDER BY f." + orderByField(sortBy) + " ASC";
+            TypedQuery<Flat> query = em.createQuery(jpql, Flat.class);
+            query.setFirstResult(page * size);
+            query.setMaxResults(size);
+            
+            List<Flat> flats = query.getResultList();
+            log.debug("FlatRepository.findAll() - найдено квартир: {}", flats.size());
+            return flats;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска квартир: {}", e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Error finding flats: " + e.getMessage(), e);
+        }
+    }
+    
+    public List<Flat> findAll() {
+        return findAll(0, 20, "id");
+    }
+    
+    /**
+     * Найти квартиры с пагинацией, выбирая только нужные колонки
+     * Координаты и дом присоединяются, только если они запрошены
+     */
+    public List<Object[]> findProjected(int page, int size, String sortBy, Set<FlatField> fields) {
+        log.debug("FlatRepository.findProjected() - поиск квартир: page={}, size={}, sortBy={}, fields={}",
+            page, size, sortBy, fields);
+        
+        page = Math.max(page, 0);
+        size = size <= 0 ? 10 : Math.min(size, 100);
+        
+        try {
+            String jpql = "SELECT " + ProjectedField.select(fields) + " FROM Flat f" + FlatField.joins(fields)
+                + " ORDER BY f." + orderByField(sortBy) + " ASC";
+            Query query = getEntityManager().createQuery(jpql);
+            query.setFirstResult(page * size);
+            query.setMaxResults(size);
+            
+            List<Object[]> rows = toRows(query.getResultList());
+            log.debug("FlatRepository.findProjected() - найдено квартир: {}", rows.size());
+            return rows;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска квартир с проекцией: {}", e.getMessage());
+            throw new RuntimeException("Error finding projected flats: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Определить поле сортировки
+     */
+    private static String orderByField(String sortBy) {
+        if ("name".equals(sortBy) || "price".equals(sortBy) || "area".equals(sortBy)) {
+            return sortBy;
+        }
+        return "id";
+    }
+    
+    /**
+     * Привести результат запроса к строкам: при одной колонке JPA возвращает значения, а не массивы
+     */
+    private static List<Object[]> toRows(List<?> result) {
+        List<Object[]> rows = new ArrayList<>(result.size());
+        for (Object row : result) {
+            rows.add(row instanceof Object[] values ? values : new Object[] {row});
+        }
+        return rows;
+    }
+    
+    /**
+     * Подсчитать общее количество квартир
+     */
+    public Long count() {
+        log.debug("FlatRepository.count() - подсчет общего количества квартир");
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<Long> query = em.createQuery("SELECT COUNT(f) FROM Flat f", Long.class);
+            Long count = query.getSingleResult();
+            log.debug("FlatRepository.count() - общее количество квартир: {}", count);
+            return count;
+            
+        } catch (Exception e) {
+            log.error("Ошибка подсчета квартир: {}", e.getMessage());
+            throw new RuntimeException("Error counting flats: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти квартиру по ID
+     */
+    public Flat findById(Long id) {
+        log.debug("FlatRepository.findById() - поиск квартиры с id={}", id);
+        
+        try {
+            EntityManager em = getEntityManager();
+            Flat flat = em.find(Flat.class, id);
+            
+            if (flat != null) {
+                log.debug("FlatRepository.findById() - квартира найдена: {}", flat.getName());
+            } else {
+                log.debug("FlatRepository.findById() - квартира не найдена");
+            }
+            
+            return flat;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска квартиры по ID: {}", e.getMessage());
+            throw new RuntimeException("Error finding flat by id: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти квартиру по ID, выбирая только нужные колонки
+     */
+    public Object[] findProjectedById(Long id, Set<FlatField> fields) {
+        log.debug("FlatRepository.findProjectedById() - поиск квартиры с id={}, fields={}", id, fields);
+        
+        try {
+            String jpql = "SELECT " + ProjectedField.select(fields) + " FROM Flat f" + FlatField.joins(fields)
+                + " WHERE f.id = :id";
+            Query query = getEntityManager().createQuery(jpql);
+            query.setParameter("id", id);
+            
+            List<Object[]> rows = toRows(query.getResultList());
+            return rows.isEmpty() ? null : rows.get(0);
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска квартиры по ID с проекцией: {}", e.getMessage());
+            throw new RuntimeException("Error finding projected flat by id: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Сохранить квартиру с транзакцией
+     */
+    @Transactional
+    public Flat save(Flat flat) {
+        log.debug("FlatRepository.save() - сохранение квартиры: {}", flat.getName());
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            if (flat.getId() == null) {
+                // Новая квартира - persist (блокировка не нужна)
+                em.persist(flat);
+                em.flush(); // Форсируем INSERT чтобы получить ID
+                log.debug("FlatRepository.save() - квартира создана с id={}", flat.getId());
+            } else {
+                // Существующая квартира - блокируем и обновляем
+                Flat existingFlat = lockWaitMetrics.findForUpdate(em, Flat.class, flat.getId(), "flat.update");
+                if (existingFlat == null) {
+                    throw new RuntimeException("Flat not found with id: " + flat.getId());
+                }
+                
+                // Замененные координаты могли остаться без квартир - отдаем их фоновой очистке
+                Coordinates previousCoordinates = existingFlat.getCoordinates();
+                if (previousCoordinates != null && flat.getCoordinates() != null
+                        && !previousCoordinates.getId().equals(flat.getCoordinates().getId())) {
+                    coordinatesRepository.recordCandidate(previousCoordinates.getId());
+                }
+                
+                // Обновляем поля
+                existingFlat.setName(flat.getName());
+                existingFlat.setCoordinates(flat.getCoordinates());
+                existingFlat.setArea(flat.getArea());
+                existingFlat.setPrice(flat.getPrice());
+                existingFlat.setBalcony(flat.getBalcony());
+                existingFlat.setTimeToMetroOnFoot(flat.getTimeToMetroOnFoot());
+                existingFlat.setNumberOfRooms(flat.getNumberOfRooms());
+                existingFlat.setFurnish(flat.getFurnish());
+                existingFlat.setView(flat.getView());
+                existingFlat.setHouse(flat.getHouse());
+                existingFlat.setFloor(flat.getFloor());
+                existingFlat.setLivingSpace(flat.getLivingSpace());
+                
+                em.flush(); // Форсируем UPDATE
+                flat = existingFlat;
+                log.debug("FlatRepository.save() - квартира обновлена с id={}", flat.getId());
+            }
+            
+            return flat;
+            
+        } catch (Exception e) {
+            log.error("Ошибка сохранения квартиры: {}", e.getMessage());
+            throw new RuntimeException("Error saving flat: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Сохранить координаты
+     */
+    public Coordinates saveCoordinates(Coordinates coordinates) {
+        log.debug("FlatRepository.saveCoordinates() - сохранение координат");
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            if (coordinates.getId() == null) {
+                // Новые координаты - persist
+                em.persist(coordinates);
+                em.flush(); // Форсируем INSERT чтобы получить ID
+                log.debug("FlatRepository.saveCoordinates() - координаты созданы с id={}", coordinates.getId());
+            } else {
+                // Существующие координаты - merge
+                coordinates = em.merge(coordinates);
+                em.flush(); // Форсируем UPDATE
+                log.debug("FlatRepository.saveCoordinates() - координаты обновлены с id={}", coordinates.getId());
+            }
+            
+            return coordinates;
+            
+        } catch (Exception e) {
+            log.error("Ошибка сохранения координат: {}", e.getMessage());
+            throw new RuntimeException("Error saving coordinates: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Удалить квартиру по ID с транзакцией
+     */
+    @Transactional
+    public boolean deleteById(Long id) {
+        log.debug("FlatRepository.deleteById() - удаление квартиры с id={}", id);
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            // Блокируем строку в БД для предотвращения race condition
+            Flat flat = lockWaitMetrics.findForUpdate(em, Flat.class, id, "flat.delete");
+            if (flat == null) {
+                log.debug("FlatRepository.deleteById() - квартира не найдена для удаления");
+                return false;
+            }
+            
+            // Неиспользуемые координаты удаляются фоновой очисткой (OrphanCoordinatesSweeper)
+            if (flat.getCoordinates() != null) {
+                coordinatesRepository.recordCandidate(flat.getCoordinates().getId());
+            }
+            em.remove(flat);
+            
+            log.debug("FlatRepository.deleteById() - квартира успешно удалена");
+            return true;
+            
+        } catch (Exception e) {
+            log.error("Ошибка удаления квартиры: {}", e.getMessage());
+            throw new RuntimeException("Error deleting flat: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Подсчитать количество квартир с количеством комнат больше заданного
+     */
+    public Long countByRoomsGreaterThan(Integer minRooms) {
+        log.debug("FlatRepository.countByRoomsGreaterThan() - подсчет квартир с комнатами > {}", minRooms);
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<Long> query = em.createQuery(
+                "SELECT COUNT(f) FROM Flat f WHERE f.numberOfRooms > :minRooms", Long.class);
+            query.setParameter("minRooms", minRooms);
+            Long count = query.getSingleResult();
+            log.debug("FlatRepository.countByRoomsGreaterThan() - найдено квартир: {}", count);
+            return count;
+            
+        } catch (Exception e) {
+            log.error("Ошибка подсчета квартир по комнатам: {}", e.getMessage());
+            throw new RuntimeException("Error counting flats by rooms: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти квартиры, содержащие подстроку в названии
+     */
+    public List<Flat> findByNameContaining(String nameSubstring) {
+        log.debug("FlatRepository.findByNameContaining() - поиск квартир с названием содержащим: {}", nameSubstring);
+        
+        try {
+            EntityManager em = getEntityManager();
+            String searchString = nameSubstring.trim().toLowerCase();
+            
+            TypedQuery<Flat> query = em.createQuery(
+                "SELECT f FROM Flat f WHERE LOWER(f.name) LIKE :search ORDER BY f.name ASC", Flat.class);
+            query.setParameter("search", "%" + searchString + "%");
+            
+            List<Flat> flats = query.getResultList();
+            log.debug("FlatRepository.findByNameContaining() - найдено квартир: {}", flats.size());
+            return flats;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска квартир по названию: {}", e.getMessage());
+            throw new RuntimeException("Error finding flats by name: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти квартиры с жилой площадью меньше заданной
+     */
+    public List<Flat> findByLivingSpaceLessThan(Long maxSpace) {
+        log.debug("FlatRepository.findByLivingSpaceLessThan() - поиск квартир с площадью < {}", maxSpace);
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<Flat> query = em.createQuery(
+                "SELECT f FROM Flat f WHERE f.livingSpace < :maxSpace", Flat.class);
+            query.setParameter("maxSpace", maxSpace);
+            
+            List<Flat> flats = query.getResultList();
+            log.debug("FlatRepository.findByLivingSpaceLessThan() - найдено квартир: {}", flats.size());
+            return flats;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска квартир по жилой площади: {}", e.getMessage());
+            throw new RuntimeException("Error finding flats by living space: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти самую дешевую квартиру с балконом
+     */
+    public Flat findCheapestWithBalcony() {
+        log.debug("FlatRepository.findCheapestWithBalcony() - поиск самой дешевой квартиры с балконом");
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<Flat> query = em.createQuery(
+                "SELECT f FROM Flat f WHERE f.balcony = true ORDER BY f.price ASC", Flat.class);
+            query.setMaxResults(1);
+            
+            List<Flat> flats = query.getResultList();
+            if (!flats.isEmpty()) {
+                Flat cheapest = flats.get(0);
+                log.debug("FlatRepository.findCheapestWithBalcony() - найдена квартира: {}, цена: {}", cheapest.getName(), cheapest.getPrice());
+                return cheapest;
+            } else {
+                log.debug("FlatRepository.findCheapestWithBalcony() - квартиры с балконом не найдены");
+                return null;
+            }
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска самой дешевой квартиры с балконом: {}", e.getMessage());
+            throw new RuntimeException("Error finding cheapest flat with balcony: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти все квартиры, отсортированные по времени до метро
+     */
+    public List<Flat> findAllSortedByMetroTime() {
+        log.debug("FlatRepository.findAllSortedByMetroTime() - поиск всех квартир, отсортированных по времени до метро");
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<Flat> query = em.createQuery(
+                "SELECT f FROM Flat f ORDER BY f.timeToMetroOnFoot ASC", Flat.class);
+            
+            List<Flat> flats = query.getResultList();
+            log.debug("FlatRepository.findAllSortedByMetroTime() - найдено квартир: {}", flats.size());
+            return flats;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска квартир, отсортированных по времени до метро: {}", e.getMessage());
+            throw new RuntimeException("Error finding flats sorted by metro time: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Подсчитать количество квартир с заданным видом на определенном этаже дома
+     * (исключая конкретную квартиру, если указан её ID)
+     */
+    public Long countByHouseAndFloorAndView(Long houseId, Integer floor, View view, Long excludeFlatId) {
+        log.debugf("FlatRepository.countByHouseAndFloorAndView() - подсчет квартир: house=%d, floor=%d, view=%s, exclude=%s",
+            houseId, floor, view, excludeFlatId);
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            String jpql = "SELECT COUNT(f) FROM Flat f WHERE f.house.id = :houseId AND f.floor = :floor AND f.view = :view";
+            if (excludeFlatId != null) {
+                jpql += " AND f.id != :flatId";
+            }
+            
+            TypedQuery<Long> query = em.createQuery(jpql, Long.class);
+            query.setParameter("houseId", houseId);
+            query.setParameter("floor", floor);
+            query.setParameter("view", view);
+            
+            if (excludeFlatId != null) {
+                query.setParameter("flatId", excludeFlatId);
+            }
+            
+            Long count = query.getSingleResult();
+            log.debug("FlatRepository.countByHouseAndFloorAndView() - найдено: {}", count);
+            return count;
+            
+        } catch (Exception e) {
+            log.error("Ошибка подсчета квартир: {}", e.getMessage());
+            throw new RuntimeException("Error counting flats: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Подсчитать количество квартир с заданными координатами и этажом
+     * (исключая конкретную квартиру, если указан её ID)
+     */
+    public Long countByCoordinatesAndFloor(Integer x, Integer y, Integer floor, Long excludeFlatId) {
+        log.debugf("FlatRepository.countByCoordinatesAndFloor() - подсчет квартир: x=%d, y=%d, floor=%d, exclude=%s",
+            x, y, floor, excludeFlatId);
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            String jpql = "SELECT COUNT(f) FROM Flat f WHERE f.coordinates.x = :x AND f.coordinates.y = :y AND f.floor = :floor";
+            if (excludeFlatId != null) {
+                jpql += " AND f.id != :flatId";
+            }
+            
+            TypedQuery<Long> query = em.createQuery(jpql, Long.class);
+            query.setParameter("x", x);
+            query.setParameter("y", y);
+            query.setParameter("floor", floor);
+            
+            if (excludeFlatId != null) {
+                query.setParameter("flatId", excludeFlatId);
+            }
+            
+            Long count = query.getSingleResult();
+            log.debug("FlatRepository.countByCoordinatesAndFloor() - найдено: {}", count);
+            return count;
+            
+        } catch (Exception e) {
+            log.error("Ошибка подсчета квартир по координатам: {}", e.getMessage());
+            throw new RuntimeException("Error counting flats by coordinates: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.arekalov.islab1.repository;
+
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.logging.Log;
+import com.arekalov.islab1.metrics.LockWaitMetrics;
+import com.arekalov.islab1.service.EntityManagerService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Репозиторий для работы с домами через JPA API
+ */
+@ApplicationScoped
+public class JpaHouseRepository implements HouseRepository {
+    
+    private static final Log log = Log.get(JpaHouseRepository.class);
+    
+    @Inject
+    private EntityManagerService entityManagerService;
+    
+    @Inject
+    private LockWaitMetrics lockWaitMetrics;
+    
+    @Inject
+    private CoordinatesRepository coordinatesRepository;
+    
+    /**
+     * Получить EntityManager
+     */
+    private EntityManager getEntityManager() {
+        return entityManagerService.getEntityManager();
+    }
+    
+    /**
+     * Сохранить дом с транзакцией
+     */
+    @Transactional
+    public House save(House house) {
+        log.debug("HouseRepository.save() - сохранение дома: {}", house.getName());
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            if (house.getId() == null) {
+                // Новый дом - persist (блокировка не нужна)
+                em.persist(house);
+                em.flush(); // Форсируем INSERT чтобы получить ID
+                log.debug("HouseRepository.save() - дом создан с id={}", house.getId());
+            } else {
+                // Существующий дом - блокируем и обновляем
+                House existingHouse = lockWaitMetrics.findForUpdate(em, House.class, house.getId(), "house.update");
+                if (existingHouse == null) {
+                    throw new RuntimeException("House not found with id: " + house.getId());
+                }
+                
+                // Обновляем поля
+                existingHouse.setName(house.getName());
+                existingHouse.setYear(house.getYear());
+                existingHouse.setNumberOfFlatsOnFloor(house.getNumberOfFlatsOnFloor());
+                
+                em.flush(); // Форсируем UPDATE
+                house = existingHouse;
+                log.debug("HouseRepository.save() - дом обновлен с id={}", house.getId());
+            }
+            
+            return house;
+            
+        } catch (Exception e) {
+            log.error("Ошибка сохранения дома: {}", e.getMessage());
+            throw new RuntimeException("Error saving house: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти все дома с пагинацией
+     */
+    public List<House> findAll(int page, int size) {
+        log.debug("HouseRepository.findAll() - поиск домов с пагинацией: page={}, size={}", page, size);
+        
+        // Валидация параметров
+        if (page < 0) {
+            log.warn("HouseRepository.findAll() - page не может быть отрицательным: {}", page);
+            page = 0;
+        }
+        if (size <= 0) {
+            log.warn("HouseRepository.findAll() - size должен быть положительным: {}", size);
+            size = 10;
+        }
+        if (size > 100) {
+            log.warn("HouseRepository.findAll() - size слишком большой: {}", size);
+            size = 100;
+        }
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            TypedQuery<House> query = em.createQuery("SELECT h FROM House h ORDER BY h.id ASC", House.class);
+            query.setFirstResult(page * size);
+            query.setMaxResults(size);
+            
+            List<House> houses = query.getResultList();
+            log.debug("HouseRepository.findAll() - найдено домов: {}", houses.size());
+            return houses;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска домов с пагинацией: {}", e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Error finding houses with pagination: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Подсчитать общее количество домов
+     */
+    public long count() {
+        log.debug("HouseRepository.count() - подсчет общего количества домов");
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<Long> query = em.createQuery("SELECT COUNT(h) FROM House h", Long.class);
+            Long count = query.getSingleResult();
+            log.debug("HouseRepository.count() - общее количество домов: {}", count);
+            return count;
+            
+        } catch (Exception e) {
+            log.error("Ошибка подсчета домов: {}", e.getMessage());
+            throw new RuntimeException("Error counting houses: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти все дома (без пагинации)
+     */
+    public List<House> findAll() {
+        log.debug("HouseRepository.findAll() - поиск всех домов");
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<House> query = em.createQuery("SELECT h FROM House h ORDER BY h.id", House.class);
+            List<House> houses = query.getResultList();
+            log.debug("HouseRepository.findAll() - найдено домов: {}", houses.size());
+            return houses;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска всех домов: {}", e.getMessage());
+            throw new RuntimeException("Error finding all houses: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти дом по ID
+     */
+    public House findById(Long id) {
+        log.debug("HouseRepository.findById() - поиск дома с id={}", id);
+        
+        try {
+            EntityManager em = getEntityManager();
+            House house = em.find(House.class, id);
+            
+            if (house != null) {
+                log.debug("HouseRepository.findById() - дом найден: {}", house.getName());
+            } else {
+                log.debug("HouseRepository.findById() - дом с id={} не найден", id);
+            }
+            
+            return house;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска дома по ID: {}", e.getMessage());
+            throw new RuntimeException("Error finding house by id: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти дома с пагинацией, выбирая только нужные колонки
+     */
+    public List<Object[]> findProjected(int page, int size, Set<HouseField> fields) {
+        log.debug("HouseRepository.findProjected() - поиск домов: page={}, size={}, fields={}", page, size, fields);
+        
+        page = Math.max(page, 0);
+        size = size <= 0 ? 10 : Math.min(size, 100);
+        
+        try {
+            Query query = getEntityManager().createQuery(
+                "SELECT " + ProjectedField.select(fields) + " FROM House h ORDER BY h.id ASC");
+            query.setFirstResult(page * size);
+            query.setMaxResults(size);
+            
+            List<Object[]> rows = toRows(query.getResultList());
+            log.debug("HouseRepository.findProjected() - найдено домов: {}", rows.size());
+            return rows;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска домов с проекцией: {}", e.getMessage());
+            throw new RuntimeException("Error finding projected houses: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти дом по ID, выбирая только нужные колонки
+     */
+    public Object[] findProjectedById(Long id, Set<HouseField> fields) {
+        log.debug("HouseRepository.findProjectedById() - поиск дома с id={}, fields={}", id, fields);
+        
+        try {
+            Query query = getEntityManager().createQuery(
+                "SELECT " + ProjectedField.select(fields) + " FROM House h WHERE h.id = :id");
+            query.setParameter("id", id);
+            
+            List<Object[]> rows = toRows(query.getResultList());
+            return rows.isEmpty() ? null : rows.get(0);
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска дома по ID с проекцией: {}", e.getMessage());
+            throw new RuntimeException("Error finding projected house by id: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Привести результат запроса к строкам: при одной колонке JPA возвращает значения, а не массивы
+     */
+    private static List<Object[]> toRows(List<?> result) {
+        List<Object[]> rows = new ArrayList<>(result.size());
+        for (Object row : result) {
+            rows.add(row instanceof Object[] values ? values : new Object[] {row});
+        }
+        return rows;
+    }
+    
+    /**
+     * Найти дом с пессимистической блокировкой (для проверки ограничений)
+     * Это предотвращает race conditions при создании квартир в параллельных потоках
+     */
+    @Transactional
+    public House findByIdWithLock(Long id) {
+        log.debug("HouseRepository.findByIdWithLock() - поиск дома с блокировкой, id={}", id);
+        
+        try {
+            EntityManager em = getEntityManager();
+            House house = lockWaitMetrics.findForUpdate(em, House.class, id, "house.constraint");
+            
+            if (house != null) {
+                log.debug("HouseRepository.findByIdWithLock() - дом найден и заблокирован: {}", house.getName());
+            } else {
+                log.debug("HouseRepository.findByIdWithLock() - дом с id={} не найден", id);
+            }
+            
+            return house;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска дома с блокировкой: {}", e.getMessage());
+            throw new RuntimeException("Error finding house with lock: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Получить количество квартир в доме
+     */
+    public long getFlatsCount(Long houseId) {
+        log.debug("HouseRepository.getFlatsCount() - подсчет квартир для дома с id={}", houseId);
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<Long> query = em.createQuery(
+                "SELECT COUNT(f) FROM Flat f WHERE f.house.id = :houseId", Long.class);
+            query.setParameter("houseId", houseId);
+            Long count = query.getSingleResult();
+            log.debug("HouseRepository.getFlatsCount() - найдено квартир: {}", count);
+            return count;
+            
+        } catch (Exception e) {
+            log.error("Ошибка подсчета квартир в доме: {}", e.getMessage());
+            throw new RuntimeException("Error counting flats in house: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Проверить, есть ли квартиры в доме
+     */
+    public boolean hasFlats(Long houseId) {
+        return getFlatsCount(houseId) > 0;
+    }
+    
+    /**
+     * Удалить все квартиры в доме
+     */
+    @Transactional
+    public void deleteFlatsInHouse(Long houseId) {
+        log.debug("HouseRepository.deleteFlatsInHouse() - удаление всех квартир в доме с id={}", houseId);
+        
+        try {
+            EntityManager em = getEntityManager();
+            // Координаты удаляемых квартир проверит фоновая очистка (OrphanCoordinatesSweeper)
+            coordinatesRepository.recordCandidatesOfHouse(houseId);
+            int deletedCount = em.createQuery("DELETE FROM Flat f WHERE f.house.id = :houseId")
+                .setParameter("houseId", houseId)
+                .executeUpdate();
+            log.debug("HouseRepository.deleteFlatsInHouse() - удалено квартир: {}", deletedCount);
+            
+        } catch (Exception e) {
+            log.error("Ошибка удаления квартир в доме: {}", e.getMessage());
+            throw new RuntimeException("Error deleting flats in house: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Удалить дом с каскадным удалением связанных квартир
+     */
+    @Transactional
+    public boolean deleteById(Long id) {
+        log.debug("HouseRepository.deleteById() - каскадное удаление дома с id={}", id);
+        
+        try {
+            EntityManager em = getEntityManager();
+            
+            // Блокируем строку в БД для предотвращения race condition
+            House house = lockWaitMetrics.findForUpdate(em, House.class, id, "house.delete");
+            if (house == null) {
+                log.debug("HouseRepository.deleteById() - дом не найден для удаления");
+                return false;
+            }
+            
+            // Сначала удаляем все квартиры в доме (каскадное удаление)
+            long flatsCount = getFlatsCount(id);
+            if (flatsCount > 0) {
+                log.debug("HouseRepository.deleteById() - найдено {} квартир(ы) для каскадного удаления", flatsCount);
+                deleteFlatsInHouse(id);
+                log.debug("HouseRepository.deleteById() - все квартиры в доме удалены");
+            }
+            
+            // Теперь удаляем сам дом
+            log.debug("HouseRepository.deleteById() - выполняем DELETE дома");
+            em.remove(house);
+            log.debug("HouseRepository.deleteById() - дом и все связанные квартиры успешно удалены");
+            return true;
+            
+        } catch (Exception e) {
+            log.error("Ошибка каскадного удаления дома: {}", e.getMessage());
+            throw new RuntimeException("Error deleting house with cascade: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Поиск по названию
+     */
+    public List<House> findByNameContaining(String substring) {
+        log.debug("HouseRepository.findByNameContaining() - поиск домов с подстрокой: {}", substring);
+        
+        try {
+            EntityManager em = getEntityManager();
+            TypedQuery<House> query = em.createQuery(
+                "SELECT h FROM House h WHERE LOWER(h.name) LIKE :search", House.class);
+            query.setParameter("search", "%" + substring.toLowerCase() + "%");
+            
+            List<House> houses = query.getResultList();
+            log.debug("HouseRepository.findByNameContaining() - найдено домов: {}", houses.size());
+            return houses;
+            
+        } catch (Exception e) {
+            log.error("Ошибка поиска домов по названию: {}", e.getMessage());
+            throw new RuntimeException("Error finding houses by name: " + e.getMessage(), e);
+        }
+    }
+}
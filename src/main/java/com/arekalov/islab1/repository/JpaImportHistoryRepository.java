@@ -0,0 +1,103 @@
+package com.arekalov.islab1.repository;
+
+import com.arekalov.islab1.entity.ImportHistory;
+import com.arekalov.islab1.logging.Log;
+import com.arekalov.islab1.service.EntityManagerService;
+import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import java.util.List;
+
+/**
+ * Репозиторий для работы с историей импорта
+ */
+@Stateless
+public class JpaImportHistoryRepository implements ImportHistoryRepository {
+    
+    private static final Log log = Log.get(JpaImportHistoryRepository.class);
+    
+    @Inject
+    private EntityManagerService emService;
+    
+    /**
+     * Сохранить запись об импорте
+     */
+    public ImportHistory save(ImportHistory importHistory) {
+        log.debug("ImportHistoryRepository.save() - сохранение записи импорта");
+        
+        EntityManager em = emService.getEntityManager();
+        
+        if (importHistory.getId() == null) {
+            em.persist(importHistory);
+            log.debug("ImportHistoryRepository.save() - запись создана, id={}", importHistory.getId());
+        } else {
+            importHistory = em.merge(importHistory);
+            log.debug("ImportHistoryRepository.save() - запись обновлена, id={}", importHistory.getId());
+        }
+        
+        return importHistory;
+    }
+    
+    /**
+     * Найти запись по ID
+     */
+    public ImportHistory findById(Long id) {
+        log.debug("ImportHistoryRepository.findById() - поиск записи id={}", id);
+        
+        EntityManager em = emService.getEntityManager();
+        return em.find(ImportHistory.class, id);
+    }
+    
+    /**
+     * Получить все записи с пагинацией
+     */
+    public List<ImportHistory> findAll(int page, int size) {
+        log.debug("ImportHistoryRepository.findAll() - страница {}, размер {}", page, size);
+        
+        EntityManager em = emService.getEntityManager();
+        
+        TypedQuery<ImportHistory> query = em.createQuery(
+            "SELECT ih FROM ImportHistory ih ORDER BY ih.operationTime DESC",
+            ImportHistory.class
+        );
+        
+        query.setFirstResult(page * size);
+        query.setMaxResults(size);
+        
+        return query.getResultList();
+    }
+    
+    /**
+     * Подсчитать общее количество записей
+     */
+    public long count() {
+        log.debug("ImportHistoryRepository.count() - подсчет записей");
+        
+        EntityManager em = emService.getEntityManager();
+        
+        return em.createQuery(
+            "SELECT COUNT(ih) FROM ImportHistory ih",
+            Long.class
+        ).getSingleResult();
+    }
+    
+    /**
+     * Получить последние N записей
+     */
+    public List<ImportHistory> findLatest(int limit) {
+        log.debug("ImportHistoryRepository.findLatest() - последние {} записей", limit);
+        
+        EntityManager em = emService.getEntityManager();
+        
+        TypedQuery<ImportHistory> query = em.createQuery(
+            "SELECT ih FROM ImportHistory ih ORDER BY ih.operationTime DESC",
+            ImportHistory.class
+        );
+        
+        query.setMaxResults(limit);
+        
+        return query.getResultList();
+    }
+}
+
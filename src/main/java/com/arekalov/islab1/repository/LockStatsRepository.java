@@ -0,0 +1,75 @@
+package com.arekalov.islab1.repository;
+
+import com.arekalov.islab1.service.EntityManagerService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Чтение блокировок PostgreSQL (pg_locks, pg_stat_activity) текущей базы
+ */
+@ApplicationScoped
+public class LockStatsRepository {
+    
+    private static final Logger logger = Logger.getLogger(LockStatsRepository.class.getName());
+    
+    /**
+     * Сессия, ожидающая блокировку
+     *
+     * @param blockingPids сессии, удерживающие блокировку (через запятую)
+     */
+    public record BlockedSession(int pid, String blockingPids, String lockType, String relation,
+                                 String mode, long waitMs, String query) {
+    }
+    
+    @Inject
+    private EntityManagerService entityManagerService;
+    
+    /**
+     * Получить EntityManager
+     */
+    private EntityManager getEntityManager() {
+        return entityManagerService.getEntityManager();
+    }
+    
+    /**
+     * Найти сессии, ожидающие блокировку, от самого долгого ожидания
+     */
+    @SuppressWarnings("unchecked")
+    public List<BlockedSession> findBlockedSessions(int limit) {
+        try {
+            List<Object[]> rows = getEntityManager()
+                .createNativeQuery(
+                    "SELECT a.pid, array_to_string(pg_blocking_pids(a.pid), ','), l.locktype, " +
+                    "l.relation::regclass::text, l.mode, " +
+                    "(EXTRACT(EPOCH FROM (now() - COALESCE(a.query_start, now()))) * 1000)::bigint, " +
+                    "left(a.query, 200) " +
+                    "FROM pg_locks l JOIN pg_stat_activity a ON a.pid = l.pid " +
+                    "WHERE NOT l.granted AND a.datname = current_database() " +
+                    "ORDER BY a.query_start LIMIT ?1")
+                .setParameter(1, limit)
+                .getResultList();
+            
+            List<BlockedSession> result = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                result.add(new BlockedSession(
+                    ((Number) row[0]).intValue(),
+                    (String) row[1],
+                    (String) row[2],
+                    (String) row[3],
+                    (String) row[4],
+                    ((Number) row[5]).longValue(),
+                    (String) row[6]));
+            }
+            return result;
+            
+        } catch (Exception e) {
+            logger.severe("Ошибка чтения блокировок: " + e.getMessage());
+            throw new RuntimeException("Error reading pg_locks: " + e.getMessage(), e);
+        }
+    }
+}
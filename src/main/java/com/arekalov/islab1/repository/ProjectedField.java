@@ -0,0 +1,80 @@
+package com.arekalov.islab1.repository;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Поле ответа, которое можно запросить параметром fields= (sparse fieldsets)
+ * 
+ * Поле знает выражения JPQL, которые нужно выбрать для него, поэтому узкий
+ * запрос читает только нужные колонки и не делает лишних JOIN.
+ */
+public interface ProjectedField {
+    
+    /**
+     * Имя поля в ответе
+     */
+    String fieldName();
+    
+    /**
+     * Выражения JPQL для SELECT; значения в строке результата идут в том же порядке
+     */
+    List<String> columns();
+    
+    /**
+     * Разобрать параметр fields=id,name,price
+     *
+     * @return поля в порядке объявления или null, если параметр не задан (все поля)
+     * @throws IllegalArgumentException если поле неизвестно
+     */
+    static <F extends Enum<F> & ProjectedField> Set<F> parse(Class<F> type, String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        
+        Set<F> result = EnumSet.noneOf(type);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            F field = Arrays.stream(type.getEnumConstants())
+                .filter(candidate -> candidate.fieldName().equals(trimmed))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Неизвестное поле: " + trimmed
+                    + ". Доступные поля: " + Arrays.stream(type.getEnumConstants())
+                        .map(ProjectedField::fieldName)
+                        .collect(Collectors.joining(", "))));
+            result.add(field);
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("Параметр 'fields' не содержит ни одного поля");
+        }
+        return result;
+    }
+    
+    /**
+     * Список выражений для SELECT
+     */
+    static String select(Collection<? extends ProjectedField> fields) {
+        return fields.stream()
+            .flatMap(field -> field.columns().stream())
+            .collect(Collectors.joining(", "));
+    }
+    
+    /**
+     * Компактный ключ набора полей (для ETag и объединения одинаковых запросов)
+     */
+    static String key(Collection<? extends ProjectedField> fields) {
+        if (fields == null) {
+            return "all";
+        }
+        return fields.stream()
+            .map(ProjectedField::fieldName)
+            .collect(Collectors.joining("+"));
+    }
+}
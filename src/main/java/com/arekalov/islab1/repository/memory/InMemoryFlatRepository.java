@@ -0,0 +1,253 @@
+package com.arekalov.islab1.repository.memory;
+
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.entity.View;
+import com.arekalov.islab1.repository.FlatField;
+import com.arekalov.islab1.repository.FlatRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Репозиторий квартир в памяти с теми же запросами и ограничениями, что JpaFlatRepository
+ * (изоляция транзакций слабее, чем в БД - см. InMemoryStore).
+ * Включается как CDI-альтернатива в beans.xml либо создается напрямую: new InMemoryFlatRepository(store).
+ */
+@Alternative
+@ApplicationScoped
+public class InMemoryFlatRepository implements FlatRepository {
+    
+    @Inject
+    private InMemoryStore store;
+    
+    public InMemoryFlatRepository() {
+    }
+    
+    public InMemoryFlatRepository(InMemoryStore store) {
+        this.store = store;
+    }
+    
+    @Override
+    public List<Flat> findAll(int page, int size, String sortBy) {
+        if (page < 0) {
+            page = 0;
+        }
+        if (size <= 0) {
+            size = 10;
+        }
+        if (size > 100) {
+            size = 100;
+        }
+        
+        Comparator<Flat> order = switch (sortBy == null ? "id" : sortBy) {
+            case "name" -> nullsLast(Flat::getName);
+            case "price" -> nullsLast(Flat::getPrice);
+            case "area" -> nullsLast(Flat::getArea);
+            default -> Comparator.comparing(Flat::getId);
+        };
+        
+        return store.copyFlats(rows()
+            .sorted(order.thenComparing(Flat::getId))
+            .skip((long) page * size)
+            .limit(size)
+            .toList());
+    }
+    
+    @Override
+    public List<Flat> findAll() {
+        return findAll(0, 20, "id");
+    }
+    
+    @Override
+    public List<Object[]> findProjected(int page, int size, String sortBy, Set<FlatField> fields) {
+        return findAll(page, size, sortBy).stream()
+            .map(flat -> FlatField.row(flat, fields))
+            .toList();
+    }
+    
+    @Override
+    public Long count() {
+        return (long) store.flats.size();
+    }
+    
+    @Override
+    public Flat findById(Long id) {
+        return id != null ? store.copy(store.flats.get(id)) : null;
+    }
+    
+    @Override
+    public Object[] findProjectedById(Long id, Set<FlatField> fields) {
+        Flat flat = findById(id);
+        return flat != null ? FlatField.row(flat, fields) : null;
+    }
+    
+    @Override
+    public Flat save(Flat flat) {
+        if (flat.getId() != null) {
+            store.lockRow(Flat.class, flat.getId());
+        }
+        
+        synchronized (store.writeLock) {
+            Coordinates coordinates = flat.getCoordinates() != null ? persistCoordinates(flat.getCoordinates()) : null;
+            House house = flat.getHouse() != null ? resolveHouse(flat.getHouse()) : null;
+            
+            Flat row;
+            if (flat.getId() == null) {
+                row = store.copy(flat);
+                row.setId(store.flatIds.incrementAndGet());
+            } else {
+                Flat existing = store.flats.get(flat.getId());
+                if (existing == null) {
+                    throw new RuntimeException("Error saving flat: Flat not found with id: " + flat.getId());
+                }
+                row = store.copy(existing);
+                row.setName(flat.getName());
+                row.setArea(flat.getArea());
+                row.setPrice(flat.getPrice());
+                row.setBalcony(flat.getBalcony());
+                row.setTimeToMetroOnFoot(flat.getTimeToMetroOnFoot());
+                row.setNumberOfRooms(flat.getNumberOfRooms());
+                row.setFurnish(flat.getFurnish());
+                row.setView(flat.getView());
+                row.setFloor(flat.getFloor());
+                row.setLivingSpace(flat.getLivingSpace());
+            }
+            row.setCoordinates(coordinates);
+            row.setHouse(house);
+            
+            store.writeFlat(row.getId(), row);
+            flat.setId(row.getId());
+            return store.copy(row);
+        }
+    }
+    
+    @Override
+    public Coordinates saveCoordinates(Coordinates coordinates) {
+        synchronized (store.writeLock) {
+            return store.copy(persistCoordinates(coordinates));
+        }
+    }
+    
+    @Override
+    public boolean deleteById(Long id) {
+        store.lockRow(Flat.class, id);
+        synchronized (store.writeLock) {
+            if (id == null || !store.flats.containsKey(id)) {
+                return false;
+            }
+            // Неиспользуемые координаты, как и в БД, остаются до фоновой очистки
+            store.writeFlat(id, null);
+            return true;
+        }
+    }
+    
+    @Override
+    public Long countByRoomsGreaterThan(Integer minRooms) {
+        return rows().filter(flat -> flat.getNumberOfRooms() != null && flat.getNumberOfRooms() > minRooms).count();
+    }
+    
+    @Override
+    public List<Flat> findByNameContaining(String nameSubstring) {
+        String search = nameSubstring.trim().toLowerCase();
+        return store.copyFlats(rows()
+            .filter(flat -> flat.getName() != null && flat.getName().toLowerCase().contains(search))
+            .sorted(nullsLast(Flat::getName))
+            .toList());
+    }
+    
+    @Override
+    public List<Flat> findByLivingSpaceLessThan(Long maxSpace) {
+        return store.copyFlats(rows()
+            .filter(flat -> flat.getLivingSpace() != null && flat.getLivingSpace() < maxSpace)
+            .toList());
+    }
+    
+    @Override
+    public Flat findCheapestWithBalcony() {
+        return store.copy(rows()
+            .filter(flat -> Boolean.TRUE.equals(flat.getBalcony()))
+            .min(nullsLast(Flat::getPrice).thenComparing(Flat::getId))
+            .orElse(null));
+    }
+    
+    @Override
+    public List<Flat> findAllSortedByMetroTime() {
+        return store.copyFlats(rows()
+            .sorted(nullsLast(Flat::getTimeToMetroOnFoot).thenComparing(Flat::getId))
+            .toList());
+    }
+    
+    @Override
+    public Long countByHouseAndFloorAndView(Long houseId, Integer floor, View view, Long excludeFlatId) {
+        return countIndexed(store.flatsByHouse.get(houseId), excludeFlatId,
+            flat -> floor.equals(flat.getFloor()) && view == flat.getView());
+    }
+    
+    @Override
+    public Long countByCoordinatesAndFloor(Integer x, Integer y, Integer floor, Long excludeFlatId) {
+        return countIndexed(store.flatsByPlacement.get(new InMemoryStore.PlacementKey(x, y, floor)), excludeFlatId,
+            flat -> true);
+    }
+    
+    private long countIndexed(Set<Long> ids, Long excludeFlatId, Predicate<Flat> condition) {
+        if (ids == null) {
+            return 0L;
+        }
+        long count = 0;
+        for (Long id : ids) {
+            Flat flat = store.flats.get(id);
+            if (flat != null && !id.equals(excludeFlatId) && condition.test(flat)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private Stream<Flat> rows() {
+        return store.flats.values().stream();
+    }
+    
+    /**
+     * Каскад PERSIST/MERGE для координат; вызывается под монитором записи
+     */
+    private Coordinates persistCoordinates(Coordinates coordinates) {
+        Coordinates row = store.copy(coordinates);
+        if (row.getId() == null) {
+            row.setId(store.coordinatesIds.incrementAndGet());
+        }
+        store.writeCoordinates(row.getId(), row);
+        coordinates.setId(row.getId());
+        return row;
+    }
+    
+    /**
+     * Каскад PERSIST для нового дома; существующий дом должен быть в хранилище (внешний ключ)
+     */
+    private House resolveHouse(House house) {
+        if (house.getId() == null) {
+            House row = store.copy(house);
+            row.setId(store.houseIds.incrementAndGet());
+            store.writeHouse(row.getId(), row);
+            house.setId(row.getId());
+            return row;
+        }
+        House row = store.houses.get(house.getId());
+        if (row == null) {
+            throw new RuntimeException("Error saving flat: House not found with id: " + house.getId());
+        }
+        return row;
+    }
+    
+    private static <T extends Comparable<? super T>> Comparator<Flat> nullsLast(Function<Flat, T> field) {
+        return Comparator.comparing(field, Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+}
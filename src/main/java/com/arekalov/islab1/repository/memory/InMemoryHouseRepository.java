@@ -0,0 +1,171 @@
+package com.arekalov.islab1.repository.memory;
+
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.repository.HouseField;
+import com.arekalov.islab1.repository.HouseRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Репозиторий домов в памяти с теми же запросами, что JpaHouseRepository
+ * findByIdWithLock держит блокировку дома до конца транзакции (см. InMemoryStore).
+ */
+@Alternative
+@ApplicationScoped
+public class InMemoryHouseRepository implements HouseRepository {
+    
+    @Inject
+    private InMemoryStore store;
+    
+    public InMemoryHouseRepository() {
+    }
+    
+    public InMemoryHouseRepository(InMemoryStore store) {
+        this.store = store;
+    }
+    
+    @Override
+    public House save(House house) {
+        if (house.getId() != null) {
+            store.lockRow(House.class, house.getId());
+        }
+        
+        synchronized (store.writeLock) {
+            House row;
+            if (house.getId() == null) {
+                row = store.copy(house);
+                row.setId(store.houseIds.incrementAndGet());
+            } else {
+                House existing = store.houses.get(house.getId());
+                if (existing == null) {
+                    throw new RuntimeException("Error saving house: House not found with id: " + house.getId());
+                }
+                row = store.copy(existing);
+                row.setName(house.getName());
+                row.setYear(house.getYear());
+                row.setNumberOfFlatsOnFloor(house.getNumberOfFlatsOnFloor());
+            }
+            store.writeHouse(row.getId(), row);
+            house.setId(row.getId());
+            return store.copy(row);
+        }
+    }
+    
+    @Override
+    public List<House> findAll(int page, int size) {
+        if (page < 0) {
+            page = 0;
+        }
+        if (size <= 0) {
+            size = 10;
+        }
+        if (size > 100) {
+            size = 100;
+        }
+        return copy(store.houses.values().stream()
+            .sorted(Comparator.comparing(House::getId))
+            .skip((long) page * size)
+            .limit(size)
+            .toList());
+    }
+    
+    @Override
+    public List<Object[]> findProjected(int page, int size, Set<HouseField> fields) {
+        return findAll(page, size).stream()
+            .map(house -> HouseField.row(house, fields))
+            .toList();
+    }
+    
+    @Override
+    public long count() {
+        return store.houses.size();
+    }
+    
+    @Override
+    public List<House> findAll() {
+        return copy(store.houses.values().stream()
+            .sorted(Comparator.comparing(House::getId))
+            .toList());
+    }
+    
+    @Override
+    public House findById(Long id) {
+        return id != null ? store.copy(store.houses.get(id)) : null;
+    }
+    
+    @Override
+    public Object[] findProjectedById(Long id, Set<HouseField> fields) {
+        House house = findById(id);
+        return house != null ? HouseField.row(house, fields) : null;
+    }
+    
+    @Override
+    public House findByIdWithLock(Long id) {
+        store.lockRow(House.class, id);
+        return findById(id);
+    }
+    
+    @Override
+    public long getFlatsCount(Long houseId) {
+        Set<Long> ids = store.flatsByHouse.get(houseId);
+        if (ids == null) {
+            return 0;
+        }
+        return ids.stream().filter(store.flats::containsKey).count();
+    }
+    
+    @Override
+    public boolean hasFlats(Long houseId) {
+        return getFlatsCount(houseId) > 0;
+    }
+    
+    @Override
+    public void deleteFlatsInHouse(Long houseId) {
+        synchronized (store.writeLock) {
+            Set<Long> ids = store.flatsByHouse.get(houseId);
+            if (ids == null) {
+                return;
+            }
+            for (Long id : List.copyOf(ids)) {
+                if (store.flats.containsKey(id)) {
+                    store.writeFlat(id, null);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public boolean deleteById(Long id) {
+        store.lockRow(House.class, id);
+        synchronized (store.writeLock) {
+            if (id == null || !store.houses.containsKey(id)) {
+                return false;
+            }
+            deleteFlatsInHouse(id);
+            store.writeHouse(id, null);
+            return true;
+        }
+    }
+    
+    @Override
+    public List<House> findByNameContaining(String substring) {
+        String search = substring.toLowerCase();
+        return copy(store.houses.values().stream()
+            .filter(house -> house.getName() != null && house.getName().toLowerCase().contains(search))
+            .toList());
+    }
+    
+    private List<House> copy(List<House> rows) {
+        List<House> result = new ArrayList<>(rows.size());
+        for (House house : rows) {
+            result.add(store.copy(house));
+        }
+        return result;
+    }
+}
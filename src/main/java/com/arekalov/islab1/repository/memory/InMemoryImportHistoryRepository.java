@@ -0,0 +1,71 @@
+package com.arekalov.islab1.repository.memory;
+
+import com.arekalov.islab1.entity.ImportHistory;
+import com.arekalov.islab1.repository.ImportHistoryRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * История импорта в памяти с теми же запросами, что JpaImportHistoryRepository (изоляция - см. InMemoryStore)
+ */
+@Alternative
+@ApplicationScoped
+public class InMemoryImportHistoryRepository implements ImportHistoryRepository {
+    
+    /** Новые записи первыми, как ORDER BY operationTime DESC */
+    private static final Comparator<ImportHistory> LATEST_FIRST = Comparator
+        .comparing(ImportHistory::getOperationTime, Comparator.nullsLast(Comparator.reverseOrder()))
+        .thenComparing(ImportHistory::getId, Comparator.reverseOrder());
+    
+    @Inject
+    private InMemoryStore store;
+    
+    public InMemoryImportHistoryRepository() {
+    }
+    
+    public InMemoryImportHistoryRepository(InMemoryStore store) {
+        this.store = store;
+    }
+    
+    @Override
+    public ImportHistory save(ImportHistory importHistory) {
+        synchronized (store.writeLock) {
+            if (importHistory.getId() == null) {
+                importHistory.setId(store.importHistoryIds.incrementAndGet());
+            }
+            store.writeImportHistory(importHistory.getId(), importHistory);
+            return importHistory;
+        }
+    }
+    
+    @Override
+    public ImportHistory findById(Long id) {
+        return id != null ? store.importHistory.get(id) : null;
+    }
+    
+    @Override
+    public List<ImportHistory> findAll(int page, int size) {
+        return store.importHistory.values().stream()
+            .sorted(LATEST_FIRST)
+            .skip((long) page * size)
+            .limit(size)
+            .toList();
+    }
+    
+    @Override
+    public long count() {
+        return store.importHistory.size();
+    }
+    
+    @Override
+    public List<ImportHistory> findLatest(int limit) {
+        return store.importHistory.values().stream()
+            .sorted(LATEST_FIRST)
+            .limit(limit)
+            .toList();
+    }
+}
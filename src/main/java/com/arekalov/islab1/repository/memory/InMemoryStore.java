@@ -0,0 +1,433 @@
+package com.arekalov.islab1.repository.memory;
+
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.entity.ImportHistory;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.PessimisticLockException;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Общее хранилище in-memory репозиториев
+ * 
+ * Строки хранятся в ConcurrentHashMap по ID, связи квартир (дом, координаты) хранятся
+ * ссылками и при чтении заменяются текущими копиями - как при загрузке из БД, вызывающий
+ * получает отсоединенный снимок. Индексы по дому и по (x, y, этаж) поддерживают
+ * проверки ограничений без перебора всех квартир. Изменения сериализуются одним
+ * монитором записи, чтение идет без блокировок.
+ * 
+ * Изменения привязываются к текущей JTA-транзакции (TransactionSynchronizationRegistry):
+ * строковые блокировки (findByIdWithLock и обновления) держатся до ее завершения,
+ * а при откате журнал отмены возвращает строки и индексы в прежнее состояние.
+ * Без контейнера транзакцию задает inTransaction(); вне транзакции каждое изменение
+ * фиксируется сразу (autocommit). Счетчики ID при откате не возвращаются, как последовательности в БД.
+ * 
+ * Изоляция слабее READ COMMITTED в PostgreSQL: изменения пишутся в общие таблицы сразу,
+ * поэтому чтения и подсчеты для проверок ограничений видят незафиксированные строки
+ * других транзакций (READ UNCOMMITTED). Проверки под блокировкой дома от этого защищены -
+ * транзакция, изменившая квартиры дома, держит его блокировку до завершения (или отката);
+ * остальные проверки (координаты и этаж в разных домах) и выборки могут учесть строку,
+ * которая затем откатится, и отклонить изменение, которое в БД прошло бы.
+ * 
+ * Ожидание блокировки строки ограничено islab1.memory.lock-timeout-ms: взаимная блокировка
+ * (разный порядок захвата) завершается PessimisticLockException, как обнаружение deadlock
+ * в PostgreSQL, а не зависанием.
+ */
+@ApplicationScoped
+public class InMemoryStore {
+    
+    /** Ключ индекса ограничения "координаты + этаж" */
+    record PlacementKey(Integer x, Integer y, Integer floor) {
+    }
+    
+    final Map<Long, Flat> flats = new ConcurrentHashMap<>();
+    
+    final Map<Long, House> houses = new ConcurrentHashMap<>();
+    
+    final Map<Long, Coordinates> coordinates = new ConcurrentHashMap<>();
+    
+    final Map<Long, ImportHistory> importHistory = new ConcurrentHashMap<>();
+    
+    /** ID дома -> ID квартир */
+    final Map<Long, Set<Long>> flatsByHouse = new ConcurrentHashMap<>();
+    
+    /** (x, y, этаж) -> ID квартир */
+    final Map<PlacementKey, Set<Long>> flatsByPlacement = new ConcurrentHashMap<>();
+    
+    final AtomicLong flatIds = new AtomicLong();
+    
+    final AtomicLong houseIds = new AtomicLong();
+    
+    final AtomicLong coordinatesIds = new AtomicLong();
+    
+    final AtomicLong importHistoryIds = new AtomicLong();
+    
+    /** Монитор записи: изменения строк и индексов */
+    final Object writeLock = new Object();
+    
+    /** Ключ транзакции хранилища в TransactionSynchronizationRegistry */
+    private static final Object TRANSACTION_KEY = InMemoryStore.class.getName() + ".transaction";
+    
+    /** Максимальное ожидание блокировки строки, мс */
+    private static final long LOCK_TIMEOUT_MS = Long.getLong("islab1.memory.lock-timeout-ms", 10_000L);
+    
+    /** Строковые блокировки: "House:1" -> блокировка; запись удаляется, когда ее никто не держит и не ждет */
+    private final Map<String, RowLock> rowLocks = new ConcurrentHashMap<>();
+    
+    /** Транзакция, открытая inTransaction() в текущем потоке */
+    private final ThreadLocal<StoreTransaction> explicitTransaction = new ThreadLocal<>();
+    
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    
+    public InMemoryStore() {
+    }
+    
+    public InMemoryStore(TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    }
+    
+    /**
+     * Блокировка строки; семафор, т.к. JTA может завершить транзакцию в другом потоке
+     */
+    private static final class RowLock {
+        
+        final Semaphore permit = new Semaphore(1);
+        
+        /** Держащие и ожидающие транзакции; меняется только внутри compute() карты rowLocks */
+        int users;
+    }
+    
+    /**
+     * Блокировки и журнал отмены одной транзакции
+     */
+    private static final class StoreTransaction {
+        
+        final Set<String> lockedRows = new LinkedHashSet<>();
+        
+        final List<Runnable> undo = new ArrayList<>();
+    }
+    
+    /**
+     * Выполнить действие как одну транзакцию без JTA: блокировки держатся до конца действия,
+     * при исключении изменения откатываются
+     * Внутри JTA-транзакции или вложенного вызова действие присоединяется к внешней транзакции.
+     */
+    public <T> T inTransaction(Supplier<T> action) {
+        if (currentTransaction() != null) {
+            return action.get();
+        }
+        StoreTransaction transaction = new StoreTransaction();
+        explicitTransaction.set(transaction);
+        boolean committed = false;
+        try {
+            T result = action.get();
+            committed = true;
+            return result;
+        } finally {
+            explicitTransaction.remove();
+            complete(transaction, committed);
+        }
+    }
+    
+    public void inTransaction(Runnable action) {
+        inTransaction(() -> {
+            action.run();
+            return null;
+        });
+    }
+    
+    /**
+     * Удалить все данные и сбросить счетчики ID
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            flats.clear();
+            houses.clear();
+            coordinates.clear();
+            importHistory.clear();
+            flatsByHouse.clear();
+            flatsByPlacement.clear();
+            flatIds.set(0);
+            houseIds.set(0);
+            coordinatesIds.set(0);
+            importHistoryIds.set(0);
+        }
+    }
+    
+    /**
+     * Взять блокировку строки до конца транзакции; вне транзакции ничего не делает
+     *
+     * @throws PessimisticLockException если блокировку не удалось получить за LOCK_TIMEOUT_MS
+     */
+    void lockRow(Class<?> type, Long id) {
+        StoreTransaction transaction = currentTransaction();
+        if (transaction == null || id == null) {
+            return;
+        }
+        String key = type.getSimpleName() + ":" + id;
+        if (transaction.lockedRows.contains(key)) {
+            return;
+        }
+        
+        RowLock lock = rowLocks.compute(key, (k, current) -> {
+            RowLock target = current != null ? current : new RowLock();
+            target.users++;
+            return target;
+        });
+        boolean acquired = false;
+        try {
+            acquired = lock.permit.tryAcquire(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!acquired) {
+            leave(key);
+            throw new PessimisticLockException("Lock wait timeout on " + key + " after " + LOCK_TIMEOUT_MS + " ms");
+        }
+        transaction.lockedRows.add(key);
+    }
+    
+    /**
+     * Отпустить блокировку строки, которую держит транзакция
+     */
+    private void unlockRow(String key) {
+        rowLocks.get(key).permit.release();
+        leave(key);
+    }
+    
+    private void leave(String key) {
+        rowLocks.computeIfPresent(key, (k, lock) -> --lock.users == 0 ? null : lock);
+    }
+    
+    /**
+     * Записать строку квартиры (null - удалить) вместе с индексами; вызывается под монитором записи
+     */
+    void writeFlat(Long id, Flat row) {
+        Flat previous = flats.get(id);
+        applyFlat(id, row);
+        journal(() -> applyFlat(id, previous));
+    }
+    
+    /**
+     * Записать координаты (null - удалить) с переиндексацией квартир; вызывается под монитором записи
+     */
+    void writeCoordinates(Long id, Coordinates row) {
+        Coordinates previous = coordinates.get(id);
+        applyCoordinates(id, row);
+        journal(() -> applyCoordinates(id, previous));
+    }
+    
+    /**
+     * Записать дом (null - удалить); вызывается под монитором записи
+     */
+    void writeHouse(Long id, House row) {
+        House previous = houses.get(id);
+        apply(houses, id, row);
+        journal(() -> apply(houses, id, previous));
+    }
+    
+    /**
+     * Записать запись истории импорта; вызывается под монитором записи
+     */
+    void writeImportHistory(Long id, ImportHistory row) {
+        ImportHistory previous = importHistory.get(id);
+        apply(importHistory, id, row);
+        journal(() -> apply(importHistory, id, previous));
+    }
+    
+    void index(Flat flat) {
+        if (flat.getHouse() != null) {
+            flatsByHouse.computeIfAbsent(flat.getHouse().getId(), key -> ConcurrentHashMap.newKeySet()).add(flat.getId());
+        }
+        PlacementKey key = placement(flat);
+        if (key != null) {
+            flatsByPlacement.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(flat.getId());
+        }
+    }
+    
+    void unindex(Flat flat) {
+        if (flat.getHouse() != null) {
+            Set<Long> ids = flatsByHouse.get(flat.getHouse().getId());
+            if (ids != null) {
+                ids.remove(flat.getId());
+            }
+        }
+        PlacementKey key = placement(flat);
+        if (key != null) {
+            Set<Long> ids = flatsByPlacement.get(key);
+            if (ids != null) {
+                ids.remove(flat.getId());
+            }
+        }
+    }
+    
+    /**
+     * Снимок квартиры с текущими домом и координатами
+     */
+    Flat copy(Flat flat) {
+        if (flat == null) {
+            return null;
+        }
+        return Flat.builder()
+            .id(flat.getId())
+            .name(flat.getName())
+            .coordinates(flat.getCoordinates() != null ? copy(coordinates.get(flat.getCoordinates().getId())) : null)
+            .creationDate(flat.getCreationDate())
+            .area(flat.getArea())
+            .price(flat.getPrice())
+            .balcony(flat.getBalcony())
+            .timeToMetroOnFoot(flat.getTimeToMetroOnFoot())
+            .numberOfRooms(flat.getNumberOfRooms())
+            .livingSpace(flat.getLivingSpace())
+            .furnish(flat.getFurnish())
+            .view(flat.getView())
+            .floor(flat.getFloor())
+            .house(flat.getHouse() != null ? copy(houses.get(flat.getHouse().getId())) : null)
+            .build();
+    }
+    
+    House copy(House house) {
+        if (house == null) {
+            return null;
+        }
+        return House.builder()
+            .id(house.getId())
+            .name(house.getName())
+            .year(house.getYear())
+            .numberOfFlatsOnFloor(house.getNumberOfFlatsOnFloor())
+            .build();
+    }
+    
+    Coordinates copy(Coordinates value) {
+        if (value == null) {
+            return null;
+        }
+        return Coordinates.builder()
+            .id(value.getId())
+            .x(value.getX())
+            .y(value.getY())
+            .build();
+    }
+    
+    List<Flat> copyFlats(List<Flat> rows) {
+        List<Flat> result = new ArrayList<>(rows.size());
+        for (Flat flat : rows) {
+            result.add(copy(flat));
+        }
+        return result;
+    }
+    
+    private void applyFlat(Long id, Flat row) {
+        Flat current = row != null ? flats.put(id, row) : flats.remove(id);
+        if (current != null) {
+            unindex(current);
+        }
+        if (row != null) {
+            index(row);
+        }
+    }
+    
+    private void applyCoordinates(Long id, Coordinates row) {
+        // Смена координат меняет ключ индекса у всех квартир с ними
+        List<Flat> affected = coordinates.containsKey(id)
+            ? flats.values().stream()
+                .filter(flat -> flat.getCoordinates() != null && id.equals(flat.getCoordinates().getId()))
+                .toList()
+            : List.of();
+        affected.forEach(this::unindex);
+        apply(coordinates, id, row);
+        affected.forEach(this::index);
+    }
+    
+    private static <T> void apply(Map<Long, T> rows, Long id, T row) {
+        if (row != null) {
+            rows.put(id, row);
+        } else {
+            rows.remove(id);
+        }
+    }
+    
+    /**
+     * Запомнить действие отмены в текущей транзакции; вне транзакции изменение уже окончательное
+     */
+    private void journal(Runnable undo) {
+        StoreTransaction transaction = currentTransaction();
+        if (transaction != null) {
+            transaction.undo.add(undo);
+        }
+    }
+    
+    /**
+     * Транзакция хранилища для текущего потока: явная (inTransaction) или привязанная к JTA
+     * При первом обращении в JTA-транзакции регистрируется синхронизация, которая по ее
+     * завершению откатывает изменения (если не было commit) и отпускает блокировки.
+     */
+    private StoreTransaction currentTransaction() {
+        StoreTransaction transaction = explicitTransaction.get();
+        if (transaction != null || transactionSynchronizationRegistry == null
+                || transactionSynchronizationRegistry.getTransactionKey() == null) {
+            return transaction;
+        }
+        
+        transaction = (StoreTransaction) transactionSynchronizationRegistry.getResource(TRANSACTION_KEY);
+        if (transaction == null) {
+            StoreTransaction created = new StoreTransaction();
+            transactionSynchronizationRegistry.putResource(TRANSACTION_KEY, created);
+            transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    complete(created, status == Status.STATUS_COMMITTED);
+                }
+            });
+            transaction = created;
+        }
+        return transaction;
+    }
+    
+    /**
+     * Завершить транзакцию: при откате применить журнал отмены в обратном порядке, затем отпустить блокировки
+     */
+    private void complete(StoreTransaction transaction, boolean committed) {
+        try {
+            if (!committed && !transaction.undo.isEmpty()) {
+                synchronized (writeLock) {
+                    for (int i = transaction.undo.size() - 1; i >= 0; i--) {
+                        transaction.undo.get(i).run();
+                    }
+                }
+            }
+        } finally {
+            for (String key : transaction.lockedRows) {
+                unlockRow(key);
+            }
+        }
+    }
+    
+    private PlacementKey placement(Flat flat) {
+        if (flat.getCoordinates() == null || flat.getFloor() == null) {
+            return null;
+        }
+        Coordinates current = coordinates.get(flat.getCoordinates().getId());
+        return current != null ? new PlacementKey(current.getX(), current.getY(), flat.getFloor()) : null;
+    }
+}
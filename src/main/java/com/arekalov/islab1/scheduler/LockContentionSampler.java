@@ -0,0 +1,101 @@
+package com.arekalov.islab1.scheduler;
+
+import com.arekalov.islab1.metrics.BlockedSessionsEvent;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.repository.LockStatsRepository;
+import com.arekalov.islab1.repository.LockStatsRepository.BlockedSession;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.Timeout;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TimerService;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Периодический снимок заблокированных сессий БД (pg_locks/pg_stat_activity)
+ * 
+ * Количество ожидающих сессий и самое долгое ожидание публикуются как gauge-метрики
+ * и JFR-событие BlockedSessionsEvent; долгие ожидания пишутся в лог вместе с
+ * блокирующими сессиями.
+ */
+@Singleton
+@Startup
+public class LockContentionSampler {
+    
+    private static final Logger logger = Logger.getLogger(LockContentionSampler.class.getName());
+    
+    /** Интервал между снимками, мс (0 - выключено) */
+    private static final long INTERVAL_MS = Long.getLong("islab1.locks.sampler.interval-ms", 5_000L);
+    
+    /** Ожидание, после которого снимок пишется в лог, мс */
+    private static final long WARN_MS = Long.getLong("islab1.locks.sampler.warn-ms", 1_000L);
+    
+    /** Сколько ожидающих сессий читать за снимок */
+    private static final int LIMIT = 50;
+    
+    @Resource
+    private TimerService timerService;
+    
+    @Inject
+    private LockStatsRepository lockStatsRepository;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @PostConstruct
+    public void init() {
+        if (INTERVAL_MS <= 0) {
+            logger.info("LockContentionSampler - выключен");
+            return;
+        }
+        TimerConfig config = new TimerConfig("lock-contention-sampler", false);
+        timerService.createIntervalTimer(INTERVAL_MS, INTERVAL_MS, config);
+        logger.info("LockContentionSampler - запущен, интервал=" + INTERVAL_MS + " мс");
+    }
+    
+    /**
+     * Один снимок блокировок
+     */
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void sample() {
+        try {
+            List<BlockedSession> blocked = lockStatsRepository.findBlockedSessions(LIMIT);
+            BlockedSession longest = blocked.isEmpty() ? null : blocked.get(0);
+            long longestWaitMs = longest != null ? longest.waitMs() : 0;
+            
+            metricsRegistry.increment("db_lock_samples_total");
+            metricsRegistry.setGauge("db_blocked_sessions", blocked.size());
+            metricsRegistry.setGauge("db_longest_lock_wait_ms", longestWaitMs);
+            
+            BlockedSessionsEvent event = new BlockedSessionsEvent();
+            if (event.shouldCommit()) {
+                event.blockedSessions = blocked.size();
+                event.longestWaitMs = longestWaitMs;
+                event.longestWaitQuery = longest != null ? longest.query() : null;
+                event.commit();
+            }
+            
+            if (longestWaitMs >= WARN_MS) {
+                logger.warning("LockContentionSampler.sample() - ожидают блокировку: " + blocked.size()
+                    + " сессий, дольше всех " + longestWaitMs + " мс");
+                for (BlockedSession session : blocked) {
+                    logger.warning("  pid=" + session.pid() + " ждет " + session.waitMs() + " мс, блокируют pid=["
+                        + session.blockingPids() + "], " + session.lockType() + " " + session.mode()
+                        + (session.relation() != null ? " на " + session.relation() : "") + ": " + session.query());
+                }
+            }
+            
+        } catch (Exception e) {
+            metricsRegistry.increment("db_lock_sampler_failures_total");
+            logger.severe("LockContentionSampler.sample() - ошибка снимка блокировок: " + e.getMessage());
+        }
+    }
+}
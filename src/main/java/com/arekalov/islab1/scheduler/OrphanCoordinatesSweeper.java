@@ -0,0 +1,113 @@
+package com.arekalov.islab1.scheduler;
+
+import com.arekalov.islab1.cache.EntityCacheInvalidator;
+import com.arekalov.islab1.cache.EntityCacheInvalidator.CacheKey;
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.repository.CoordinatesRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.Timeout;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TimerService;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Фоновая очистка координат, на которые не ссылается ни одна квартира
+ * 
+ * Удаление квартиры и каскадное удаление дома больше не проверяют координаты
+ * внутри пользовательской транзакции - неиспользуемые координаты удаляются здесь
+ * пачками по расписанию.
+ * 
+ * Проверяются только кандидаты, записанные при удалении квартиры или замене ее координат
+ * (CoordinatesRepository.recordCandidate). Координаты, созданные сами по себе и еще
+ * не привязанные к квартире (например, импорт COORDINATES CREATE), не удаляются.
+ */
+@Singleton
+@Startup
+public class OrphanCoordinatesSweeper {
+    
+    private static final Logger logger = Logger.getLogger(OrphanCoordinatesSweeper.class.getName());
+    
+    /** Интервал между проходами, мс */
+    private static final long INTERVAL_MS = Long.getLong("islab1.coordinates.sweep.interval-ms", 60_000L);
+    
+    /** Размер пачки удаления */
+    private static final int BATCH_SIZE = Integer.getInteger("islab1.coordinates.sweep.batch-size", 500);
+    
+    @Resource
+    private TimerService timerService;
+    
+    @Inject
+    private CoordinatesRepository coordinatesRepository;
+    
+    @Inject
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @PostConstruct
+    public void init() {
+        // Таблица кандидатов нужна пользовательским удалениям - без нее развертывание не продолжается
+        coordinatesRepository.ensureCandidatesTable();
+        
+        TimerConfig config = new TimerConfig("orphan-coordinates-sweeper", false);
+        timerService.createIntervalTimer(INTERVAL_MS, INTERVAL_MS, config);
+        logger.info("OrphanCoordinatesSweeper - запущен, интервал=" + INTERVAL_MS + " мс, пачка=" + BATCH_SIZE);
+    }
+    
+    /**
+     * Один проход очистки
+     * Без внешней транзакции: каждая пачка фиксируется отдельно
+     */
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void sweep() {
+        long start = System.nanoTime();
+        long reclaimed = 0;
+        
+        try {
+            CoordinatesRepository.SweepBatch batch;
+            do {
+                batch = coordinatesRepository.sweepCandidatesBatch(BATCH_SIZE);
+                List<Long> deletedIds = batch.deletedIds();
+                reclaimed += deletedIds.size();
+                
+                // Пачка уже зафиксирована - убираем удаленные координаты из общего кэша
+                if (!deletedIds.isEmpty()) {
+                    Set<CacheKey> keys = deletedIds.stream()
+                        .map(id -> new CacheKey(Coordinates.class, id, CacheKey.Change.DELETED))
+                        .collect(Collectors.toSet());
+                    entityCacheInvalidator.evict(keys);
+                }
+                // Кандидаты, пропущенные из-за блокировок, остаются до следующего прохода
+            } while (batch.cleared() == BATCH_SIZE);
+            
+            if (reclaimed > 0) {
+                logger.info("OrphanCoordinatesSweeper.sweep() - удалено неиспользуемых координат: " + reclaimed);
+            }
+            
+        } catch (Exception e) {
+            metricsRegistry.increment("coordinates_sweeper_failures_total");
+            logger.severe("OrphanCoordinatesSweeper.sweep() - ошибка очистки: " + e.getMessage());
+            
+        } finally {
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            metricsRegistry.increment("coordinates_sweeper_runs_total");
+            metricsRegistry.add("coordinates_sweeper_reclaimed_total", reclaimed);
+            metricsRegistry.add("coordinates_sweeper_duration_ms_total", durationMs);
+            metricsRegistry.setGauge("coordinates_sweeper_last_duration_ms", durationMs);
+            metricsRegistry.setGauge("coordinates_sweeper_last_reclaimed", reclaimed);
+        }
+    }
+}
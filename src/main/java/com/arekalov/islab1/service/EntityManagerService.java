@@ -1,8 +1,11 @@
 package com.arekalov.islab1.service;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.Cache;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceUnit;
 import java.util.logging.Logger;
 
 /**
@@ -17,6 +20,9 @@ public class EntityManagerService {
     @PersistenceContext(unitName = "flatsPU")
     private EntityManager entityManager;
     
+    @PersistenceUnit(unitName = "flatsPU")
+    private EntityManagerFactory entityManagerFactory;
+    
     /**
      * Получить EntityManager для использования в репозиториях
      */
@@ -28,6 +34,17 @@ public class EntityManagerService {
         return entityManager;
     }
     
+    /**
+     * Получить общий (shared) кэш второго уровня
+     */
+    public Cache getSharedCache() {
+        if (entityManagerFactory == null) {
+            logger.severe("EntityManagerFactory is null! Check persistence.xml configuration");
+            throw new IllegalStateException("EntityManagerFactory is not available");
+        }
+        return entityManagerFactory.getCache();
+    }
+    
     /**
      * Начать транзакцию с указанным уровнем изоляции
      */
@@ -0,0 +1,83 @@
+package com.arekalov.islab1.service;
+
+import com.arekalov.islab1.dto.response.HouseResponseDTO;
+import com.arekalov.islab1.dto.websocket.FlatEventDTO;
+import com.arekalov.islab1.dto.websocket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Схлопывание событий за окно: по каждой паре (тип, ID) остается только последнее состояние
+ * 
+ * CREATE + UPDATE = CREATE с новыми данными, CREATE + DELETE - событие не отправляется
+ * вовсе, в остальных случаях остается последнее событие. Порядок определяется
+ * последним изменением объекта. Не потокобезопасен - синхронизация на вызывающей стороне.
+ */
+class EventCoalescer {
+    
+    private final Map<Object, WebSocketMessage> pending = new LinkedHashMap<>();
+    
+    private int superseded;
+    
+    private long uniqueKeys;
+    
+    void add(WebSocketMessage event) {
+        Object id = idOf(event.getData());
+        Object key = id != null ? List.of(event.getType(), id) : uniqueKeys++;
+        
+        WebSocketMessage previous = pending.remove(key);
+        if (previous == null) {
+            pending.put(key, event);
+            return;
+        }
+        
+        superseded++;
+        if ("CREATE".equals(previous.getAction())) {
+            if ("DELETE".equals(event.getAction())) {
+                // Клиенты не видели объект - не отправляем ничего
+                superseded++;
+                return;
+            }
+            event.setAction("CREATE");
+        }
+        pending.put(key, event);
+    }
+    
+    int size() {
+        return pending.size();
+    }
+    
+    /**
+     * Забрать накопленные события
+     */
+    List<WebSocketMessage> drain() {
+        List<WebSocketMessage> events = new ArrayList<>(pending.values());
+        pending.clear();
+        return events;
+    }
+    
+    /**
+     * Получить и сбросить число отброшенных устаревших событий
+     */
+    int takeSuperseded() {
+        int result = superseded;
+        superseded = 0;
+        return result;
+    }
+    
+    private static Object idOf(Object data) {
+        if (data instanceof FlatEventDTO flat) {
+            return flat.getId();
+        }
+        if (data instanceof HouseResponseDTO house) {
+            return house.getId();
+        }
+        if (data instanceof Long id) {
+            return id;
+        }
+        return null;
+    }
+}
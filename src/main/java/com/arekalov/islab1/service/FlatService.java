@@ -1,26 +1,35 @@
 package com.arekalov.islab1.service;
 
+import com.arekalov.islab1.cache.EntityCacheInvalidator;
+import com.arekalov.islab1.cache.RequestCoalescer;
+import com.arekalov.islab1.entity.Coordinates;
 import com.arekalov.islab1.entity.Flat;
 import com.arekalov.islab1.entity.House;
 import com.arekalov.islab1.entity.View;
 import com.arekalov.islab1.exception.UniqueConstraintViolationException;
+import com.arekalov.islab1.logging.Log;
+import com.arekalov.islab1.repository.FlatField;
 import com.arekalov.islab1.repository.FlatRepository;
 import com.arekalov.islab1.repository.HouseRepository;
+import com.arekalov.islab1.repository.ProjectedField;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.logging.Logger;
+import java.util.Set;
 
 /**
  * Сервис для работы с квартирами с поддержкой JPA транзакций
+ * Одинаковые одновременные запросы на чтение объединяются через RequestCoalescer
  */
 @ApplicationScoped
 public class FlatService {
     
-    private static final Logger logger = Logger.getLogger(FlatService.class.getName());
+    private static final Log log = Log.get(FlatService.class);
     
     @Inject
     private FlatRepository flatRepository;
@@ -31,36 +40,67 @@ public class FlatService {
     @Inject
     private WebSocketService webSocketService;
     
+    @Inject
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
+    @Inject
+    private RequestCoalescer requestCoalescer;
+    
     /**
      * Получить все квартиры с пагинацией
      */
     public List<Flat> getAllFlats(int page, int size, String sortBy) {
-        logger.info("FlatService.getAllFlats() - получение квартир: page=" + page + ", size=" + size + ", sortBy=" + sortBy);
+        log.debug("FlatService.getAllFlats() - получение квартир: page={}, size={}, sortBy={}", page, size, sortBy);
         
         try {
-            List<Flat> flats = flatRepository.findAll(page, size, sortBy);
-            logger.info("FlatService.getAllFlats() - получено квартир: " + flats.size());
+            List<Flat> flats = requestCoalescer.execute("flats.page", Arrays.asList(page, size, sortBy),
+                () -> flatRepository.findAll(page, size, sortBy), FlatService::copyFlats);
+            log.debug("FlatService.getAllFlats() - получено квартир: {}", flats.size());
             return flats;
             
         } catch (Exception e) {
-            logger.severe("FlatService.getAllFlats() - ошибка получения квартир: " + e.getMessage());
+            log.error("FlatService.getAllFlats() - ошибка получения квартир: {}", e.getMessage());
             throw new RuntimeException("Ошибка получения квартир: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Получить квартиры с пагинацией только с колонками полей fields
+     */
+    public List<Object[]> getFlatsProjected(int page, int size, String sortBy, Set<FlatField> fields) {
+        log.debug("FlatService.getFlatsProjected() - получение квартир: page={}, size={}, sortBy={}, fields={}",
+            page, size, sortBy, fields);
+        
+        try {
+            return requestCoalescer.execute("flats.page", Arrays.asList(page, size, sortBy, ProjectedField.key(fields)),
+                () -> flatRepository.findProjected(page, size, sortBy, fields), FlatService::copyRows);
+            
+        } catch (Exception e) {
+            log.error("FlatService.getFlatsProjected() - ошибка получения квартир: {}", e.getMessage());
+            throw new RuntimeException("Ошибка получения квартир: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Найти квартиру по ID только с колонками полей fields; null, если не найдена
+     */
+    public Object[] getFlatProjectedById(Long id, Set<FlatField> fields) {
+        return flatRepository.findProjectedById(id, fields);
+    }
+    
     /**
      * Получить общее количество квартир
      */
     public long countFlats() {
-        logger.info("FlatService.countFlats() - подсчет общего количества квартир");
+        log.debug("FlatService.countFlats() - подсчет общего количества квартир");
         
         try {
-            Long count = flatRepository.count();
-            logger.info("FlatService.countFlats() - общее количество квартир: " + count);
+            Long count = requestCoalescer.execute("flats.count", "all", flatRepository::count);
+            log.debug("FlatService.countFlats() - общее количество квартир: {}", count);
             return count;
             
         } catch (Exception e) {
-            logger.severe("FlatService.countFlats() - ошибка подсчета квартир: " + e.getMessage());
+            log.error("FlatService.countFlats() - ошибка подсчета квартир: {}", e.getMessage());
             throw new RuntimeException("Ошибка подсчета квартир: " + e.getMessage(), e);
         }
     }
@@ -76,21 +116,21 @@ public class FlatService {
      * Найти квартиру по ID
      */
     public Flat getFlatById(Long id) {
-        logger.info("FlatNativeService.getFlatById() - поиск квартиры с id=" + id);
+        log.debug("FlatNativeService.getFlatById() - поиск квартиры с id={}", id);
         
         try {
             Flat flat = flatRepository.findById(id);
             
             if (flat != null) {
-                logger.info("FlatNativeService.getFlatById() - квартира найдена: " + flat.getName());
+                log.debug("FlatNativeService.getFlatById() - квартира найдена: {}", flat.getName());
             } else {
-                logger.info("FlatNativeService.getFlatById() - квартира не найдена");
+                log.debug("FlatNativeService.getFlatById() - квартира не найдена");
             }
             
             return flat;
             
         } catch (Exception e) {
-            logger.severe("FlatNativeService.getFlatById() - ошибка поиска: " + e.getMessage());
+            log.error("FlatNativeService.getFlatById() - ошибка поиска: {}", e.getMessage());
             throw new RuntimeException("Ошибка поиска квартиры: " + e.getMessage(), e);
         }
     }
@@ -101,7 +141,7 @@ public class FlatService {
      */
     @Transactional(Transactional.TxType.REQUIRED)
     public Flat createFlat(Flat flat) {
-        logger.info("FlatNativeService.createFlat() - создание квартиры: " + flat.getName());
+        log.debug("FlatNativeService.createFlat() - создание квартиры: {}", flat.getName());
         
         try {
             // Валидация
@@ -112,7 +152,7 @@ public class FlatService {
             
             // Проверяем и создаем координаты, если нужно
             if (flat.getCoordinates() != null && flat.getCoordinates().getId() == null) {
-                logger.info("FlatNativeService.createFlat() - создание новых координат");
+                log.debug("FlatNativeService.createFlat() - создание новых координат");
             }
             
             // Проверяем существование дома, если указан
@@ -122,7 +162,7 @@ public class FlatService {
                     throw new RuntimeException("Дом с ID " + flat.getHouse().getId() + " не найден");
                 }
                 flat.setHouse(house);
-                logger.info("FlatNativeService.createFlat() - привязка к дому: " + house.getName());
+                log.debug("FlatNativeService.createFlat() - привязка к дому: {}", house.getName());
             }
             
             // Проверка ограничений уникальности
@@ -131,8 +171,9 @@ public class FlatService {
             
             // Сохраняем квартиру
             Flat savedFlat = flatRepository.save(flat);
+            entityCacheInvalidator.invalidateAfterCommit(Flat.class, savedFlat.getId());
             
-            logger.info("FlatNativeService.createFlat() - квартира создана с id=" + savedFlat.getId());
+            log.debug("FlatNativeService.createFlat() - квартира создана с id={}", savedFlat.getId());
             
             // Отправляем уведомление через WebSocket
             webSocketService.notifyFlatUpdate("CREATE", savedFlat);
@@ -140,7 +181,7 @@ public class FlatService {
             return savedFlat;
             
         } catch (Exception e) {
-            logger.severe("FlatNativeService.createFlat() - ошибка создания: " + e.getMessage());
+            log.error("FlatNativeService.createFlat() - ошибка создания: {}", e.getMessage());
             throw new RuntimeException("Ошибка создания квартиры: " + e.getMessage(), e);
         }
     }
@@ -151,7 +192,7 @@ public class FlatService {
      */
     @Transactional(Transactional.TxType.REQUIRED)
     public Flat updateFlat(Long id, Flat updatedFlat) {
-        logger.info("FlatNativeService.updateFlat() - обновление квартиры с id=" + id);
+        log.debug("FlatNativeService.updateFlat() - обновление квартиры с id={}", id);
         
         try {
             // Проверяем существование квартиры
@@ -186,6 +227,7 @@ public class FlatService {
                 if (existingFlat.getCoordinates() != null) {
                     existingFlat.getCoordinates().setX(updatedFlat.getCoordinates().getX());
                     existingFlat.getCoordinates().setY(updatedFlat.getCoordinates().getY());
+                    entityCacheInvalidator.invalidateAfterCommit(Coordinates.class, existingFlat.getCoordinates().getId());
                 } else {
                     existingFlat.setCoordinates(updatedFlat.getCoordinates());
                 }
@@ -198,7 +240,7 @@ public class FlatService {
                     throw new RuntimeException("Дом с ID " + updatedFlat.getHouse().getId() + " не найден");
                 }
                 existingFlat.setHouse(house);
-                logger.info("FlatNativeService.updateFlat() - обновлена привязка к дому: " + house.getName());
+                log.debug("FlatNativeService.updateFlat() - обновлена привязка к дому: {}", house.getName());
             } else if (updatedFlat.getHouse() == null) {
                 // Явно передан null - удаляем привязку к дому
                 existingFlat.setHouse(null);
@@ -214,8 +256,9 @@ public class FlatService {
             
             // Сохраняем изменения
             Flat savedFlat = flatRepository.save(existingFlat);
+            entityCacheInvalidator.invalidateAfterCommit(Flat.class, id);
             
-            logger.info("FlatNativeService.updateFlat() - квартира обновлена");
+            log.debug("FlatNativeService.updateFlat() - квартира обновлена");
             
             // Отправляем уведомление через WebSocket
             webSocketService.notifyFlatUpdate("UPDATE", savedFlat);
@@ -223,7 +266,7 @@ public class FlatService {
             return savedFlat;
             
         } catch (Exception e) {
-            logger.severe("FlatNativeService.updateFlat() - ошибка обновления: " + e.getMessage());
+            log.error("FlatNativeService.updateFlat() - ошибка обновления: {}", e.getMessage());
             throw new RuntimeException("Ошибка обновления квартиры: " + e.getMessage(), e);
         }
     }
@@ -234,23 +277,24 @@ public class FlatService {
      */
     @Transactional(Transactional.TxType.REQUIRED)
     public boolean deleteFlat(Long id) {
-        logger.info("FlatNativeService.deleteFlat() - удаление квартиры с id=" + id);
+        log.debug("FlatNativeService.deleteFlat() - удаление квартиры с id={}", id);
         
         try {
             boolean deleted = flatRepository.deleteById(id);
             
             if (deleted) {
-                logger.info("FlatNativeService.deleteFlat() - квартира успешно удалена");
+                entityCacheInvalidator.invalidateAfterCommit(Flat.class, id);
+                log.debug("FlatNativeService.deleteFlat() - квартира успешно удалена");
                 // Отправляем уведомление через WebSocket
                 webSocketService.notifyFlatUpdate("DELETE", id);
             } else {
-                logger.info("FlatNativeService.deleteFlat() - квартира не найдена для удаления");
+                log.debug("FlatNativeService.deleteFlat() - квартира не найдена для удаления");
             }
             
             return deleted;
             
         } catch (Exception e) {
-            logger.severe("FlatNativeService.deleteFlat() - ошибка удаления: " + e.getMessage());
+            log.error("FlatNativeService.deleteFlat() - ошибка удаления: {}", e.getMessage());
             throw new RuntimeException("Ошибка удаления квартиры: " + e.getMessage(), e);
         }
     }
@@ -300,7 +344,7 @@ public class FlatService {
             throw new RuntimeException("Координата Y должна быть больше -515");
         }
         
-        logger.info("FlatNativeService.validateFlat() - валидация прошла успешно");
+        log.debug("FlatNativeService.validateFlat() - валидация прошла успешно");
     }
     
     /**
@@ -330,10 +374,8 @@ public class FlatService {
         
         Integer numberOfFlatsOnFloor = house.getNumberOfFlatsOnFloor();
         
-        logger.info(String.format(
-            "Проверка ограничения BAD (некрасивый вид) для квартиры: house_id=%d, floor=%d, flats_per_floor=%d [LOCKED]",
-            houseId, floor, numberOfFlatsOnFloor
-        ));
+        log.debugf("Проверка ограничения BAD (некрасивый вид) для квартиры: house_id=%d, floor=%d, flats_per_floor=%d [LOCKED]",
+            houseId, floor, numberOfFlatsOnFloor);
         
         // Используем репозиторий для подсчета
         Long badCount = flatRepository.countByHouseAndFloorAndView(houseId, floor, View.BAD, flat.getId());
@@ -344,10 +386,8 @@ public class FlatService {
         // Максимально допустимое количество квартир с BAD (половина от всех квартир на этаже)
         double maxBadAllowed = numberOfFlatsOnFloor / 2.0;
         
-        logger.info(String.format(
-            "Текущее количество BAD: %d, после добавления: %d, максимум: %.1f",
-            badCount, newBadCount, maxBadAllowed
-        ));
+        log.debugf("Текущее количество BAD: %d, после добавления: %d, максимум: %.1f",
+            badCount, newBadCount, maxBadAllowed);
         
         if (newBadCount > maxBadAllowed) {
             String message = String.format(
@@ -358,7 +398,7 @@ public class FlatService {
             throw new UniqueConstraintViolationException(message);
         }
         
-        logger.info("Проверка ограничения BAD пройдена успешно [LOCK WILL BE RELEASED]");
+        log.debug("Проверка ограничения BAD пройдена успешно [LOCK WILL BE RELEASED]");
     }
     
     /**
@@ -398,19 +438,15 @@ public class FlatService {
             return;
         }
         
-        logger.info(String.format(
-            "Проверка уникальности координат+этаж для квартиры: x=%d, y=%d, floor=%d, max=%d [LOCKED]",
-            x, y, floor, numberOfFlatsOnFloor
-        ));
+        log.debugf("Проверка уникальности координат+этаж для квартиры: x=%d, y=%d, floor=%d, max=%d [LOCKED]",
+            x, y, floor, numberOfFlatsOnFloor);
         
         // Используем репозиторий для подсчета
         Long currentCount = flatRepository.countByCoordinatesAndFloor(x, y, floor, flat.getId());
         long newCount = currentCount + 1; // После добавления/обновления
         
-        logger.info(String.format(
-            "Текущее количество квартир с координатами (%d, %d) на этаже %d: %d, после добавления: %d, максимум: %d",
-            x, y, floor, currentCount, newCount, numberOfFlatsOnFloor
-        ));
+        log.debugf("Текущее количество квартир с координатами (%d, %d) на этаже %d: %d, после добавления: %d, максимум: %d",
+            x, y, floor, currentCount, newCount, numberOfFlatsOnFloor);
         
         if (newCount > numberOfFlatsOnFloor) {
             String message = String.format(
@@ -421,22 +457,23 @@ public class FlatService {
             throw new UniqueConstraintViolationException(message);
         }
         
-        logger.info("Проверка уникальности координат+этаж пройдена успешно [LOCK WILL BE RELEASED]");
+        log.debug("Проверка уникальности координат+этаж пройдена успешно [LOCK WILL BE RELEASED]");
     }
     
     /**
      * Подсчитать количество квартир с количеством комнат больше заданного
      */
     public Long countByRoomsGreaterThan(Integer minRooms) {
-        logger.info("FlatService.countByRoomsGreaterThan() - подсчет квартир с комнатами > " + minRooms);
+        log.debug("FlatService.countByRoomsGreaterThan() - подсчет квартир с комнатами > {}", minRooms);
         
         try {
-            Long count = flatRepository.countByRoomsGreaterThan(minRooms);
-            logger.info("FlatService.countByRoomsGreaterThan() - найдено квартир: " + count);
+            Long count = requestCoalescer.execute("flats.count-rooms-greater-than", minRooms,
+                () -> flatRepository.countByRoomsGreaterThan(minRooms));
+            log.debug("FlatService.countByRoomsGreaterThan() - найдено квартир: {}", count);
             return count;
             
         } catch (Exception e) {
-            logger.severe("FlatService.countByRoomsGreaterThan() - ошибка: " + e.getMessage());
+            log.error("FlatService.countByRoomsGreaterThan() - ошибка: {}", e.getMessage());
             throw new RuntimeException("Ошибка подсчета квартир по комнатам: " + e.getMessage(), e);
         }
     }
@@ -445,15 +482,16 @@ public class FlatService {
      * Найти квартиры, содержащие подстроку в названии
      */
     public List<Flat> findByNameContaining(String nameSubstring) {
-        logger.info("FlatService.findByNameContaining() - поиск квартир с названием содержащим: " + nameSubstring);
+        log.debug("FlatService.findByNameContaining() - поиск квартир с названием содержащим: {}", nameSubstring);
         
         try {
-            List<Flat> flats = flatRepository.findByNameContaining(nameSubstring);
-            logger.info("FlatService.findByNameContaining() - найдено квартир: " + flats.size());
+            List<Flat> flats = requestCoalescer.execute("flats.search-by-name", nameSubstring,
+                () -> flatRepository.findByNameContaining(nameSubstring), FlatService::copyFlats);
+            log.debug("FlatService.findByNameContaining() - найдено квартир: {}", flats.size());
             return flats;
             
         } catch (Exception e) {
-            logger.severe("FlatService.findByNameContaining() - ошибка: " + e.getMessage());
+            log.error("FlatService.findByNameContaining() - ошибка: {}", e.getMessage());
             throw new RuntimeException("Ошибка поиска квартир по названию: " + e.getMessage(), e);
         }
     }
@@ -462,15 +500,16 @@ public class FlatService {
      * Найти квартиры с жилой площадью меньше заданной
      */
     public List<Flat> findByLivingSpaceLessThan(Long maxSpace) {
-        logger.info("FlatService.findByLivingSpaceLessThan() - поиск квартир с площадью < " + maxSpace);
+        log.debug("FlatService.findByLivingSpaceLessThan() - поиск квартир с площадью < {}", maxSpace);
         
         try {
-            List<Flat> flats = flatRepository.findByLivingSpaceLessThan(maxSpace);
-            logger.info("FlatService.findByLivingSpaceLessThan() - найдено квартир: " + flats.size());
+            List<Flat> flats = requestCoalescer.execute("flats.search-by-living-space", maxSpace,
+                () -> flatRepository.findByLivingSpaceLessThan(maxSpace), FlatService::copyFlats);
+            log.debug("FlatService.findByLivingSpaceLessThan() - найдено квартир: {}", flats.size());
             return flats;
             
         } catch (Exception e) {
-            logger.severe("FlatService.findByLivingSpaceLessThan() - ошибка: " + e.getMessage());
+            log.error("FlatService.findByLivingSpaceLessThan() - ошибка: {}", e.getMessage());
             throw new RuntimeException("Ошибка поиска квартир по жилой площади: " + e.getMessage(), e);
         }
     }
@@ -479,21 +518,22 @@ public class FlatService {
      * Найти самую дешевую квартиру с балконом
      */
     public Flat findCheapestWithBalcony() {
-        logger.info("FlatService.findCheapestWithBalcony() - поиск самой дешевой квартиры с балконом");
+        log.debug("FlatService.findCheapestWithBalcony() - поиск самой дешевой квартиры с балконом");
         
         try {
-            Flat flat = flatRepository.findCheapestWithBalcony();
+            Flat flat = requestCoalescer.execute("flats.cheapest-with-balcony", "all",
+                flatRepository::findCheapestWithBalcony, FlatService::copyFlat);
             
             if (flat != null) {
-                logger.info("FlatService.findCheapestWithBalcony() - найдена квартира: " + flat.getName() + ", цена: " + flat.getPrice());
+                log.debug("FlatService.findCheapestWithBalcony() - найдена квартира: {}, цена: {}", flat.getName(), flat.getPrice());
             } else {
-                logger.info("FlatService.findCheapestWithBalcony() - квартиры с балконом не найдены");
+                log.debug("FlatService.findCheapestWithBalcony() - квартиры с балконом не найдены");
             }
             
             return flat;
             
         } catch (Exception e) {
-            logger.severe("FlatService.findCheapestWithBalcony() - ошибка: " + e.getMessage());
+            log.error("FlatService.findCheapestWithBalcony() - ошибка: {}", e.getMessage());
             throw new RuntimeException("Ошибка поиска самой дешевой квартиры с балконом: " + e.getMessage(), e);
         }
     }
@@ -502,16 +542,70 @@ public class FlatService {
      * Найти все квартиры, отсортированные по времени до метро
      */
     public List<Flat> findAllSortedByMetroTime() {
-        logger.info("FlatService.findAllSortedByMetroTime() - поиск всех квартир, отсортированных по времени до метро");
+        log.debug("FlatService.findAllSortedByMetroTime() - поиск всех квартир, отсортированных по времени до метро");
         
         try {
-            List<Flat> flats = flatRepository.findAllSortedByMetroTime();
-            logger.info("FlatService.findAllSortedByMetroTime() - найдено квартир: " + flats.size());
+            List<Flat> flats = requestCoalescer.execute("flats.sorted-by-metro-time", "all",
+                flatRepository::findAllSortedByMetroTime, FlatService::copyFlats);
+            log.debug("FlatService.findAllSortedByMetroTime() - найдено квартир: {}", flats.size());
             return flats;
             
         } catch (Exception e) {
-            logger.severe("FlatService.findAllSortedByMetroTime() - ошибка: " + e.getMessage());
+            log.error("FlatService.findAllSortedByMetroTime() - ошибка: {}", e.getMessage());
             throw new RuntimeException("Ошибка поиска квартир, отсортированных по времени до метро: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * Копии квартир для вызова, разделившего результат запроса с другими
+     * (RequestCoalescer): detached-сущности не должны быть общими между потоками
+     */
+    private static List<Flat> copyFlats(List<Flat> flats) {
+        List<Flat> result = new ArrayList<>(flats.size());
+        for (Flat flat : flats) {
+            result.add(copyFlat(flat));
+        }
+        return result;
+    }
+    
+    private static Flat copyFlat(Flat flat) {
+        if (flat == null) {
+            return null;
+        }
+        Coordinates coordinates = flat.getCoordinates();
+        House house = flat.getHouse();
+        return Flat.builder()
+            .id(flat.getId())
+            .name(flat.getName())
+            .coordinates(coordinates != null ? Coordinates.builder()
+                .id(coordinates.getId())
+                .x(coordinates.getX())
+                .y(coordinates.getY())
+                .build() : null)
+            .creationDate(flat.getCreationDate())
+            .area(flat.getArea())
+            .price(flat.getPrice())
+            .balcony(flat.getBalcony())
+            .timeToMetroOnFoot(flat.getTimeToMetroOnFoot())
+            .numberOfRooms(flat.getNumberOfRooms())
+            .livingSpace(flat.getLivingSpace())
+            .furnish(flat.getFurnish())
+            .view(flat.getView())
+            .floor(flat.getFloor())
+            .house(house != null ? House.builder()
+                .id(house.getId())
+                .name(house.getName())
+                .year(house.getYear())
+                .numberOfFlatsOnFloor(house.getNumberOfFlatsOnFloor())
+                .build() : null)
+            .build();
+    }
+    
+    private static List<Object[]> copyRows(List<Object[]> rows) {
+        List<Object[]> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(row.clone());
+        }
+        return result;
+    }
 }
@@ -1,16 +1,21 @@
 package com.arekalov.islab1.service;
 
+import com.arekalov.islab1.cache.EntityCacheInvalidator;
+import com.arekalov.islab1.cache.EntityCacheInvalidator.CacheKey;
 import com.arekalov.islab1.dto.request.CreateHouseRequest;
 import com.arekalov.islab1.dto.response.HouseResponseDTO;
 import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.logging.Log;
 import com.arekalov.islab1.mapper.HouseMapper;
+import com.arekalov.islab1.repository.HouseField;
 import com.arekalov.islab1.repository.HouseRepository;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.logging.Logger;
 
 /**
  * Сервис для работы с домами с поддержкой JPA транзакций
@@ -18,7 +23,7 @@ import java.util.logging.Logger;
 @ApplicationScoped
 public class HouseService {
     
-    private static final Logger logger = Logger.getLogger(HouseService.class.getName());
+    private static final Log log = Log.get(HouseService.class);
     
     @Inject
     private HouseRepository houseRepository;
@@ -29,6 +34,9 @@ public class HouseService {
     @Inject
     private WebSocketService webSocketService;
     
+    @Inject
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
     /**
      * Получить все дома с пагинацией
      */
@@ -38,6 +46,15 @@ public class HouseService {
             .collect(Collectors.toList());
     }
     
+    /**
+     * Получить дома с пагинацией только с полями fields
+     */
+    public List<Map<String, Object>> getHousesProjected(int page, int size, Set<HouseField> fields) {
+        return houseRepository.findProjected(page, size, fields).stream()
+            .map(row -> houseMapper.toSparseMap(row, fields))
+            .collect(Collectors.toList());
+    }
+    
     /**
      * Получить общее количество домов
      */
@@ -62,13 +79,21 @@ public class HouseService {
         return house != null ? houseMapper.toResponseDTO(house) : null;
     }
     
+    /**
+     * Получить дом по ID только с полями fields; null, если не найден
+     */
+    public Map<String, Object> getHouseProjectedById(Long id, Set<HouseField> fields) {
+        Object[] row = houseRepository.findProjectedById(id, fields);
+        return row != null ? houseMapper.toSparseMap(row, fields) : null;
+    }
+    
     /**
      * Создать новый дом
      * Транзакция REQUIRED - создает новую транзакцию или использует существующую
      */
     @Transactional(Transactional.TxType.REQUIRED)
     public HouseResponseDTO createHouse(CreateHouseRequest request) {
-        logger.info("HouseService.createHouse() - начало, name=" + request.getName());
+        log.debug("HouseService.createHouse() - начало, name={}", request.getName());
         
         try {
             // Создаем объект House с данными из запроса используя Builder
@@ -77,17 +102,18 @@ public class HouseService {
                 .year(request.getYear())
                 .numberOfFlatsOnFloor(request.getNumberOfFlatsOnFloor())
                 .build();
-            logger.info("HouseService.createHouse() - создан объект House, name=" + house.getName());
+            log.debug("HouseService.createHouse() - создан объект House, name={}", house.getName());
             
             // Сохраняем через EclipseLink (БЕЗ ТРАНЗАКЦИЙ!)
-            logger.info("HouseService.createHouse() - сохраняем через EclipseLink");
+            log.debug("HouseService.createHouse() - сохраняем через EclipseLink");
             House savedHouse = houseRepository.save(house);
+            entityCacheInvalidator.invalidateAfterCommit(House.class, savedHouse.getId(), CacheKey.Change.CREATED);
             
-            logger.info("HouseService.createHouse() - после сохранения, id=" + savedHouse.getId());
+            log.debug("HouseService.createHouse() - после сохранения, id={}", savedHouse.getId());
             
             // Возвращаем DTO с реальными данными
             HouseResponseDTO responseDTO = houseMapper.toResponseDTO(savedHouse);
-            logger.info("HouseService.createHouse() - возвращаем DTO, id=" + responseDTO.getId());
+            log.debug("HouseService.createHouse() - возвращаем DTO, id={}", responseDTO.getId());
             
             // Отправляем уведомление через WebSocket
             webSocketService.notifyHouseUpdate("CREATE", responseDTO);
@@ -95,7 +121,7 @@ public class HouseService {
             return responseDTO;
             
         } catch (Exception e) {
-            logger.severe("HouseService.createHouse() - ошибка: " + e.getMessage());
+            log.error("HouseService.createHouse() - ошибка: {}", e.getMessage());
             throw new RuntimeException("Ошибка создания дома: " + e.getMessage(), e);
         }
     }
@@ -106,13 +132,13 @@ public class HouseService {
      */
     @Transactional(Transactional.TxType.REQUIRED)
     public HouseResponseDTO updateHouse(Long id, CreateHouseRequest request) {
-        logger.info("HouseService.updateHouse() - начало, id=" + id + ", name=" + request.getName());
+        log.debug("HouseService.updateHouse() - начало, id={}, name={}", id, request.getName());
         
         try {
             // Находим существующий дом
             House existingHouse = houseRepository.findById(id);
             if (existingHouse == null) {
-                logger.info("HouseService.updateHouse() - дом с id=" + id + " не найден");
+                log.debug("HouseService.updateHouse() - дом с id={} не найден", id);
                 return null;
             }
             
@@ -122,12 +148,13 @@ public class HouseService {
             existingHouse.setNumberOfFlatsOnFloor(request.getNumberOfFlatsOnFloor());
             
             // Сохраняем изменения через EclipseLink
-            logger.info("HouseService.updateHouse() - сохраняем изменения через EclipseLink");
+            log.debug("HouseService.updateHouse() - сохраняем изменения через EclipseLink");
             House updatedHouse = houseRepository.save(existingHouse);
+            entityCacheInvalidator.invalidateAfterCommit(House.class, id);
             
             // Возвращаем DTO
             HouseResponseDTO responseDTO = houseMapper.toResponseDTO(updatedHouse);
-            logger.info("HouseService.updateHouse() - возвращаем DTO, id=" + responseDTO.getId());
+            log.debug("HouseService.updateHouse() - возвращаем DTO, id={}", responseDTO.getId());
             
             // Отправляем уведомление через WebSocket
             webSocketService.notifyHouseUpdate("UPDATE", responseDTO);
@@ -135,7 +162,7 @@ public class HouseService {
             return responseDTO;
             
         } catch (Exception e) {
-            logger.severe("HouseService.updateHouse() - ошибка: " + e.getMessage());
+            log.error("HouseService.updateHouse() - ошибка: {}", e.getMessage());
             throw new RuntimeException("Ошибка обновления дома: " + e.getMessage(), e);
         }
     }
@@ -146,35 +173,36 @@ public class HouseService {
      */
     @Transactional(Transactional.TxType.REQUIRED)
     public boolean deleteHouse(Long id) {
-        logger.info("HouseService.deleteHouse() - начало каскадного удаления дома с id=" + id);
+        log.debug("HouseService.deleteHouse() - начало каскадного удаления дома с id={}", id);
         
         try {
             // Проверяем количество квартир для информирования пользователя
             long flatsCount = houseRepository.getFlatsCount(id);
             if (flatsCount > 0) {
-                logger.info("HouseService.deleteHouse() - будет выполнено каскадное удаление " + flatsCount + " квартир(ы)");
+                log.debug("HouseService.deleteHouse() - будет выполнено каскадное удаление {} квартир(ы)", flatsCount);
             }
             
             // Удаляем дом с каскадным удалением квартир через EclipseLink
-            logger.info("HouseService.deleteHouse() - выполняем каскадное удаление через EclipseLink");
+            log.debug("HouseService.deleteHouse() - выполняем каскадное удаление через EclipseLink");
             boolean deleted = houseRepository.deleteById(id);
             
             if (deleted) {
+                entityCacheInvalidator.invalidateAfterCommit(House.class, id, CacheKey.Change.DELETED);
                 if (flatsCount > 0) {
-                    logger.info("HouseService.deleteHouse() - дом и " + flatsCount + " связанных квартир(ы) успешно удалены");
+                    log.debug("HouseService.deleteHouse() - дом и {} связанных квартир(ы) успешно удалены", flatsCount);
                 } else {
-                    logger.info("HouseService.deleteHouse() - дом успешно удален (квартир не было)");
+                    log.debug("HouseService.deleteHouse() - дом успешно удален (квартир не было)");
                 }
                 // Отправляем уведомление через WebSocket
                 webSocketService.notifyHouseUpdate("DELETE", id);
                 return true;
             } else {
-                logger.info("HouseService.deleteHouse() - дом не найден для удаления");
+                log.debug("HouseService.deleteHouse() - дом не найден для удаления");
                 return false;
             }
             
         } catch (Exception e) {
-            logger.severe("HouseService.deleteHouse() - ошибка каскадного удаления: " + e.getMessage());
+            log.error("HouseService.deleteHouse() - ошибка каскадного удаления: {}", e.getMessage());
             throw new RuntimeException("Ошибка удаления дома: " + e.getMessage(), e);
         }
     }
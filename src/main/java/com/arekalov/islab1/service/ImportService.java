@@ -1,7 +1,10 @@
 package com.arekalov.islab1.service;
 
+import com.arekalov.islab1.cache.EntityCacheInvalidator;
+import com.arekalov.islab1.cache.EntityCacheInvalidator.CacheKey;
 import com.arekalov.islab1.entity.*;
 import com.arekalov.islab1.exception.ValidationException;
+import com.arekalov.islab1.logging.Log;
 import com.arekalov.islab1.repository.FlatRepository;
 import com.arekalov.islab1.repository.HouseRepository;
 import com.arekalov.islab1.repository.ImportHistoryRepository;
@@ -21,7 +24,6 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -31,7 +33,7 @@ import java.util.stream.Collectors;
 @Stateless
 public class ImportService {
     
-    private static final Logger logger = Logger.getLogger(ImportService.class.getName());
+    private static final Log log = Log.get(ImportService.class);
     
     @Inject
     private FlatRepository flatRepository;
@@ -54,6 +56,9 @@ public class ImportService {
     @Inject
     private FlatService flatService;
     
+    @Inject
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
     /**
      * Универсальный импорт объектов
      * Принимает массив операций с разными типами объектов
@@ -63,7 +68,7 @@ public class ImportService {
      */
     @Transactional(Transactional.TxType.REQUIRED)
     public ImportHistory importObjects(String json) {
-        logger.info("ImportService.importObjects() - начало импорта");
+        log.debug("ImportService.importObjects() - начало импорта");
         
         try {
             // Парсим JSON в массив операций
@@ -76,7 +81,7 @@ public class ImportService {
                 throw new IllegalArgumentException("Массив операций пуст");
             }
             
-            logger.info("ImportService.importObjects() - найдено " + operations.size() + " операций");
+            log.info("ImportService.importObjects() - найдено {} операций", operations.size());
             
             // Счетчик успешно созданных/измененных/удаленных объектов (включая вложенные)
             int successCount = 0;
@@ -84,8 +89,8 @@ public class ImportService {
             // Обрабатываем каждую операцию
             for (int i = 0; i < operations.size(); i++) {
                 ImportOperationRequest operation = operations.get(i);
-                logger.info(String.format("ImportService.importObjects() - операция %d: type=%s, operation=%s", 
-                    i + 1, operation.getType(), operation.getOperation()));
+                log.debugf("ImportService.importObjects() - операция %d: type=%s, operation=%s", 
+                    i + 1, operation.getType(), operation.getOperation());
                 
                 // Определяем тип объекта и операцию
                 String type = operation.getType().toUpperCase();
@@ -98,7 +103,7 @@ public class ImportService {
                 }
                 op = op.toUpperCase();
                 
-                logger.info("ImportService.importObjects() - выполняется: " + type + " " + op);
+                log.debug("ImportService.importObjects() - выполняется: {} {}", type, op);
                 
                 // Выполняем операцию в зависимости от типа
                 // Методы возвращают количество затронутых объектов (включая вложенные)
@@ -130,18 +135,18 @@ public class ImportService {
                 .build();
             
             history = importHistoryRepository.save(history);
-            logger.info("ImportService.importObjects() - импорт успешно завершен, история id=" + history.getId());
+            log.info("ImportService.importObjects() - импорт успешно завершен, история id={}", history.getId());
             
             return history;
             
         } catch (ValidationException e) {
             // Ошибки валидации - пробрасываем как есть
-            logger.warning("ImportService.importObjects() - ошибка валидации: " + e.getMessage());
+            log.warn("ImportService.importObjects() - ошибка валидации: {}", e.getMessage());
             throw e;
             
         } catch (IllegalArgumentException e) {
             // Ошибки бизнес-логики - пробрасываем как есть
-            logger.warning("ImportService.importObjects() - ошибка бизнес-логики: " + e.getMessage());
+            log.warn("ImportService.importObjects() - ошибка бизнес-логики: {}", e.getMessage());
             throw e;
             
         } catch (InvalidFormatException e) {
@@ -168,17 +173,17 @@ public class ImportService {
                 );
             }
             
-            logger.warning("ImportService.importObjects() - ошибка формата данных: " + message);
+            log.warn("ImportService.importObjects() - ошибка формата данных: {}", message);
             throw new IllegalArgumentException(message, e);
             
         } catch (JsonProcessingException e) {
             // Другие Jackson ошибки парсинга
-            logger.warning("ImportService.importObjects() - ошибка парсинга JSON: " + e.getMessage());
+            log.warn("ImportService.importObjects() - ошибка парсинга JSON: {}", e.getMessage());
             throw new IllegalArgumentException("Ошибка парсинга JSON: " + e.getOriginalMessage(), e);
             
         } catch (Exception e) {
             // Настоящие технические ошибки
-            logger.severe("ImportService.importObjects() - техническая ошибка: " + e.getClass().getName() + ": " + e.getMessage());
+            log.error("ImportService.importObjects() - техническая ошибка: {}: {}", e.getClass().getName(), e.getMessage());
             e.printStackTrace();
             throw new RuntimeException("Техническая ошибка сервера", e);
         }
@@ -193,7 +198,7 @@ public class ImportService {
             removeNullIds(rootNode);
             return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(rootNode);
         } catch (Exception e) {
-            logger.warning("Ошибка форматирования JSON: " + e.getMessage());
+            log.warn("Ошибка форматирования JSON: {}", e.getMessage());
             return json; // Возвращаем исходный JSON в случае ошибки
         }
     }
@@ -264,15 +269,16 @@ public class ImportService {
                 if (house == null) {
                     throw new IllegalArgumentException("Дом с id=" + houseId + " не найден");
                 }
-                logger.info("Используется существующий дом: id=" + houseId);
+                log.debug("Используется существующий дом: id={}", houseId);
                 // НЕ увеличиваем счетчик - дом уже существовал
             } else {
                 // Передан объект для создания нового дома
                 house = objectMapper.treeToValue(houseNode, House.class);
                 validateEntity(house, "Дом");
                 house = houseRepository.save(house);
+                entityCacheInvalidator.invalidateAfterCommit(House.class, house.getId(), CacheKey.Change.CREATED);
                 createdObjects++; // +1 за House
-                logger.info("Создан новый дом: id=" + house.getId());
+                log.debug("Создан новый дом: id={}", house.getId());
             }
         }
         
@@ -298,11 +304,12 @@ public class ImportService {
         flatService.validateCoordinatesAndFloorUniqueness(flat);
         
         flat = flatRepository.save(flat);
+        entityCacheInvalidator.invalidateAfterCommit(Flat.class, flat.getId());
         createdObjects++; // +1 за Flat
         
         webSocketService.notifyFlatUpdate("CREATE", flat);
-        logger.info(String.format("Создана квартира: id=%d, name=%s (всего создано объектов: %d)", 
-            flat.getId(), flat.getName(), createdObjects));
+        log.debugf("Создана квартира: id=%d, name=%s (всего создано объектов: %d)", 
+            flat.getId(), flat.getName(), createdObjects);
         
         return createdObjects;
     }
@@ -337,6 +344,8 @@ public class ImportService {
             Coordinates coords = objectMapper.treeToValue(dataNode.get("coordinates"), Coordinates.class);
             if (coords.getId() == null) {
                 coords = flatRepository.saveCoordinates(coords);
+            } else {
+                entityCacheInvalidator.invalidateAfterCommit(Coordinates.class, coords.getId());
             }
             updatedFlat.setCoordinates(coords);
         } else {
@@ -362,6 +371,9 @@ public class ImportService {
                 if (house.getId() == null) {
                     validateEntity(house, "Дом");
                     house = houseRepository.save(house);
+                    entityCacheInvalidator.invalidateAfterCommit(House.class, house.getId(), CacheKey.Change.CREATED);
+                } else {
+                    entityCacheInvalidator.invalidateAfterCommit(House.class, house.getId());
                 }
             }
             updatedFlat.setHouse(house);
@@ -376,9 +388,10 @@ public class ImportService {
         flatService.validateCoordinatesAndFloorUniqueness(updatedFlat);
         
         updatedFlat = flatRepository.save(updatedFlat);
+        entityCacheInvalidator.invalidateAfterCommit(Flat.class, id);
         
         webSocketService.notifyFlatUpdate("UPDATE", updatedFlat);
-        logger.info("Обновлена квартира: id=" + id);
+        log.debug("Обновлена квартира: id={}", id);
         
         return 1; // Обновлен 1 объект (Flat)
     }
@@ -396,8 +409,9 @@ public class ImportService {
         }
         
         flatRepository.deleteById(id);
+        entityCacheInvalidator.invalidateAfterCommit(Flat.class, id);
         webSocketService.notifyFlatUpdate("DELETE", flat);
-        logger.info("Удалена квартира: id=" + id);
+        log.debug("Удалена квартира: id={}", id);
         
         return 1; // Удален 1 объект (Flat)
     }
@@ -413,7 +427,8 @@ public class ImportService {
                 house.setId(null);
                 validateEntity(house, "Дом");
                 house = houseRepository.save(house);
-                logger.info("Создан дом: id=" + house.getId());
+                entityCacheInvalidator.invalidateAfterCommit(House.class, house.getId(), CacheKey.Change.CREATED);
+                log.debug("Создан дом: id={}", house.getId());
                 return 1; // Создан 1 объект
                 
             case "UPDATE":
@@ -426,7 +441,8 @@ public class ImportService {
                 house.setId(houseId);
                 validateEntity(house, "Дом");
                 house = houseRepository.save(house);
-                logger.info("Обновлен дом: id=" + houseId);
+                entityCacheInvalidator.invalidateAfterCommit(House.class, houseId);
+                log.debug("Обновлен дом: id={}", houseId);
                 return 1; // Обновлен 1 объект
                 
             case "DELETE":
@@ -436,7 +452,8 @@ public class ImportService {
                     throw new IllegalArgumentException("Дом с id=" + houseId + " не найден");
                 }
                 houseRepository.deleteById(houseId);
-                logger.info("Удален дом: id=" + houseId);
+                entityCacheInvalidator.invalidateAfterCommit(House.class, houseId, CacheKey.Change.DELETED);
+                log.debug("Удален дом: id={}", houseId);
                 return 1; // Удален 1 объект
                 
             default:
@@ -455,7 +472,7 @@ public class ImportService {
                 coords.setId(null);
                 validateEntity(coords, "Координаты");
                 coords = flatRepository.saveCoordinates(coords);
-                logger.info("Созданы координаты: id=" + coords.getId());
+                log.debug("Созданы координаты: id={}", coords.getId());
                 return 1; // Создан 1 объект
                 
             case "UPDATE":
@@ -464,7 +481,8 @@ public class ImportService {
                 coords.setId(coordsId);
                 validateEntity(coords, "Координаты");
                 coords = flatRepository.saveCoordinates(coords);
-                logger.info("Обновлены координаты: id=" + coordsId);
+                entityCacheInvalidator.invalidateAfterCommit(Coordinates.class, coordsId);
+                log.debug("Обновлены координаты: id={}", coordsId);
                 return 1; // Обновлен 1 объект
                 
             case "DELETE":
@@ -1,20 +1,250 @@
 package com.arekalov.islab1.service;
 
+import com.arekalov.islab1.dto.websocket.WebSocketMessage;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.mapper.FlatMapper;
+import com.arekalov.islab1.mapper.HouseMapper;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.sse.SseEventStream;
+import com.arekalov.islab1.websocket.ChangeFeed;
 import com.arekalov.islab1.websocket.UpdatesWebSocket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Сервис уведомлений об изменениях
+ * 
+ * Внутри транзакции события накапливаются и отправляются только после успешного коммита:
+ * клиенты не узнают об изменениях, которые откатились. События одной транзакции
+ * одного типа отправляются одним сообщением BATCH (пачками по BATCH_SIZE элементов).
+ * 
+ * Сущности превращаются в компактные DTO сразу при публикации, пока транзакция
+ * открыта: после коммита сериализация не обращается к JPA и не подгружает связи.
+ * 
+ * Перед рассылкой события нумеруются и сохраняются в журнале изменений (ChangeFeed),
+ * затем уходят WebSocket- и SSE-клиентам.
+ * 
+ * Зафиксированные события копятся в окне COALESCE_WINDOW_MS: повторные изменения
+ * одного объекта схлопываются до последнего состояния (EventCoalescer), поэтому при
+ * массовых обновлениях клиенты получают не больше одного события на объект за окно.
+ */
 @ApplicationScoped
 public class WebSocketService {
     
+    private static final Logger logger = Logger.getLogger(WebSocketService.class.getName());
+    
+    private static final Object BUFFER_KEY = WebSocketService.class.getName() + ".buffer";
+    
+    /** Максимальное количество событий в одном BATCH-сообщении */
+    private static final int BATCH_SIZE = Integer.getInteger("islab1.websocket.batch-size", 500);
+    
+    /** Окно схлопывания событий; 0 - отправлять сразу после коммита */
+    private static final long COALESCE_WINDOW_MS = Long.getLong("islab1.notifications.coalesce-window-ms", 100L);
+    
+    /** При таком количестве накопленных объектов окно закрывается досрочно */
+    private static final int COALESCE_MAX_PENDING = Integer.getInteger("islab1.notifications.coalesce-max-pending", 10_000);
+    
     @Inject
     private UpdatesWebSocket updatesWebSocket;
+    
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    @Inject
+    private ChangeFeed changeFeed;
+    
+    @Inject
+    private SseEventStream sseEventStream;
+    
+    @Inject
+    private FlatMapper flatMapper;
+    
+    @Inject
+    private HouseMapper houseMapper;
+    
+    @Resource
+    private ManagedThreadFactory threadFactory;
+    
+    /** Накопленные за окно события; guarded by coalescer */
+    private final EventCoalescer coalescer = new EventCoalescer();
+    
+    private boolean flushScheduled;
+    
+    private ScheduledExecutorService coalesceScheduler;
+    
+    @PostConstruct
+    public void init() {
+        if (COALESCE_WINDOW_MS > 0) {
+            coalesceScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (coalesceScheduler != null) {
+            coalesceScheduler.shutdownNow();
+            flushWindow();
+        }
+    }
 
     public void notifyFlatUpdate(String action, Object data) {
-        updatesWebSocket.broadcast("FLAT", action, data);
+        publish("FLAT", action, data);
     }
 
     public void notifyHouseUpdate(String action, Object data) {
-        updatesWebSocket.broadcast("HOUSE", action, data);
+        publish("HOUSE", action, data);
+    }
+    
+    /**
+     * Отправить событие сразу или отложить до коммита текущей транзакции
+     */
+    private void publish(String type, String action, Object data) {
+        Object payload = toPayload(data);
+        
+        if (!isTransactionActive()) {
+            onCommitted(List.of(new WebSocketMessage(type, action, payload)));
+            return;
+        }
+        
+        @SuppressWarnings("unchecked")
+        List<WebSocketMessage> buffer = (List<WebSocketMessage>) transactionSynchronizationRegistry.getResource(BUFFER_KEY);
+        if (buffer == null) {
+            List<WebSocketMessage> events = new ArrayList<>();
+            transactionSynchronizationRegistry.putResource(BUFFER_KEY, events);
+            transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        onCommitted(events);
+                    } else {
+                        metricsRegistry.add("websocket_events_discarded_total", events.size());
+                    }
+                }
+            });
+            buffer = events;
+        }
+        buffer.add(new WebSocketMessage(type, action, payload));
+        metricsRegistry.increment("websocket_events_buffered_total");
+    }
+    
+    /**
+     * Передать зафиксированные события в окно схлопывания
+     */
+    private void onCommitted(List<WebSocketMessage> events) {
+        if (coalesceScheduler == null) {
+            changeFeed.append(events, this::deliver);
+            return;
+        }
+        
+        boolean flushNow;
+        synchronized (coalescer) {
+            events.forEach(coalescer::add);
+            flushNow = coalescer.size() >= COALESCE_MAX_PENDING;
+            if (!flushNow && !flushScheduled) {
+                flushScheduled = true;
+                coalesceScheduler.schedule(this::flushWindow, COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (flushNow) {
+            flushWindow();
+        }
+    }
+    
+    /**
+     * Закрыть окно: передать последние состояния объектов в журнал изменений
+     */
+    private void flushWindow() {
+        synchronized (coalescer) {
+            flushScheduled = false;
+            List<WebSocketMessage> events = coalescer.drain();
+            metricsRegistry.add("notifications_coalesced_total", coalescer.takeSuperseded());
+            if (!events.isEmpty()) {
+                // append() только ставит задачу в очередь; под блокировкой, чтобы сохранить порядок окон
+                changeFeed.append(events, this::deliver);
+            }
+        }
+    }
+    
+    /**
+     * Разослать пронумерованные события всем транспортам
+     */
+    private void deliver(List<WebSocketMessage> events) {
+        flush(events);
+        try {
+            sseEventStream.publish(events);
+        } catch (Exception e) {
+            logger.severe("WebSocketService.deliver() - ошибка отправки SSE-уведомлений: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Отправить накопленные за транзакцию события
+     */
+    private void flush(List<WebSocketMessage> events) {
+        try {
+            Map<String, List<WebSocketMessage>> byType = new LinkedHashMap<>();
+            for (WebSocketMessage event : events) {
+                byType.computeIfAbsent(event.getType(), key -> new ArrayList<>()).add(event);
+            }
+            
+            for (Map.Entry<String, List<WebSocketMessage>> entry : byType.entrySet()) {
+                List<WebSocketMessage> items = entry.getValue();
+                if (items.size() == 1) {
+                    WebSocketMessage event = items.get(0);
+                    updatesWebSocket.broadcast(event);
+                    continue;
+                }
+                for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+                    List<WebSocketMessage> chunk = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+                    updatesWebSocket.broadcastBatch(entry.getKey(), new ArrayList<>(chunk));
+                    metricsRegistry.increment("websocket_batches_total");
+                }
+            }
+        } catch (Exception e) {
+            // Транзакция уже зафиксирована - ошибку рассылки только логируем
+            logger.severe("WebSocketService.flush() - ошибка отправки уведомлений: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Типизированный payload события: FlatEventDTO, HouseResponseDTO или ID
+     */
+    private Object toPayload(Object data) {
+        if (data instanceof Flat flat) {
+            return flatMapper.toEventDTO(flat);
+        }
+        if (data instanceof House house) {
+            return houseMapper.toResponseDTO(house);
+        }
+        return data;
+    }
+    
+    private boolean isTransactionActive() {
+        return transactionSynchronizationRegistry != null
+            && transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE;
     }
 }
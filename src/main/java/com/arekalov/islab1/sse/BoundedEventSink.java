@@ -0,0 +1,168 @@
+package com.arekalov.islab1.sse;
+
+import com.arekalov.islab1.websocket.TokenBucket;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * SSE-соединение с собственной ограниченной очередью событий
+ * 
+ * Регистрируется в SseBroadcaster вместо исходного SseEventSink: send() только
+ * ставит событие в очередь, а запись в сокет идет по одному событию в пуле потоков.
+ * При переполнении очереди соединение закрывается - клиент переподключится
+ * с Last-Event-ID и получит пропущенное из журнала изменений.
+ * При заданном ограничении частоты запись откладывается до появления токена.
+ */
+class BoundedEventSink implements SseEventSink {
+    
+    private static final Logger logger = Logger.getLogger(BoundedEventSink.class.getName());
+    
+    private final SseEventSink delegate;
+    
+    private final BlockingQueue<OutboundSseEvent> queue;
+    
+    private final Executor executor;
+    
+    private final ScheduledExecutorService scheduler;
+    
+    /** Ограничение частоты событий; null - без ограничения */
+    private final TokenBucket rateLimit;
+    
+    private final SseEventStream owner;
+    
+    /** true, пока есть незавершенная запись в сокет */
+    private final AtomicBoolean sending = new AtomicBoolean();
+    
+    private final AtomicBoolean closed = new AtomicBoolean();
+    
+    /**
+     * События с номером не больше этого уже отправлены при подключении (replay)
+     * и приходят от broadcaster'а повторно, если были разосланы до регистрации
+     */
+    private volatile long deliveredUpTo = Long.MIN_VALUE;
+    
+    BoundedEventSink(SseEventSink delegate, int queueCapacity, Executor executor,
+                     ScheduledExecutorService scheduler, TokenBucket rateLimit, SseEventStream owner) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.rateLimit = rateLimit;
+        this.owner = owner;
+    }
+    
+    int getQueueDepth() {
+        return queue.size();
+    }
+    
+    void skipUpTo(long seq) {
+        deliveredUpTo = seq;
+    }
+    
+    @Override
+    public boolean isClosed() {
+        if (!closed.get() && delegate.isClosed()) {
+            close();
+        }
+        return closed.get();
+    }
+    
+    /**
+     * Событие от broadcaster'а
+     */
+    @Override
+    public CompletionStage<?> send(OutboundSseEvent event) {
+        if (event.getId() != null && Long.parseLong(event.getId()) <= deliveredUpTo) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return enqueue(event);
+    }
+    
+    /**
+     * Поставить событие в очередь без проверки номера (replay и служебные события)
+     */
+    CompletionStage<?> enqueue(OutboundSseEvent event) {
+        if (closed.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!queue.offer(event)) {
+            owner.onSlowConsumer(this);
+            close();
+            return CompletableFuture.completedFuture(null);
+        }
+        if (sending.compareAndSet(false, true)) {
+            executor.execute(this::sendNext);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    private void sendNext() {
+        if (closed.get()) {
+            queue.clear();
+            sending.set(false);
+            return;
+        }
+        
+        if (rateLimit != null && !queue.isEmpty()) {
+            long waitMs = rateLimit.tryAcquire();
+            if (waitMs > 0) {
+                owner.onThrottled(this);
+                scheduler.schedule(() -> executor.execute(this::sendNext), waitMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        
+        OutboundSseEvent event = queue.poll();
+        if (event == null) {
+            sending.set(false);
+            // Событие могло появиться между poll() и сбросом флага
+            if (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+                executor.execute(this::sendNext);
+            }
+            return;
+        }
+        
+        try {
+            delegate.send(event).whenComplete((result, error) -> {
+                if (error != null) {
+                    onFailure(error);
+                } else {
+                    owner.onSent(this);
+                    executor.execute(this::sendNext);
+                }
+            });
+        } catch (RuntimeException e) {
+            onFailure(e);
+        }
+    }
+    
+    private void onFailure(Throwable error) {
+        sending.set(false);
+        logger.fine("BoundedEventSink - ошибка записи SSE-события: " + error.getMessage());
+        close();
+    }
+    
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        queue.clear();
+        owner.onClosed(this);
+        try {
+            delegate.close();
+        } catch (RuntimeException e) {
+            logger.fine("BoundedEventSink - ошибка закрытия SSE-соединения: " + e.getMessage());
+        }
+    }
+}
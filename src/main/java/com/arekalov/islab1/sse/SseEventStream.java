@@ -0,0 +1,326 @@
+package com.arekalov.islab1.sse;
+
+import com.arekalov.islab1.config.ObjectMapperProducer;
+import com.arekalov.islab1.dto.websocket.WebSocketMessage;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.websocket.ChangeFeed;
+import com.arekalov.islab1.websocket.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseBroadcaster;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Рассылка изменений через Server-Sent Events
+ * 
+ * На каждый тип сущности (топик) - один общий SseBroadcaster. Событие сериализуется
+ * один раз и передается broadcaster'у в отдельном потоке, поэтому поток журнала
+ * изменений не зависит от количества клиентов. Каждое соединение имеет свою
+ * ограниченную очередь (BoundedEventSink). ID события - его seq в журнале изменений,
+ * поэтому браузер при переподключении сам присылает Last-Event-ID.
+ * 
+ * Как и в WebSocket, подряд идущие события одного типа отправляются одним событием
+ * BATCH, а пропущенные при переподключении - страницами REPLAY (по BATCH_SIZE
+ * элементов, id - seq последнего элемента): массовое изменение или длинный replay
+ * не переполняет очередь соединения. Если страниц replay больше половины очереди,
+ * клиент получает RESYNC.
+ */
+@ApplicationScoped
+public class SseEventStream {
+    
+    private static final Logger logger = Logger.getLogger(SseEventStream.class.getName());
+    
+    /** Доступные топики */
+    public static final Set<String> TOPICS = Set.of("FLAT", "HOUSE");
+    
+    private static final int QUEUE_CAPACITY = Integer.getInteger("islab1.sse.queue-capacity", 256);
+    
+    private static final int SENDER_THREADS = Integer.getInteger("islab1.sse.sender-threads", 2);
+    
+    private static final long HEARTBEAT_MS = Long.getLong("islab1.sse.heartbeat-ms", 15_000L);
+    
+    /** Максимум событий в одном BATCH/REPLAY-событии - как в WebSocket */
+    private static final int BATCH_SIZE = Integer.getInteger("islab1.websocket.batch-size", 500);
+    
+    private static final long RECONNECT_DELAY_MS = Long.getLong("islab1.sse.reconnect-delay-ms", 3_000L);
+    
+    /**
+     * Максимум событий в секунду на соединение; 0 - без ограничения
+     * Общее свойство с WebSocket: оба транспорта ограничиваются одинаково
+     */
+    private static final int MAX_EVENTS_PER_SECOND = Integer.getInteger("islab1.websocket.max-messages-per-second", 50);
+    
+    @Resource
+    private ManagedThreadFactory threadFactory;
+    
+    @Inject
+    private ChangeFeed changeFeed;
+    
+    @Inject
+    private ObjectMapperProducer objectMapperProducer;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    private final Map<String, SseBroadcaster> broadcasters = new ConcurrentHashMap<>();
+    
+    private final Set<BoundedEventSink> connections = ConcurrentHashMap.newKeySet();
+    
+    private volatile Sse sse;
+    
+    private SseBroadcaster heartbeatBroadcaster;
+    
+    private ExecutorService dispatcher;
+    
+    private ExecutorService senderExecutor;
+    
+    private ScheduledExecutorService heartbeatScheduler;
+    
+    @PostConstruct
+    public void init() {
+        dispatcher = Executors.newSingleThreadExecutor(threadFactory);
+        senderExecutor = Executors.newFixedThreadPool(SENDER_THREADS, threadFactory);
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        heartbeatScheduler.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_MS, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+        
+        metricsRegistry.registerGauge("sse_connections", connections::size);
+        metricsRegistry.registerGauge("sse_queue_depth_total", this::totalQueueDepth);
+        
+        logger.info("SseEventStream - очередь=" + QUEUE_CAPACITY + ", heartbeat=" + HEARTBEAT_MS + "мс");
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        heartbeatScheduler.shutdownNow();
+        dispatcher.shutdownNow();
+        broadcasters.values().forEach(SseBroadcaster::close);
+        if (heartbeatBroadcaster != null) {
+            heartbeatBroadcaster.close();
+        }
+        senderExecutor.shutdownNow();
+    }
+    
+    /**
+     * Broadcaster'ы создаются из Sse первого запроса
+     */
+    private synchronized void initBroadcasters(Sse requestSse) {
+        if (sse != null) {
+            return;
+        }
+        for (String topic : TOPICS) {
+            broadcasters.put(topic, requestSse.newBroadcaster());
+        }
+        heartbeatBroadcaster = requestSse.newBroadcaster();
+        sse = requestSse;
+    }
+    
+    /**
+     * Подключить клиента к топикам
+     *
+     * @param since номер последнего полученного события или null
+     */
+    public void open(SseEventSink sink, Sse requestSse, Set<String> topics, Long since) {
+        initBroadcasters(requestSse);
+        TokenBucket rateLimit = MAX_EVENTS_PER_SECOND > 0 ? new TokenBucket(MAX_EVENTS_PER_SECOND) : null;
+        BoundedEventSink connection = new BoundedEventSink(sink, QUEUE_CAPACITY, senderExecutor,
+            heartbeatScheduler, rateLimit, this);
+        
+        changeFeed.connect(since, () -> {
+            connections.add(connection);
+            heartbeatBroadcaster.register(connection);
+            for (String topic : topics) {
+                broadcasters.get(topic).register(connection);
+            }
+            
+            return new ChangeFeed.Subscriber() {
+                /** Replay не помещается в очередь - вместо READY отправить RESYNC */
+                private boolean overflow;
+                
+                @Override
+                public void replay(List<WebSocketMessage> events) {
+                    List<WebSocketMessage> matched = new ArrayList<>();
+                    for (WebSocketMessage event : events) {
+                        if (topics.contains(event.getType())) {
+                            matched.add(event);
+                        }
+                    }
+                    
+                    // Остальная часть очереди остается под новые события, пока клиент читает replay
+                    int pages = (matched.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+                    if (pages > QUEUE_CAPACITY / 2) {
+                        overflow = true;
+                        return;
+                    }
+                    
+                    for (int from = 0; from < matched.size(); from += BATCH_SIZE) {
+                        List<WebSocketMessage> page = new ArrayList<>(
+                            matched.subList(from, Math.min(from + BATCH_SIZE, matched.size())));
+                        OutboundSseEvent outbound = toEvent("REPLAY", WebSocketMessage.builder()
+                            .type("FEED")
+                            .action("REPLAY")
+                            .items(page)
+                            .build(), page.get(page.size() - 1).getSeq());
+                        if (outbound != null) {
+                            connection.enqueue(outbound);
+                        }
+                    }
+                }
+                
+                @Override
+                public void resync(long seq) {
+                    connection.skipUpTo(seq);
+                    connection.enqueue(controlEvent("RESYNC", seq));
+                }
+                
+                @Override
+                public void ready(long seq) {
+                    if (overflow) {
+                        metricsRegistry.increment("sse_replay_resyncs_total");
+                        resync(seq);
+                        return;
+                    }
+                    connection.skipUpTo(seq);
+                    connection.enqueue(controlEvent("READY", seq));
+                }
+            };
+        });
+    }
+    
+    /**
+     * Разослать зафиксированные события (уже с номерами)
+     * 
+     * Подряд идущие события одного типа уходят одним BATCH-событием: группы
+     * отправляются в порядке номеров, поэтому Last-Event-ID не перескакивает
+     * через еще не отправленные события другого топика.
+     */
+    public void publish(List<WebSocketMessage> events) {
+        if (sse == null || connections.isEmpty()) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            List<WebSocketMessage> run = new ArrayList<>();
+            for (WebSocketMessage event : events) {
+                if (!run.isEmpty() && (!run.get(0).getType().equals(event.getType()) || run.size() == BATCH_SIZE)) {
+                    broadcastRun(run);
+                    run = new ArrayList<>();
+                }
+                run.add(event);
+            }
+            if (!run.isEmpty()) {
+                broadcastRun(run);
+            }
+        });
+    }
+    
+    /**
+     * Разослать события одного типа: одно - как есть, несколько - одним BATCH
+     */
+    private void broadcastRun(List<WebSocketMessage> run) {
+        String type = run.get(0).getType();
+        SseBroadcaster broadcaster = broadcasters.get(type);
+        if (broadcaster == null) {
+            return;
+        }
+        
+        OutboundSseEvent outbound;
+        if (run.size() == 1) {
+            outbound = toEvent(type, run.get(0), run.get(0).getSeq());
+        } else {
+            outbound = toEvent(type, WebSocketMessage.builder()
+                .type(type)
+                .action("BATCH")
+                .items(run)
+                .build(), run.get(run.size() - 1).getSeq());
+            metricsRegistry.increment("sse_batches_total");
+        }
+        if (outbound != null) {
+            broadcaster.broadcast(outbound);
+            metricsRegistry.add("sse_events_total", run.size());
+        }
+    }
+    
+    /**
+     * Событие с заданным именем, данными = JSON сообщения (как в WebSocket) и id = seq
+     */
+    private OutboundSseEvent toEvent(String name, WebSocketMessage message, Long seq) {
+        String json;
+        try {
+            json = objectMapperProducer.getObjectMapper().writeValueAsString(message);
+        } catch (IOException e) {
+            logger.warning("SseEventStream - ошибка сериализации события: " + e.getMessage());
+            return null;
+        }
+        
+        OutboundSseEvent.Builder builder = sse.newEventBuilder()
+            .name(name)
+            .data(json);
+        if (seq != null) {
+            builder.id(String.valueOf(seq));
+        }
+        return builder.build();
+    }
+    
+    /**
+     * READY/RESYNC: id = текущий seq, чтобы следующее переподключение продолжило с него
+     */
+    private OutboundSseEvent controlEvent(String name, long seq) {
+        return sse.newEventBuilder()
+            .name(name)
+            .id(String.valueOf(seq))
+            .reconnectDelay(RECONNECT_DELAY_MS)
+            .data("{\"seq\":" + seq + "}")
+            .build();
+    }
+    
+    private void heartbeat() {
+        try {
+            if (sse != null && !connections.isEmpty()) {
+                heartbeatBroadcaster.broadcast(sse.newEventBuilder().comment("heartbeat").build());
+            }
+        } catch (RuntimeException e) {
+            logger.warning("SseEventStream - ошибка отправки heartbeat: " + e.getMessage());
+        }
+    }
+    
+    void onSent(BoundedEventSink connection) {
+        metricsRegistry.increment("sse_messages_sent_total");
+    }
+    
+    void onThrottled(BoundedEventSink connection) {
+        metricsRegistry.increment("sse_throttled_total");
+    }
+    
+    void onSlowConsumer(BoundedEventSink connection) {
+        metricsRegistry.increment("sse_slow_consumers_disconnected_total");
+    }
+    
+    void onClosed(BoundedEventSink connection) {
+        connections.remove(connection);
+    }
+    
+    private long totalQueueDepth() {
+        long total = 0;
+        for (BoundedEventSink connection : connections) {
+            total += connection.getQueueDepth();
+        }
+        return total;
+    }
+}
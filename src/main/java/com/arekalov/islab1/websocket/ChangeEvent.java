@@ -0,0 +1,38 @@
+package com.arekalov.islab1.websocket;
+
+import com.arekalov.islab1.dto.response.HouseResponseDTO;
+import com.arekalov.islab1.dto.websocket.FlatEventDTO;
+
+/**
+ * Событие изменения с атрибутами, по которым работают подписки
+ * 
+ * data - типизированный payload: FlatEventDTO, HouseResponseDTO или ID удаленного объекта.
+ *
+ * @param houseId ID дома (для FLAT - дом квартиры, для HOUSE - сам дом), null если неизвестен
+ * @param price   цена квартиры
+ * @param partial true, если атрибуты неизвестны (например, удаление квартиры по ID)
+ */
+public record ChangeEvent(String type, String action, Long houseId, Long price, boolean partial, Object data) {
+    
+    /**
+     * Создать событие, извлекая атрибуты из данных
+     */
+    public static ChangeEvent of(String type, String action, Object data) {
+        Long houseId = null;
+        Long price = null;
+        boolean partial = false;
+        
+        if (data instanceof FlatEventDTO flat) {
+            houseId = flat.getHouseId();
+            price = flat.getPrice();
+        } else if (data instanceof HouseResponseDTO house) {
+            houseId = house.getId();
+        } else if ("HOUSE".equals(type) && data instanceof Long id) {
+            houseId = id;
+        } else {
+            partial = true;
+        }
+        
+        return new ChangeEvent(type, action, houseId, price, partial, data);
+    }
+}
@@ -0,0 +1,297 @@
+package com.arekalov.islab1.websocket;
+
+import com.arekalov.islab1.config.ObjectMapperProducer;
+import com.arekalov.islab1.dto.websocket.WebSocketMessage;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.repository.ChangeLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Последовательный журнал изменений для возобновления подписки
+ * 
+ * Каждое зафиксированное событие получает номер seq (из последовательности таблицы
+ * change_log) и попадает в кольцевой буфер последних BUFFER_SIZE событий.
+ * Клиент, переподключившийся с ?since=<seq>, получает только пропущенные события:
+ * из буфера, а если разрыв больше буфера - из таблицы. Буфер содержит только события
+ * этого узла: если номера в нем идут с пропусками (их заняли другие узлы, пишущие в ту же
+ * таблицу), события до последнего пропуска тоже читаются из таблицы. Если пропущено больше
+ * MAX_REPLAY событий или они уже удалены из таблицы, клиент получает сигнал RESYNC
+ * и должен перезагрузить данные через REST.
+ * 
+ * Запись в таблицу и рассылка выполняются в одном выделенном потоке, поэтому
+ * события рассылаются в порядке номеров. Журнал не зависит от транспорта:
+ * им пользуются и WebSocket (?since=), и SSE (Last-Event-ID).
+ */
+@ApplicationScoped
+public class ChangeFeed {
+    
+    private static final Logger logger = Logger.getLogger(ChangeFeed.class.getName());
+    
+    private static final int BUFFER_SIZE = Integer.getInteger("islab1.feed.buffer-size", 10_000);
+    
+    private static final int MAX_REPLAY = Integer.getInteger("islab1.feed.max-replay", 5_000);
+    
+    private static final long RETENTION = Long.getLong("islab1.feed.retention", 100_000L);
+    
+    @Resource
+    private ManagedThreadFactory threadFactory;
+    
+    @Inject
+    private ChangeLogRepository changeLogRepository;
+    
+    @Inject
+    private ObjectMapperProducer objectMapperProducer;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    private ExecutorService executor;
+    
+    /** Последние события с номерами; guarded by this */
+    private final ArrayDeque<WebSocketMessage> buffer = new ArrayDeque<>();
+    
+    /** Номер последнего события; guarded by this */
+    private long lastSeq;
+    
+    /**
+     * Буфер содержит все события (любого узла) с номером больше coveredFrom: номера после него
+     * идут в буфере без пропусков; guarded by this
+     */
+    private long coveredFrom;
+    
+    /** Клиенты с since <= resyncFloor могли пропустить события без номера; guarded by this */
+    private long resyncFloor = -1;
+    
+    private long lastPrunedSeq;
+    
+    /**
+     * Получатель пропущенных событий при подключении
+     */
+    public interface Subscriber {
+        
+        /** Пропущенные события в порядке номеров */
+        void replay(List<WebSocketMessage> events);
+        
+        /** Пропущенные события восстановить нельзя - нужна полная перезагрузка данных */
+        void resync(long seq);
+        
+        /** Клиент догнал журнал; дальше идут новые события */
+        void ready(long seq);
+    }
+    
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(threadFactory);
+        
+        try {
+            lastSeq = changeLogRepository.findMaxSeq();
+        } catch (RuntimeException e) {
+            logger.warning("ChangeFeed.init() - не удалось прочитать журнал изменений: " + e.getMessage());
+        }
+        coveredFrom = lastSeq;
+        lastPrunedSeq = lastSeq;
+        
+        metricsRegistry.registerGauge("feed_last_seq", this::getLastSeq);
+        metricsRegistry.registerGauge("feed_buffer_size", this::bufferSize);
+        
+        logger.info("ChangeFeed - последний seq=" + lastSeq + ", буфер=" + BUFFER_SIZE + ", replay до " + MAX_REPLAY);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+    
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+    
+    private synchronized long bufferSize() {
+        return buffer.size();
+    }
+    
+    /**
+     * Пронумеровать зафиксированные события, сохранить их и передать на рассылку
+     * Выполняется асинхронно; deliver вызывается уже с заполненными seq.
+     */
+    public void append(List<WebSocketMessage> events, Consumer<List<WebSocketMessage>> deliver) {
+        executor.execute(() -> process(events, deliver));
+    }
+    
+    private void process(List<WebSocketMessage> events, Consumer<List<WebSocketMessage>> deliver) {
+        List<Long> seqs = null;
+        try {
+            List<ChangeLogRepository.Row> rows = new ArrayList<>(events.size());
+            for (WebSocketMessage event : events) {
+                rows.add(new ChangeLogRepository.Row(0, event.getType(), event.getAction(), toJson(event.getData())));
+            }
+            seqs = changeLogRepository.append(rows);
+        } catch (Exception e) {
+            metricsRegistry.increment("feed_append_failures_total");
+            logger.severe("ChangeFeed.process() - ошибка записи журнала, события отправляются без номера: " + e.getMessage());
+        }
+        
+        synchronized (this) {
+            if (seqs == null) {
+                // Отключенные сейчас клиенты не смогут восстановить эти события
+                resyncFloor = lastSeq;
+            } else {
+                for (int i = 0; i < events.size(); i++) {
+                    WebSocketMessage event = events.get(i);
+                    long seq = seqs.get(i);
+                    if (seq > lastSeq + 1) {
+                        // Номера между lastSeq и seq заняты другими узлами (или потеряны при откате),
+                        // в буфере этих событий нет - до seq клиенты догоняются из таблицы
+                        coveredFrom = Math.max(coveredFrom, seq - 1);
+                        metricsRegistry.increment("feed_buffer_gaps_total");
+                    }
+                    event.setSeq(seq);
+                    buffer.addLast(event);
+                    lastSeq = Math.max(lastSeq, seq);
+                }
+                while (buffer.size() > BUFFER_SIZE) {
+                    coveredFrom = Math.max(coveredFrom, buffer.removeFirst().getSeq());
+                }
+                metricsRegistry.add("feed_events_total", events.size());
+            }
+            deliver.accept(events);
+        }
+        
+        prune();
+    }
+    
+    /**
+     * Удалить из таблицы события старше RETENTION
+     */
+    private void prune() {
+        long seq = getLastSeq();
+        if (seq - lastPrunedSeq < Math.max(1, RETENTION / 10)) {
+            return;
+        }
+        try {
+            int deleted = changeLogRepository.deleteUpTo(seq - RETENTION);
+            lastPrunedSeq = seq;
+            metricsRegistry.add("feed_pruned_total", deleted);
+        } catch (RuntimeException e) {
+            logger.warning("ChangeFeed.prune() - ошибка очистки журнала: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Подключить клиента; при since != null сначала отправить пропущенные события
+     * 
+     * register регистрирует клиента для новых событий и вызывается под той же блокировкой,
+     * что и рассылка, вместе с отправкой пропущенных событий, поэтому новые события
+     * придут клиенту строго после replay.
+     */
+    public void connect(Long since, Supplier<Subscriber> register) {
+        List<WebSocketMessage> fromTable = List.of();
+        long loadedUpTo = since != null ? since : 0;
+        long knownAtRead = 0;
+        boolean resync = since != null && since < 0;
+        boolean tableRead = false;
+        
+        if (since != null && !resync) {
+            synchronized (this) {
+                knownAtRead = lastSeq;
+                tableRead = since < coveredFrom;
+            }
+            if (tableRead) {
+                try {
+                    if (since < changeLogRepository.findMinSeq() - 1) {
+                        resync = true;
+                    } else {
+                        List<ChangeLogRepository.Row> rows = changeLogRepository.findSince(since, MAX_REPLAY + 1);
+                        if (rows.size() > MAX_REPLAY) {
+                            resync = true;
+                        } else {
+                            fromTable = toMessages(rows);
+                            if (!rows.isEmpty()) {
+                                loadedUpTo = rows.get(rows.size() - 1).seq();
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.warning("ChangeFeed.connect() - ошибка чтения журнала: " + e.getMessage());
+                    resync = true;
+                }
+            }
+        }
+        
+        synchronized (this) {
+            Subscriber subscriber = register.get();
+            if (since == null) {
+                subscriber.ready(lastSeq);
+                return;
+            }
+            
+            // Пока читали таблицу, буфер мог потерять начало (вытеснение или пропуск номеров) -
+            // тогда между прочитанным и буфером остался бы разрыв
+            long readUpTo = tableRead ? Math.max(loadedUpTo, knownAtRead) : since;
+            if (since > lastSeq || since <= resyncFloor || coveredFrom > readUpTo) {
+                resync = true;
+            }
+            
+            List<WebSocketMessage> replay = new ArrayList<>();
+            if (!resync) {
+                replay.addAll(fromTable);
+                long from = Math.max(loadedUpTo, since);
+                for (WebSocketMessage event : buffer) {
+                    if (event.getSeq() > from) {
+                        replay.add(event);
+                    }
+                }
+                resync = replay.size() > MAX_REPLAY;
+            }
+            
+            if (resync) {
+                metricsRegistry.increment("feed_resyncs_total");
+                subscriber.resync(lastSeq);
+                return;
+            }
+            
+            if (!replay.isEmpty()) {
+                subscriber.replay(replay);
+            }
+            metricsRegistry.increment("feed_resumes_total");
+            metricsRegistry.add("feed_replayed_events_total", replay.size());
+            subscriber.ready(lastSeq);
+        }
+    }
+    
+    private List<WebSocketMessage> toMessages(List<ChangeLogRepository.Row> rows) throws IOException {
+        ObjectMapper objectMapper = objectMapperProducer.getObjectMapper();
+        List<WebSocketMessage> messages = new ArrayList<>(rows.size());
+        for (ChangeLogRepository.Row row : rows) {
+            messages.add(WebSocketMessage.builder()
+                .type(row.type())
+                .action(row.action())
+                .data(row.payload() != null ? objectMapper.readTree(row.payload()) : null)
+                .seq(row.seq())
+                .build());
+        }
+        return messages;
+    }
+    
+    private String toJson(Object data) throws IOException {
+        return data != null ? objectMapperProducer.getObjectMapper().writeValueAsString(data) : null;
+    }
+}
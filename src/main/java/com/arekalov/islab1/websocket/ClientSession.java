@@ -0,0 +1,225 @@
+package com.arekalov.islab1.websocket;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * WebSocket-клиент с собственной ограниченной очередью исходящих сообщений
+ * 
+ * Сообщения отправляются через getAsyncRemote() по одному: следующее уходит
+ * только после подтверждения предыдущего, поэтому медленный клиент копит
+ * очередь только у себя и не задерживает остальных.
+ * При заданном ограничении частоты следующее сообщение откладывается,
+ * пока в TokenBucket не появится токен.
+ */
+public class ClientSession {
+    
+    private static final Logger logger = Logger.getLogger(ClientSession.class.getName());
+    
+    private final Session session;
+    
+    private final BlockingQueue<EncodedFrame> queue;
+    
+    private final Executor executor;
+    
+    private final ScheduledExecutorService scheduler;
+    
+    /** Ограничение частоты сообщений; null - без ограничения */
+    private final TokenBucket rateLimit;
+    
+    private final SlowConsumerPolicy policy;
+    
+    private final WebSocketBroadcaster broadcaster;
+    
+    /** true, пока для сессии есть незавершенная асинхронная отправка */
+    private final AtomicBoolean sending = new AtomicBoolean();
+    
+    private final AtomicBoolean closed = new AtomicBoolean();
+    
+    /** Формат исходящих фреймов */
+    private final FrameFormat format;
+    
+    /** Фильтр подписки; null - клиент получает все события */
+    private volatile SubscriptionFilter filter;
+    
+    ClientSession(Session session, FrameFormat format, int queueCapacity, Executor executor,
+                  ScheduledExecutorService scheduler, TokenBucket rateLimit,
+                  SlowConsumerPolicy policy, WebSocketBroadcaster broadcaster) {
+        this.session = session;
+        this.format = format;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.rateLimit = rateLimit;
+        this.policy = policy;
+        this.broadcaster = broadcaster;
+    }
+    
+    public String getId() {
+        return session.getId();
+    }
+    
+    public Session getSession() {
+        return session;
+    }
+    
+    public FrameFormat getFormat() {
+        return format;
+    }
+    
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    public SubscriptionFilter getFilter() {
+        return filter;
+    }
+    
+    void setFilter(SubscriptionFilter filter) {
+        this.filter = filter;
+    }
+    
+    /**
+     * Поставить сообщение в очередь на отправку
+     */
+    void enqueue(EncodedFrame message) {
+        if (closed.get()) {
+            return;
+        }
+        
+        if (!queue.offer(message)) {
+            switch (policy) {
+                case DROP_NEWEST:
+                    broadcaster.onDropped(this);
+                    return;
+                case DROP_OLDEST:
+                    queue.poll();
+                    broadcaster.onDropped(this);
+                    if (!queue.offer(message)) {
+                        broadcaster.onDropped(this);
+                    }
+                    break;
+                case DISCONNECT:
+                default:
+                    close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Slow consumer"));
+                    broadcaster.onSlowConsumerDisconnected(this);
+                    return;
+            }
+        }
+        
+        scheduleDrain();
+    }
+    
+    private void scheduleDrain() {
+        if (sending.compareAndSet(false, true)) {
+            executor.execute(this::sendNext);
+        }
+    }
+    
+    /**
+     * Отправить следующее сообщение из очереди
+     */
+    private void sendNext() {
+        if (closed.get()) {
+            queue.clear();
+            sending.set(false);
+            return;
+        }
+        
+        if (rateLimit != null && !queue.isEmpty()) {
+            long waitMs = rateLimit.tryAcquire();
+            if (waitMs > 0) {
+                broadcaster.onThrottled(this);
+                scheduler.schedule(() -> executor.execute(this::sendNext), waitMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        
+        EncodedFrame message = queue.poll();
+        if (message == null) {
+            sending.set(false);
+            // Сообщение могло появиться между poll() и сбросом флага
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+            return;
+        }
+        
+        try {
+            if (format.isBinary()) {
+                session.getAsyncRemote().sendBinary(message.binary(format), this::onSent);
+            } else {
+                session.getAsyncRemote().sendText(message.text(), this::onSent);
+            }
+        } catch (RuntimeException e) {
+            onFailure(e);
+        }
+    }
+    
+    private void onSent(SendResult result) {
+        if (result.isOK()) {
+            broadcaster.onSent(this);
+            executor.execute(this::sendNext);
+        } else {
+            onFailure(result.getException());
+        }
+    }
+    
+    private void onFailure(Throwable throwable) {
+        sending.set(false);
+        broadcaster.onSendFailed(this);
+        logger.warning("ClientSession - ошибка отправки в сессию " + getId() + ": "
+            + (throwable != null ? throwable.getMessage() : "unknown"));
+        close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Send failed"));
+    }
+    
+    /**
+     * Пометить сессию закрытой (соединение уже закрыто контейнером)
+     */
+    void markClosed() {
+        closed.set(true);
+        queue.clear();
+    }
+    
+    /**
+     * Закрыть сессию и очистить очередь
+     * 
+     * Сессия сразу перестает принимать сообщения, а само закрытие соединения
+     * (close-фрейм медленному клиенту может уходить долго) выполняется в потоке
+     * отправки, чтобы не задерживать рассылку остальным клиентам.
+     */
+    void close(CloseReason reason) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        queue.clear();
+        broadcaster.unregister(getId());
+        try {
+            executor.execute(() -> closeSession(reason));
+        } catch (RejectedExecutionException e) {
+            // Пул отправки уже остановлен - закрываем в текущем потоке
+            closeSession(reason);
+        }
+    }
+    
+    private void closeSession(CloseReason reason) {
+        try {
+            if (session.isOpen()) {
+                session.close(reason);
+            }
+        } catch (IOException e) {
+            logger.warning("ClientSession - ошибка закрытия сессии " + getId() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.arekalov.islab1.websocket;
+
+import com.arekalov.islab1.config.ObjectMapperProducer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Один раз сериализованное сообщение, общее для всех получателей
+ * 
+ * Хранит UTF-8 байты JSON. Бинарные клиенты получают read-only копию буфера
+ * (у каждой своя позиция, содержимое общее), текстовые - строку, которая
+ * декодируется один раз при первом обращении. Smile и CBOR кодируются
+ * из исходного сообщения при первом обращении клиента с таким форматом.
+ */
+public final class EncodedFrame {
+    
+    private final byte[] bytes;
+    
+    private final Object message;
+    
+    private final ObjectMapperProducer objectMapperProducer;
+    
+    private volatile String text;
+    
+    private volatile byte[] smile;
+    
+    private volatile byte[] cbor;
+    
+    public EncodedFrame(Object message, ObjectMapperProducer objectMapperProducer) throws JsonProcessingException {
+        this.bytes = objectMapperProducer.getObjectMapper().writeValueAsBytes(message);
+        this.message = message;
+        this.objectMapperProducer = objectMapperProducer;
+    }
+    
+    /**
+     * Буфер для sendBinary(): без копирования данных
+     */
+    public ByteBuffer binary(FrameFormat format) {
+        byte[] result = switch (format) {
+            case SMILE -> smile();
+            case CBOR -> cbor();
+            default -> bytes;
+        };
+        return ByteBuffer.wrap(result).asReadOnlyBuffer();
+    }
+    
+    /**
+     * Текст для sendText()
+     */
+    public String text() {
+        String result = text;
+        if (result == null) {
+            result = new String(bytes, StandardCharsets.UTF_8);
+            text = result;
+        }
+        return result;
+    }
+    
+    public int size() {
+        return bytes.length;
+    }
+    
+    private byte[] smile() {
+        byte[] result = smile;
+        if (result == null) {
+            result = encode(objectMapperProducer.getSmileMapper());
+            smile = result;
+        }
+        return result;
+    }
+    
+    private byte[] cbor() {
+        byte[] result = cbor;
+        if (result == null) {
+            result = encode(objectMapperProducer.getCborMapper());
+            cbor = result;
+        }
+        return result;
+    }
+    
+    private byte[] encode(ObjectMapper mapper) {
+        try {
+            return mapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error encoding websocket frame: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.arekalov.islab1.websocket;
+
+import jakarta.websocket.Session;
+
+import java.util.List;
+
+/**
+ * Формат исходящих фреймов, задается параметром ?format= при подключении
+ */
+public enum FrameFormat {
+    /** Текстовые фреймы с JSON (по умолчанию) */
+    TEXT,
+    
+    /** ?format=binary - бинарные фреймы с UTF-8 JSON */
+    JSON,
+    
+    /** ?format=smile - бинарные фреймы Smile, как ответы REST с Accept: application/x-jackson-smile */
+    SMILE,
+    
+    /** ?format=cbor - бинарные фреймы CBOR */
+    CBOR;
+    
+    public boolean isBinary() {
+        return this != TEXT;
+    }
+    
+    static FrameFormat of(Session session) {
+        List<String> format = session.getRequestParameterMap().get("format");
+        if (format == null || format.isEmpty()) {
+            return TEXT;
+        }
+        return switch (format.get(0).toLowerCase()) {
+            case "binary" -> JSON;
+            case "smile" -> SMILE;
+            case "cbor" -> CBOR;
+            default -> TEXT;
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package com.arekalov.islab1.websocket;
+
+/**
+ * Поведение при переполнении очереди исходящих сообщений клиента
+ */
+public enum SlowConsumerPolicy {
+    /** Отбросить новое сообщение */
+    DROP_NEWEST,
+    
+    /** Отбросить самое старое сообщение в очереди */
+    DROP_OLDEST,
+    
+    /** Закрыть сессию - клиент переподключится и перечитает данные */
+    DISCONNECT
+}
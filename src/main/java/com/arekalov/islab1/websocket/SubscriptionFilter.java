@@ -0,0 +1,47 @@
+package com.arekalov.islab1.websocket;
+
+import java.util.Set;
+
+/**
+ * Фильтр подписки клиента
+ * 
+ * Пустые множества и null-границы означают "без ограничения".
+ * houseIds применяется к FLAT (дом квартиры) и HOUSE (сам дом), диапазон цены - только к FLAT.
+ * Если атрибут события неизвестен (например, удаление квартиры по ID), условие по нему
+ * считается выполненным: лишнее событие лучше пропущенного.
+ */
+public record SubscriptionFilter(Set<String> types, Set<Long> houseIds, Long minPrice, Long maxPrice) {
+    
+    public SubscriptionFilter {
+        types = types != null ? Set.copyOf(types) : Set.of();
+        houseIds = houseIds != null ? Set.copyOf(houseIds) : Set.of();
+    }
+    
+    public boolean hasHouseFilter() {
+        return !houseIds.isEmpty();
+    }
+    
+    /**
+     * Подходит ли событие под фильтр
+     */
+    public boolean matches(ChangeEvent event) {
+        if (!types.isEmpty() && !types.contains(event.type())) {
+            return false;
+        }
+        if (event.partial()) {
+            return true;
+        }
+        if (hasHouseFilter() && (event.houseId() == null || !houseIds.contains(event.houseId()))) {
+            return false;
+        }
+        if ("FLAT".equals(event.type()) && event.price() != null) {
+            if (minPrice != null && event.price() < minPrice) {
+                return false;
+            }
+            if (maxPrice != null && event.price() > maxPrice) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.arekalov.islab1.websocket;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс подписок WebSocket-клиентов
+ * 
+ * Клиенты без подписки получают все события. Клиенты с фильтром по домам
+ * индексируются по ID дома, остальные - по типу сущности, поэтому событие
+ * проверяется только против заинтересованных в нем сессий.
+ */
+@ApplicationScoped
+public class SubscriptionRegistry {
+    
+    /** Маркер "любой тип" в индексе по типам */
+    private static final String ANY_TYPE = "*";
+    
+    /** Клиенты без фильтра */
+    private final Set<ClientSession> unfiltered = ConcurrentHashMap.newKeySet();
+    
+    /** Клиенты с фильтром, но без ограничения по домам: тип -> клиенты */
+    private final Map<String, Set<ClientSession>> byType = new ConcurrentHashMap<>();
+    
+    /** Клиенты с ограничением по домам: ID дома -> клиенты */
+    private final Map<Long, Set<ClientSession>> byHouse = new ConcurrentHashMap<>();
+    
+    /** Все клиенты с ограничением по домам - для событий с неизвестным домом */
+    private final Set<ClientSession> withHouseFilter = ConcurrentHashMap.newKeySet();
+    
+    /** Все клиенты с фильтром */
+    private final Set<ClientSession> filtered = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Добавить клиента без фильтра
+     */
+    public synchronized void add(ClientSession client) {
+        unfiltered.add(client);
+    }
+    
+    /**
+     * Удалить клиента из всех индексов
+     */
+    public synchronized void remove(ClientSession client) {
+        unindex(client);
+        unfiltered.remove(client);
+    }
+    
+    /**
+     * Заменить фильтр клиента; null - получать все события
+     */
+    public synchronized void update(ClientSession client, SubscriptionFilter filter) {
+        unindex(client);
+        unfiltered.remove(client);
+        client.setFilter(filter);
+        
+        if (filter == null) {
+            unfiltered.add(client);
+            return;
+        }
+        
+        filtered.add(client);
+        if (filter.hasHouseFilter()) {
+            withHouseFilter.add(client);
+            for (Long houseId : filter.houseIds()) {
+                byHouse.computeIfAbsent(houseId, key -> ConcurrentHashMap.newKeySet()).add(client);
+            }
+        } else if (filter.types().isEmpty()) {
+            byType.computeIfAbsent(ANY_TYPE, key -> ConcurrentHashMap.newKeySet()).add(client);
+        } else {
+            for (String type : filter.types()) {
+                byType.computeIfAbsent(type, key -> ConcurrentHashMap.newKeySet()).add(client);
+            }
+        }
+    }
+    
+    /**
+     * Найти клиентов, которым нужно отправить событие
+     */
+    public Set<ClientSession> match(ChangeEvent event) {
+        Set<ClientSession> result = new HashSet<>(unfiltered);
+        
+        addMatching(result, byType.get(event.type()), event);
+        addMatching(result, byType.get(ANY_TYPE), event);
+        
+        if (event.partial()) {
+            addMatching(result, withHouseFilter, event);
+        } else if (event.houseId() != null) {
+            addMatching(result, byHouse.get(event.houseId()), event);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Количество клиентов с активным фильтром
+     */
+    public int filteredCount() {
+        return filtered.size();
+    }
+    
+    private static void addMatching(Set<ClientSession> result, Collection<ClientSession> candidates, ChangeEvent event) {
+        if (candidates == null) {
+            return;
+        }
+        for (ClientSession client : candidates) {
+            SubscriptionFilter filter = client.getFilter();
+            if (filter != null && filter.matches(event)) {
+                result.add(client);
+            }
+        }
+    }
+    
+    private void unindex(ClientSession client) {
+        SubscriptionFilter filter = client.getFilter();
+        if (filter == null) {
+            return;
+        }
+        filtered.remove(client);
+        withHouseFilter.remove(client);
+        for (Long houseId : filter.houseIds()) {
+            removeFrom(byHouse, houseId, client);
+        }
+        removeFrom(byType, ANY_TYPE, client);
+        for (String type : filter.types()) {
+            removeFrom(byType, type, client);
+        }
+    }
+    
+    private static <K> void removeFrom(Map<K, Set<ClientSession>> index, K key, ClientSession client) {
+        Set<ClientSession> clients = index.get(key);
+        if (clients != null) {
+            clients.remove(client);
+            if (clients.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.arekalov.islab1.websocket;
+
+/**
+ * Ограничитель частоты сообщений для одного клиента (token bucket)
+ * Допускает всплеск до perSecond сообщений, дальше - не более perSecond в секунду.
+ */
+public final class TokenBucket {
+    
+    private final double capacity;
+    
+    private final double tokensPerNano;
+    
+    private double tokens;
+    
+    private long lastRefill;
+    
+    public TokenBucket(int perSecond) {
+        this.capacity = perSecond;
+        this.tokensPerNano = perSecond / 1_000_000_000.0;
+        this.tokens = perSecond;
+        this.lastRefill = System.nanoTime();
+    }
+    
+    /**
+     * Взять один токен
+     *
+     * @return 0, если токен получен, иначе сколько миллисекунд подождать
+     */
+    public synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano / 1_000_000));
+    }
+}
@@ -2,59 +2,233 @@ package com.arekalov.islab1.websocket;
 
 import com.arekalov.islab1.config.ObjectMapperProducer;
 import com.arekalov.islab1.dto.websocket.WebSocketMessage;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.websocket.*;
 import jakarta.websocket.server.ServerEndpoint;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.logging.Logger;
 
+/**
+ * WebSocket для уведомлений об изменениях
+ * 
+ * Без подписки клиент получает все события. Подписка задается сообщением
+ * {"action":"SUBSCRIBE","types":["FLAT"],"houseIds":[1,2],"minPrice":1000,"maxPrice":5000}
+ * (все поля, кроме action, необязательны), сброс - {"action":"RESET"}.
+ * Ответ: {"type":"SUBSCRIPTION","action":"OK"} либо {"type":"SUBSCRIPTION","action":"ERROR","data":"..."}.
+ * С параметром ?format=binary сообщения приходят бинарными фреймами (UTF-8 JSON),
+ * с ?format=smile или ?format=cbor - бинарными фреймами Smile/CBOR.
+ * С параметром ?since=<seq> клиент сначала получает пропущенные события (см. ChangeFeed).
+ */
 @ApplicationScoped
 @ServerEndpoint("/websocket/updates")
 public class UpdatesWebSocket {
-    private static final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    
+    private static final Logger logger = Logger.getLogger(UpdatesWebSocket.class.getName());
+    
+    private static final String SUBSCRIPTION_TYPE = "SUBSCRIPTION";
+    
+    private static final String FEED_TYPE = "FEED";
+    
+    /** Количество событий в одном сообщении REPLAY */
+    private static final int REPLAY_CHUNK = Integer.getInteger("islab1.websocket.batch-size", 500);
     
     @Inject
     private ObjectMapperProducer objectMapperProducer;
+    
+    @Inject
+    private WebSocketBroadcaster broadcaster;
+    
+    @Inject
+    private SubscriptionRegistry subscriptionRegistry;
+    
+    @Inject
+    private ChangeFeed changeFeed;
 
+    /**
+     * Подключение: пропущенные события приходят сообщениями FEED/REPLAY, затем FEED/READY
+     * (или FEED/RESYNC, если их не восстановить)
+     */
     @OnOpen
     public void onOpen(Session session) {
-        sessions.put(session.getId(), session);
+        changeFeed.connect(parseSince(session), () -> {
+            ClientSession client = broadcaster.register(session);
+            return new ChangeFeed.Subscriber() {
+                @Override
+                public void replay(List<WebSocketMessage> events) {
+                    for (int from = 0; from < events.size(); from += REPLAY_CHUNK) {
+                        reply(client, WebSocketMessage.builder()
+                            .type(FEED_TYPE)
+                            .action("REPLAY")
+                            .items(new ArrayList<>(events.subList(from, Math.min(from + REPLAY_CHUNK, events.size()))))
+                            .build());
+                    }
+                }
+                
+                @Override
+                public void resync(long seq) {
+                    reply(client, WebSocketMessage.builder().type(FEED_TYPE).action("RESYNC").seq(seq).build());
+                }
+                
+                @Override
+                public void ready(long seq) {
+                    reply(client, WebSocketMessage.builder().type(FEED_TYPE).action("READY").seq(seq).build());
+                }
+            };
+        });
     }
 
     @OnClose
     public void onClose(Session session) {
-        sessions.remove(session.getId());
+        broadcaster.unregister(session.getId());
     }
 
     @OnError
     public void onError(Session session, Throwable throwable) {
-        sessions.remove(session.getId());
+        broadcaster.unregister(session.getId());
     }
 
     @OnMessage
     public void onMessage(String message, Session session) {
-        // Handle incoming messages if needed
+        ClientSession client = broadcaster.get(session.getId());
+        if (client == null) {
+            return;
+        }
+        
+        try {
+            JsonNode request = objectMapperProducer.getObjectMapper().readTree(message);
+            String action = request.path("action").asText("");
+            
+            switch (action) {
+                case "SUBSCRIBE" -> subscriptionRegistry.update(client, parseFilter(request));
+                case "RESET" -> subscriptionRegistry.update(client, null);
+                default -> throw new IllegalArgumentException("Неизвестное действие: " + action);
+            }
+            reply(client, new WebSocketMessage(SUBSCRIPTION_TYPE, "OK", null));
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warning("UpdatesWebSocket.onMessage() - некорректный запрос от сессии " + session.getId() + ": " + e.getMessage());
+            reply(client, new WebSocketMessage(SUBSCRIPTION_TYPE, "ERROR", e.getMessage()));
+        }
     }
 
-    public void broadcast(String type, String action, Object data) {
-        WebSocketMessage message = new WebSocketMessage(type, action, data);
-        String jsonMessage;
-        try {
-            jsonMessage = objectMapperProducer.getObjectMapper().writeValueAsString(message);
-        } catch (IOException e) {
-            e.printStackTrace();
+    public void broadcast(WebSocketMessage event) {
+        Set<ClientSession> targets = subscriptionRegistry.match(ChangeEvent.of(event.getType(), event.getAction(), event.getData()));
+        if (targets.isEmpty()) {
             return;
         }
+        send(targets, event);
+    }
 
-        sessions.values().forEach(session -> {
-            try {
-                session.getBasicRemote().sendText(jsonMessage);
-            } catch (IOException e) {
-                e.printStackTrace();
+    /**
+     * Разослать события одним сообщением {"type":..., "action":"BATCH", "items":[...]}
+     * 
+     * Каждый клиент получает только подходящие ему элементы; клиенты с одинаковым
+     * набором элементов получают одно и то же сериализованное сообщение.
+     */
+    public void broadcastBatch(String type, List<WebSocketMessage> items) {
+        Map<ClientSession, BitSet> matched = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            WebSocketMessage item = items.get(i);
+            for (ClientSession client : subscriptionRegistry.match(ChangeEvent.of(type, item.getAction(), item.getData()))) {
+                matched.computeIfAbsent(client, key -> new BitSet(items.size())).set(i);
             }
+        }
+        
+        Map<BitSet, Set<ClientSession>> groups = new LinkedHashMap<>();
+        matched.forEach((client, indices) -> groups.computeIfAbsent(indices, key -> new HashSet<>()).add(client));
+        
+        groups.forEach((indices, clients) -> {
+            List<WebSocketMessage> subset = new ArrayList<>(indices.cardinality());
+            indices.stream().forEach(i -> subset.add(items.get(i)));
+            send(clients, WebSocketMessage.builder()
+                .type(type)
+                .action("BATCH")
+                .items(subset)
+                .build());
         });
     }
+    
+    /**
+     * Номер последнего полученного клиентом события; некорректное значение - -1 (полная ресинхронизация)
+     */
+    private static Long parseSince(Session session) {
+        List<String> since = session.getRequestParameterMap().get("since");
+        if (since == null || since.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(since.get(0));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+    
+    private SubscriptionFilter parseFilter(JsonNode request) {
+        Set<String> types = new HashSet<>();
+        for (JsonNode type : request.path("types")) {
+            types.add(type.asText().toUpperCase());
+        }
+        
+        Set<Long> houseIds = new HashSet<>();
+        for (JsonNode houseId : request.path("houseIds")) {
+            if (!houseId.canConvertToLong()) {
+                throw new IllegalArgumentException("Некорректный ID дома: " + houseId);
+            }
+            houseIds.add(houseId.asLong());
+        }
+        
+        Long minPrice = parsePrice(request, "minPrice");
+        Long maxPrice = parsePrice(request, "maxPrice");
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice не может быть больше maxPrice");
+        }
+        
+        return new SubscriptionFilter(types, houseIds, minPrice, maxPrice);
+    }
+    
+    private static Long parsePrice(JsonNode request, String field) {
+        JsonNode value = request.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        if (!value.canConvertToLong()) {
+            throw new IllegalArgumentException("Некорректное значение " + field + ": " + value);
+        }
+        return value.asLong();
+    }
+    
+    private void reply(ClientSession client, WebSocketMessage message) {
+        EncodedFrame frame = encode(message);
+        if (frame != null) {
+            broadcaster.reply(client, frame);
+        }
+    }
+
+    private void send(Set<ClientSession> targets, WebSocketMessage message) {
+        EncodedFrame frame = encode(message);
+        if (frame != null) {
+            broadcaster.send(targets, frame);
+        }
+    }
+    
+    /**
+     * Сериализовать сообщение один раз для всех получателей
+     */
+    private EncodedFrame encode(WebSocketMessage message) {
+        try {
+            return new EncodedFrame(message, objectMapperProducer);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 }
@@ -0,0 +1,181 @@
+package com.arekalov.islab1.websocket;
+
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.websocket.Session;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Logger;
+
+/**
+ * Неблокирующая рассылка WebSocket-сообщений
+ * 
+ * broadcast() только раскладывает сообщение по очередям клиентов и сразу возвращает
+ * управление, поэтому поток, закоммитивший изменение, не ждет медленных браузеров.
+ * Отправкой занимается выделенный пул потоков.
+ * 
+ * Сообщение сериализуется один раз (EncodedFrame) и одни и те же байты
+ * раздаются всем сессиям. Клиент, подключившийся с ?format=binary, получает
+ * бинарные фреймы с UTF-8 JSON вместо текстовых, с ?format=smile или ?format=cbor -
+ * бинарные фреймы в этом формате (см. FrameFormat).
+ */
+@ApplicationScoped
+public class WebSocketBroadcaster {
+    
+    private static final Logger logger = Logger.getLogger(WebSocketBroadcaster.class.getName());
+    
+    private static final int QUEUE_CAPACITY = Integer.getInteger("islab1.websocket.queue-capacity", 256);
+    
+    private static final int SENDER_THREADS = Integer.getInteger("islab1.websocket.sender-threads", 4);
+    
+    private static final long SEND_TIMEOUT_MS = Long.getLong("islab1.websocket.send-timeout-ms", 10_000L);
+    
+    /** Максимум сообщений в секунду на клиента; 0 - без ограничения */
+    private static final int MAX_MESSAGES_PER_SECOND = Integer.getInteger("islab1.websocket.max-messages-per-second", 50);
+    
+    private static final SlowConsumerPolicy POLICY = SlowConsumerPolicy.valueOf(
+        System.getProperty("islab1.websocket.slow-consumer-policy", SlowConsumerPolicy.DISCONNECT.name()));
+    
+    private final Map<String, ClientSession> sessions = new ConcurrentHashMap<>();
+    
+    @Resource
+    private ManagedThreadFactory threadFactory;
+    
+    @Inject
+    private SubscriptionRegistry subscriptionRegistry;
+    
+    @Inject
+    private MetricsRegistry metricsRegistry;
+    
+    private ExecutorService senderExecutor;
+    
+    private ScheduledExecutorService throttleScheduler;
+    
+    @PostConstruct
+    public void init() {
+        senderExecutor = Executors.newFixedThreadPool(SENDER_THREADS, threadFactory);
+        throttleScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        
+        metricsRegistry.registerGauge("websocket_sessions", sessions::size);
+        metricsRegistry.registerGauge("websocket_queue_depth_total", this::totalQueueDepth);
+        metricsRegistry.registerGauge("websocket_queue_depth_max", this::maxQueueDepth);
+        metricsRegistry.registerGauge("websocket_filtered_sessions", subscriptionRegistry::filteredCount);
+        
+        logger.info("WebSocketBroadcaster - очередь=" + QUEUE_CAPACITY + ", потоков=" + SENDER_THREADS
+            + ", политика=" + POLICY + ", лимит=" + MAX_MESSAGES_PER_SECOND + "/с");
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (throttleScheduler != null) {
+            throttleScheduler.shutdownNow();
+        }
+        if (senderExecutor != null) {
+            senderExecutor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Зарегистрировать новую сессию
+     */
+    public ClientSession register(Session session) {
+        session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MS);
+        TokenBucket rateLimit = MAX_MESSAGES_PER_SECOND > 0 ? new TokenBucket(MAX_MESSAGES_PER_SECOND) : null;
+        ClientSession client = new ClientSession(session, FrameFormat.of(session), QUEUE_CAPACITY, senderExecutor,
+            throttleScheduler, rateLimit, POLICY, this);
+        sessions.put(session.getId(), client);
+        subscriptionRegistry.add(client);
+        return client;
+    }
+    
+    /**
+     * Найти клиента по ID сессии
+     */
+    public ClientSession get(String sessionId) {
+        return sessions.get(sessionId);
+    }
+    
+    /**
+     * Удалить сессию
+     */
+    public void unregister(String sessionId) {
+        ClientSession client = sessions.remove(sessionId);
+        if (client != null) {
+            subscriptionRegistry.remove(client);
+            client.markClosed();
+        }
+    }
+    
+    /**
+     * Разослать сообщение всем клиентам
+     */
+    public void broadcast(EncodedFrame message) {
+        send(sessions.values(), message);
+    }
+    
+    /**
+     * Отправить сообщение указанным клиентам
+     */
+    public void send(Collection<ClientSession> clients, EncodedFrame message) {
+        for (ClientSession client : clients) {
+            client.enqueue(message);
+        }
+        metricsRegistry.increment("websocket_broadcasts_total");
+        metricsRegistry.add("websocket_deliveries_total", clients.size());
+        metricsRegistry.add("websocket_encoded_bytes_total", message.size());
+    }
+    
+    /**
+     * Отправить сообщение одному клиенту (ответ на его запрос)
+     */
+    public void reply(ClientSession client, EncodedFrame message) {
+        client.enqueue(message);
+    }
+    
+    void onSent(ClientSession client) {
+        metricsRegistry.increment("websocket_messages_sent_total");
+    }
+    
+    void onThrottled(ClientSession client) {
+        metricsRegistry.increment("websocket_throttled_total");
+    }
+    
+    void onDropped(ClientSession client) {
+        metricsRegistry.increment("websocket_messages_dropped_total");
+    }
+    
+    void onSlowConsumerDisconnected(ClientSession client) {
+        metricsRegistry.increment("websocket_slow_consumers_disconnected_total");
+        logger.warning("WebSocketBroadcaster - медленный клиент отключен: " + client.getId());
+    }
+    
+    void onSendFailed(ClientSession client) {
+        metricsRegistry.increment("websocket_send_failures_total");
+    }
+    
+    private long totalQueueDepth() {
+        long total = 0;
+        for (ClientSession client : sessions.values()) {
+            total += client.getQueueDepth();
+        }
+        return total;
+    }
+    
+    private long maxQueueDepth() {
+        long max = 0;
+        for (ClientSession client : sessions.values()) {
+            max = Math.max(max, client.getQueueDepth());
+        }
+        return max;
+    }
+}
@@ -0,0 +1,349 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.config.ObjectMapperProducer;
+import com.arekalov.islab1.dto.request.CreateHouseRequest;
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.Furnish;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.entity.View;
+import com.arekalov.islab1.mapper.CoordinatesMapper;
+import com.arekalov.islab1.mapper.FlatMapper;
+import com.arekalov.islab1.mapper.HouseMapper;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.repository.memory.InMemoryFlatRepository;
+import com.arekalov.islab1.repository.memory.InMemoryHouseRepository;
+import com.arekalov.islab1.repository.memory.InMemoryStore;
+import com.arekalov.islab1.service.EntityManagerService;
+import com.arekalov.islab1.service.FlatService;
+import com.arekalov.islab1.service.HouseService;
+import com.arekalov.islab1.service.WebSocketService;
+import com.arekalov.islab1.support.TestTransactions;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.arekalov.islab1.support.TestTransactions.inject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Инвалидация кэшей при параллельных обновлениях
+ * 
+ * Писатели обновляют дом и координаты квартиры в транзакциях, читатели параллельно
+ * читают ответы GET /houses/{id} и GET /flats/{id} через DetailResponseCache.
+ * После коммита писатель сразу читает ответ и не должен получить значение старше своего:
+ * EntityCacheInvalidator вытесняет ключи после завершения транзакции, а загрузка,
+ * начатая до вытеснения, не попадает в кэш.
+ * 
+ * Сам общий кэш EclipseLink здесь не участвует: он заменен записывающей заглушкой
+ * jakarta.persistence.Cache, по которой проверяется только момент вытеснения.
+ * Настройка @Cache и чтение под блокировкой проверяются в SharedCacheConfigurationTest.
+ */
+class EntityCacheInvalidationTest {
+    
+    private static final int WRITERS = 8;
+    
+    private static final int READERS = 8;
+    
+    private static final int UPDATES_PER_WRITER = 25;
+    
+    private final TestTransactions transactions = new TestTransactions();
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final RecordingCache sharedCache = new RecordingCache();
+    
+    private InMemoryHouseRepository houseRepository;
+    
+    private InMemoryFlatRepository flatRepository;
+    
+    private HouseMapper houseMapper;
+    
+    private FlatMapper flatMapper;
+    
+    private HouseService houseService;
+    
+    private FlatService flatService;
+    
+    private DetailResponseCache detailResponseCache;
+    
+    private ExecutorService executor;
+    
+    @BeforeEach
+    void setUp() {
+        InMemoryStore store = new InMemoryStore(transactions);
+        houseRepository = new InMemoryHouseRepository(store);
+        flatRepository = new InMemoryFlatRepository(store);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        
+        EntityManagerService entityManagerService = mock(EntityManagerService.class);
+        when(entityManagerService.getSharedCache()).thenReturn(sharedCache);
+        
+        EntityCacheInvalidator entityCacheInvalidator = new EntityCacheInvalidator();
+        inject(entityCacheInvalidator, "transactionSynchronizationRegistry", transactions);
+        inject(entityCacheInvalidator, "entityManagerService", entityManagerService);
+        inject(entityCacheInvalidator, "clusterCacheCoordinator", new ClusterCacheCoordinator());
+        inject(entityCacheInvalidator, "metricsRegistry", metricsRegistry);
+        
+        detailResponseCache = new DetailResponseCache();
+        inject(detailResponseCache, "objectMapperProducer", new ObjectMapperProducer());
+        inject(detailResponseCache, "entityCacheInvalidator", entityCacheInvalidator);
+        inject(detailResponseCache, "metricsRegistry", metricsRegistry);
+        detailResponseCache.init();
+        
+        houseMapper = new HouseMapper();
+        flatMapper = new FlatMapper();
+        inject(flatMapper, "coordinatesMapper", new CoordinatesMapper());
+        inject(flatMapper, "houseMapper", houseMapper);
+        
+        houseService = new HouseService();
+        inject(houseService, "houseRepository", houseRepository);
+        inject(houseService, "houseMapper", houseMapper);
+        inject(houseService, "webSocketService", mock(WebSocketService.class));
+        inject(houseService, "entityCacheInvalidator", entityCacheInvalidator);
+        
+        flatService = new FlatService();
+        inject(flatService, "flatRepository", flatRepository);
+        inject(flatService, "houseRepository", houseRepository);
+        inject(flatService, "webSocketService", mock(WebSocketService.class));
+        inject(flatService, "entityCacheInvalidator", entityCacheInvalidator);
+        inject(flatService, "requestCoalescer", mock(RequestCoalescer.class));
+        
+        executor = Executors.newFixedThreadPool(WRITERS + READERS);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    void sharedCacheIsEvictedOnlyAfterCommit() {
+        House house = houseRepository.save(house(1));
+        
+        transactions.required(() -> {
+            houseService.updateHouse(house.getId(), new CreateHouseRequest("house", 2, 100));
+            assertFalse(sharedCache.evicted(House.class, house.getId()));
+        });
+        
+        assertTrue(sharedCache.evicted(House.class, house.getId()));
+    }
+    
+    @Test
+    void houseCreateKeepsCachedFlatResponses() {
+        House house = houseRepository.save(house(1));
+        Flat flat = transactions.required(() -> flatService.createFlat(flat(0, house)));
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Object> loader = () -> {
+            loads.incrementAndGet();
+            return flatMapper.toResponseDTO(flatRepository.findById(flat.getId()));
+        };
+        
+        detailResponseCache.getFlat(flat.getId(), loader);
+        transactions.required(() -> houseService.createHouse(new CreateHouseRequest("other", 1, 100)));
+        detailResponseCache.getFlat(flat.getId(), loader);
+        assertEquals(1, loads.get());
+        
+        // Изменение дома квартиры сбрасывает ее ответ
+        transactions.required(() -> houseService.updateHouse(house.getId(), new CreateHouseRequest("house", 2, 100)));
+        detailResponseCache.getFlat(flat.getId(), loader);
+        assertEquals(2, loads.get());
+    }
+    
+    @Test
+    void concurrentHouseUpdatesAreNeverServedStaleAfterCommit() throws Exception {
+        House house = houseRepository.save(house(1));
+        Flat flat = transactions.required(() -> flatService.createFlat(flat(0, house)));
+        
+        runWithReaders(house.getId(), flat.getId(), writer -> {
+            for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+                int written = transactions.required(() -> {
+                    // Блокировка дома до коммита: год растет монотонно в порядке коммитов
+                    int year = houseRepository.findByIdWithLock(house.getId()).getYear() + 1;
+                    houseService.updateHouse(house.getId(), new CreateHouseRequest("house", year, 100));
+                    return year;
+                });
+                
+                assertTrue(houseYear(house.getId()) >= written, "устаревший дом после коммита");
+                assertTrue(flatJson(flat.getId()).get("house").get("year").asInt() >= written,
+                    "устаревший дом в ответе квартиры после коммита");
+            }
+        });
+        
+        int expected = 1 + WRITERS * UPDATES_PER_WRITER;
+        assertEquals(expected, houseRepository.findById(house.getId()).getYear());
+        assertEquals(expected, houseYear(house.getId()));
+        assertEquals(expected, flatJson(flat.getId()).get("house").get("year").asInt());
+    }
+    
+    @Test
+    void concurrentCoordinatesUpdatesAreNeverServedStaleAfterCommit() throws Exception {
+        House house = houseRepository.save(house(1));
+        Flat flat = transactions.required(() -> flatService.createFlat(flat(0, house)));
+        
+        runWithReaders(house.getId(), flat.getId(), writer -> {
+            for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+                int written = transactions.required(() -> {
+                    houseRepository.findByIdWithLock(house.getId());
+                    int x = flatRepository.findById(flat.getId()).getCoordinates().getX() + 1;
+                    flatService.updateFlat(flat.getId(), flat(x, house));
+                    return x;
+                });
+                
+                assertTrue(flatJson(flat.getId()).get("coordinates").get("x").asInt() >= written,
+                    "устаревшие координаты после коммита");
+            }
+        });
+        
+        int expected = WRITERS * UPDATES_PER_WRITER;
+        assertEquals(expected, flatRepository.findById(flat.getId()).getCoordinates().getX());
+        assertEquals(expected, flatJson(flat.getId()).get("coordinates").get("x").asInt());
+    }
+    
+    private interface Writer {
+        void run(int index) throws Exception;
+    }
+    
+    /**
+     * Запустить писателей и читателей одновременно; читатели работают, пока идут записи
+     */
+    private void runWithReaders(Long houseId, Long flatId, Writer writer) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        
+        List<Future<?>> readers = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    houseYear(houseId);
+                    flatJson(flatId);
+                }
+                return null;
+            }));
+        }
+        
+        List<Future<?>> writers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            int index = i;
+            writers.add(executor.submit(() -> {
+                start.await();
+                writer.run(index);
+                return null;
+            }));
+        }
+        
+        start.countDown();
+        try {
+            for (Future<?> future : writers) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            writing.set(false);
+        }
+        for (Future<?> future : readers) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+    
+    private int houseYear(Long id) {
+        byte[] body = detailResponseCache.getHouse(id, () -> houseMapper.toResponseDTO(houseRepository.findById(id)));
+        return read(body).get("year").asInt();
+    }
+    
+    private JsonNode flatJson(Long id) {
+        return read(detailResponseCache.getFlat(id, () -> flatMapper.toResponseDTO(flatRepository.findById(id))));
+    }
+    
+    private JsonNode read(byte[] body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static House house(int year) {
+        return House.builder()
+            .name("house")
+            .year(year)
+            .numberOfFlatsOnFloor(100)
+            .build();
+    }
+    
+    private static Flat flat(int x, House house) {
+        return Flat.builder()
+            .name("flat")
+            .coordinates(Coordinates.builder().x(x).y(0).build())
+            .area(50L)
+            .price(1000L)
+            .balcony(false)
+            .timeToMetroOnFoot(10L)
+            .numberOfRooms(2)
+            .livingSpace(30L)
+            .furnish(Furnish.DESIGNER)
+            .view(View.GOOD)
+            .floor(1)
+            .house(House.builder().id(house.getId()).build())
+            .build();
+    }
+    
+    /**
+     * Заглушка общего кэша EclipseLink: запоминает вытесненные ключи
+     */
+    private static final class RecordingCache implements Cache {
+        
+        private final Set<String> evictions = ConcurrentHashMap.newKeySet();
+        
+        boolean evicted(Class<?> entityClass, Object id) {
+            return evictions.contains(entityClass.getSimpleName() + ":" + id);
+        }
+        
+        @Override
+        public boolean contains(Class cls, Object primaryKey) {
+            return false;
+        }
+        
+        @Override
+        public void evict(Class cls, Object primaryKey) {
+            evictions.add(cls.getSimpleName() + ":" + primaryKey);
+        }
+        
+        @Override
+        public void evict(Class cls) {
+            evictions.add(cls.getSimpleName() + ":*");
+        }
+        
+        @Override
+        public void evictAll() {
+            evictions.add("*");
+        }
+        
+        @Override
+        public <T> T unwrap(Class<T> cls) {
+            throw new IllegalArgumentException(cls.getName());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import com.arekalov.islab1.service.EntityManagerService;
+import com.arekalov.islab1.support.TestTransactions;
+import jakarta.persistence.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.arekalov.islab1.support.TestTransactions.inject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Объединение одновременных запросов: копии результата и запросы, начатые до записи
+ */
+class RequestCoalescerTest {
+    
+    private static final String ENDPOINT = "test.list";
+    
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+    
+    private final CountDownLatch release = new CountDownLatch(1);
+    
+    private final AtomicInteger loads = new AtomicInteger();
+    
+    private EntityCacheInvalidator entityCacheInvalidator;
+    
+    private RequestCoalescer requestCoalescer;
+    
+    private ExecutorService executor;
+    
+    @BeforeEach
+    void setUp() {
+        EntityManagerService entityManagerService = mock(EntityManagerService.class);
+        when(entityManagerService.getSharedCache()).thenReturn(mock(Cache.class));
+        
+        entityCacheInvalidator = new EntityCacheInvalidator();
+        inject(entityCacheInvalidator, "entityManagerService", entityManagerService);
+        inject(entityCacheInvalidator, "clusterCacheCoordinator", new ClusterCacheCoordinator());
+        inject(entityCacheInvalidator, "metricsRegistry", metricsRegistry);
+        
+        requestCoalescer = new RequestCoalescer();
+        inject(requestCoalescer, "metricsRegistry", metricsRegistry);
+        inject(requestCoalescer, "entityCacheInvalidator", entityCacheInvalidator);
+        requestCoalescer.init();
+        
+        executor = Executors.newFixedThreadPool(2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+    
+    @Test
+    void joinedCallersReceiveTheirOwnCopies() throws Exception {
+        Future<List<String>> owner = executor.submit(() -> execute(this::blockingLoad));
+        awaitGauge("coalescing_test_list_in_flight", 1);
+        Future<List<String>> joiner = executor.submit(() -> execute(this::blockingLoad));
+        awaitGauge("coalescing_test_list_joined_total", 1);
+        release.countDown();
+        
+        List<String> ownerResult = owner.get(5, TimeUnit.SECONDS);
+        List<String> joinerResult = joiner.get(5, TimeUnit.SECONDS);
+        assertEquals(1, loads.get());
+        assertEquals(ownerResult, joinerResult);
+        assertNotSame(ownerResult, joinerResult);
+    }
+    
+    @Test
+    void callerDoesNotJoinQueryStartedBeforeCommittedWrite() throws Exception {
+        Future<List<String>> stale = executor.submit(() -> execute(this::blockingLoad));
+        awaitGauge("coalescing_test_list_in_flight", 1);
+        
+        // Коммит записи вне транзакции вытесняет ключ сразу
+        entityCacheInvalidator.invalidateAfterCommit(Flat.class, 1L);
+        
+        Future<List<String>> fresh = executor.submit(() -> execute(this::blockingLoad));
+        assertEquals(List.of("load-2"), fresh.get(5, TimeUnit.SECONDS));
+        assertFalse(stale.isDone());
+        
+        release.countDown();
+        assertEquals(List.of("load-1"), stale.get(5, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+    }
+    
+    @Test
+    void callerInsideTransactionDoesNotJoin() throws Exception {
+        TestTransactions transactions = new TestTransactions();
+        inject(requestCoalescer, "transactionSynchronizationRegistry", transactions);
+        
+        Future<List<String>> outside = executor.submit(() -> execute(this::blockingLoad));
+        awaitGauge("coalescing_test_list_in_flight", 1);
+        
+        // Чужой запрос не видит незафиксированных изменений транзакции - выполняем свой
+        Future<List<String>> inside = executor.submit(() -> transactions.required(() -> execute(this::blockingLoad)));
+        assertEquals(List.of("load-2"), inside.get(5, TimeUnit.SECONDS));
+        assertFalse(outside.isDone());
+        
+        release.countDown();
+        assertEquals(List.of("load-1"), outside.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, metricsRegistry.gaugeSnapshot().get("coalescing_test_list_bypassed_total"));
+    }
+    
+    private List<String> execute(Supplier<List<String>> loader) {
+        return requestCoalescer.execute(ENDPOINT, "all", loader, ArrayList::new);
+    }
+    
+    /**
+     * Первая загрузка ждет release, остальные возвращаются сразу
+     */
+    private List<String> blockingLoad() {
+        int number = loads.incrementAndGet();
+        if (number == 1) {
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        return new ArrayList<>(List.of("load-" + number));
+    }
+    
+    private void awaitGauge(String name, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metricsRegistry.gaugeSnapshot().getOrDefault(name, 0L) != expected) {
+            assertTrue(System.nanoTime() < deadline, "gauge " + name + " != " + expected);
+            Thread.sleep(5);
+        }
+    }
+}
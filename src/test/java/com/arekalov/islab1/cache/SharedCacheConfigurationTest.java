@@ -0,0 +1,86 @@
+package com.arekalov.islab1.cache;
+
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.entity.ImportHistory;
+import com.arekalov.islab1.metrics.LockWaitMetrics;
+import com.arekalov.islab1.metrics.MetricsRegistry;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.eclipse.persistence.annotations.Cache;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.util.Map;
+
+import static com.arekalov.islab1.support.TestTransactions.inject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Настройка общего кэша EclipseLink
+ * 
+ * В общем кэше только House и Coordinates (ENABLE_SELECTIVE + @Cacheable), а чтение
+ * под PESSIMISTIC_WRITE идет мимо кэша и обновляет его: проверки ограничений под
+ * блокировкой видят строку из БД, даже если кэш узла еще не получил инвалидацию.
+ */
+class SharedCacheConfigurationTest {
+    
+    @Test
+    void onlyHouseAndCoordinatesAreSharedCacheable() {
+        assertTrue(House.class.isAnnotationPresent(Cacheable.class));
+        assertTrue(House.class.isAnnotationPresent(Cache.class));
+        assertTrue(Coordinates.class.isAnnotationPresent(Cacheable.class));
+        assertTrue(Coordinates.class.isAnnotationPresent(Cache.class));
+        
+        assertFalse(Flat.class.isAnnotationPresent(Cacheable.class));
+        assertFalse(ImportHistory.class.isAnnotationPresent(Cacheable.class));
+    }
+    
+    @Test
+    void persistenceUnitCachesOnlyCacheableEntities() throws Exception {
+        Document persistence;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("META-INF/persistence.xml")) {
+            assertNotNull(in, "META-INF/persistence.xml");
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            persistence = factory.newDocumentBuilder().parse(in);
+        }
+        
+        assertEquals("ENABLE_SELECTIVE", persistence
+            .getElementsByTagNameNS("*", "shared-cache-mode").item(0).getTextContent().trim());
+    }
+    
+    @Test
+    void lockedReadsBypassAndRefreshSharedCache() {
+        LockWaitMetrics lockWaitMetrics = new LockWaitMetrics();
+        inject(lockWaitMetrics, "metricsRegistry", new MetricsRegistry());
+        
+        House house = House.builder().id(1L).name("locked").year(2000).numberOfFlatsOnFloor(4).build();
+        EntityManager em = mock(EntityManager.class);
+        when(em.find(eq(House.class), eq(1L), eq(LockModeType.PESSIMISTIC_WRITE), anyMap())).thenReturn(house);
+        
+        assertSame(house, lockWaitMetrics.findForUpdate(em, House.class, 1L, "house.constraint"));
+        
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> hints = ArgumentCaptor.forClass(Map.class);
+        verify(em).find(eq(House.class), eq(1L), eq(LockModeType.PESSIMISTIC_WRITE), hints.capture());
+        assertEquals(CacheRetrieveMode.BYPASS, hints.getValue().get("jakarta.persistence.cache.retrieveMode"));
+        assertEquals(CacheStoreMode.REFRESH, hints.getValue().get("jakarta.persistence.cache.storeMode"));
+    }
+}
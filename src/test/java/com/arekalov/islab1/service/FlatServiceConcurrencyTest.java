@@ -0,0 +1,201 @@
+package com.arekalov.islab1.service;
+
+import com.arekalov.islab1.cache.EntityCacheInvalidator;
+import com.arekalov.islab1.cache.RequestCoalescer;
+import com.arekalov.islab1.entity.Coordinates;
+import com.arekalov.islab1.entity.Flat;
+import com.arekalov.islab1.entity.Furnish;
+import com.arekalov.islab1.entity.House;
+import com.arekalov.islab1.entity.View;
+import com.arekalov.islab1.repository.memory.InMemoryFlatRepository;
+import com.arekalov.islab1.repository.memory.InMemoryHouseRepository;
+import com.arekalov.islab1.repository.memory.InMemoryStore;
+import com.arekalov.islab1.support.TestTransactions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.arekalov.islab1.support.TestTransactions.inject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * FlatService на in-memory репозиториях под параллельной записью
+ * Блокировки и откат InMemoryStore привязаны к транзакции TestTransactions так же,
+ * как в контейнере - к JTA-транзакции @Transactional.
+ */
+class FlatServiceConcurrencyTest {
+    
+    private static final int THREADS = 16;
+    
+    private final TestTransactions transactions = new TestTransactions();
+    
+    private InMemoryFlatRepository flatRepository;
+    
+    private InMemoryHouseRepository houseRepository;
+    
+    private FlatService flatService;
+    
+    private ExecutorService executor;
+    
+    @BeforeEach
+    void setUp() {
+        InMemoryStore store = new InMemoryStore(transactions);
+        flatRepository = new InMemoryFlatRepository(store);
+        houseRepository = new InMemoryHouseRepository(store);
+        
+        flatService = new FlatService();
+        inject(flatService, "flatRepository", flatRepository);
+        inject(flatService, "houseRepository", houseRepository);
+        inject(flatService, "webSocketService", mock(WebSocketService.class));
+        inject(flatService, "entityCacheInvalidator", mock(EntityCacheInvalidator.class));
+        inject(flatService, "requestCoalescer", mock(RequestCoalescer.class));
+        
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    void concurrentBadViewInsertsKeepFloorLimit() throws Exception {
+        // 4 квартиры на этаже - не больше 2 с видом BAD
+        House house = houseRepository.save(house(4));
+        
+        List<Future<Boolean>> results = runConcurrently(i -> transactions.required(() -> {
+            try {
+                flatService.createFlat(flat("bad-" + i, i, 1, View.BAD, house));
+                return true;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }));
+        
+        int created = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(10, TimeUnit.SECONDS)) {
+                created++;
+            }
+        }
+        assertEquals(2, created);
+        assertEquals(2L, flatRepository.countByHouseAndFloorAndView(house.getId(), 1, View.BAD, null));
+        assertEquals(2L, flatRepository.count());
+    }
+    
+    @Test
+    void concurrentUpdatesOfOneFlatAreSerialized() throws Exception {
+        House house = houseRepository.save(house(THREADS));
+        Flat flat = transactions.required(() -> flatService.createFlat(flat("flat", 0, 1, View.GOOD, house)));
+        
+        List<Future<Boolean>> results = runConcurrently(i -> transactions.required(() -> {
+            Flat update = flat("flat-" + i, 0, 1, View.GOOD, house);
+            update.setPrice(1000L + i);
+            flatService.updateFlat(flat.getId(), update);
+            return true;
+        }));
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        
+        Flat stored = flatRepository.findById(flat.getId());
+        assertNotNull(stored);
+        // Имя и цена записаны одним и тем же обновлением
+        assertEquals("flat-" + (stored.getPrice() - 1000L), stored.getName());
+        assertEquals(1L, flatRepository.countByCoordinatesAndFloor(0, 0, 1, null));
+    }
+    
+    @Test
+    void failedTransactionRollsBackRowsAndIndexes() {
+        House house = houseRepository.save(house(4));
+        
+        assertThrows(IllegalStateException.class, () -> transactions.required(() -> {
+            flatService.createFlat(flat("rolled-back", 7, 3, View.BAD, house));
+            throw new IllegalStateException("abort");
+        }));
+        
+        assertEquals(0L, flatRepository.count());
+        assertEquals(0L, flatRepository.countByCoordinatesAndFloor(7, 0, 3, null));
+        assertEquals(0L, flatRepository.countByHouseAndFloorAndView(house.getId(), 3, View.BAD, null));
+        
+        // Блокировка дома отпущена - следующая транзакция не ждет
+        transactions.required(() -> flatService.createFlat(flat("committed", 7, 3, View.BAD, house)));
+        assertEquals(1L, flatRepository.count());
+    }
+    
+    @Test
+    void rolledBackHouseDeleteRestoresFlats() {
+        House house = houseRepository.save(house(4));
+        transactions.required(() -> {
+            flatService.createFlat(flat("a", 1, 1, View.GOOD, house));
+            flatService.createFlat(flat("b", 2, 1, View.GOOD, house));
+        });
+        
+        assertThrows(IllegalStateException.class, () -> transactions.required(() -> {
+            houseRepository.deleteById(house.getId());
+            throw new IllegalStateException("abort");
+        }));
+        
+        assertNotNull(houseRepository.findById(house.getId()));
+        assertEquals(2L, houseRepository.getFlatsCount(house.getId()));
+        assertEquals(1L, flatRepository.countByCoordinatesAndFloor(1, 0, 1, null));
+    }
+    
+    private interface Task {
+        Boolean run(int index);
+    }
+    
+    /**
+     * Запустить THREADS задач одновременно
+     */
+    private List<Future<Boolean>> runConcurrently(Task task) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int index = i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return task.run(index);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+    
+    private static House house(int flatsOnFloor) {
+        return House.builder()
+            .name("house")
+            .year(2000)
+            .numberOfFlatsOnFloor(flatsOnFloor)
+            .build();
+    }
+    
+    private static Flat flat(String name, int x, int floor, View view, House house) {
+        return Flat.builder()
+            .name(name)
+            .coordinates(Coordinates.builder().x(x).y(0).build())
+            .area(50L)
+            .price(1000L)
+            .balcony(false)
+            .timeToMetroOnFoot(10L)
+            .numberOfRooms(2)
+            .livingSpace(30L)
+            .furnish(Furnish.DESIGNER)
+            .view(view)
+            .floor(floor)
+            .house(House.builder().id(house.getId()).build())
+            .build();
+    }
+}
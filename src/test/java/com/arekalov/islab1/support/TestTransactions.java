@@ -0,0 +1,122 @@
+package com.arekalov.islab1.support;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * TransactionSynchronizationRegistry для тестов без контейнера
+ * Транзакция привязана к потоку и открывается required(); при исключении она откатывается,
+ * синхронизации получают afterCompletion со статусом COMMITTED или ROLLEDBACK.
+ */
+public class TestTransactions implements TransactionSynchronizationRegistry {
+    
+    private final ThreadLocal<Transaction> current = new ThreadLocal<>();
+    
+    private static final class Transaction {
+        
+        final Map<Object, Object> resources = new HashMap<>();
+        
+        final List<Synchronization> synchronizations = new ArrayList<>();
+        
+        boolean rollbackOnly;
+    }
+    
+    /**
+     * Выполнить действие в транзакции (как @Transactional(REQUIRED))
+     */
+    public <T> T required(Supplier<T> action) {
+        if (current.get() != null) {
+            return action.get();
+        }
+        Transaction transaction = new Transaction();
+        current.set(transaction);
+        boolean committed = false;
+        try {
+            T result = action.get();
+            committed = !transaction.rollbackOnly;
+            return result;
+        } finally {
+            if (committed) {
+                transaction.synchronizations.forEach(Synchronization::beforeCompletion);
+            }
+            current.remove();
+            int status = committed ? Status.STATUS_COMMITTED : Status.STATUS_ROLLEDBACK;
+            transaction.synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        }
+    }
+    
+    public void required(Runnable action) {
+        required(() -> {
+            action.run();
+            return null;
+        });
+    }
+    
+    @Override
+    public Object getTransactionKey() {
+        return current.get();
+    }
+    
+    @Override
+    public void putResource(Object key, Object value) {
+        active().resources.put(key, value);
+    }
+    
+    @Override
+    public Object getResource(Object key) {
+        return active().resources.get(key);
+    }
+    
+    @Override
+    public void registerInterposedSynchronization(Synchronization sync) {
+        active().synchronizations.add(sync);
+    }
+    
+    @Override
+    public int getTransactionStatus() {
+        Transaction transaction = current.get();
+        if (transaction == null) {
+            return Status.STATUS_NO_TRANSACTION;
+        }
+        return transaction.rollbackOnly ? Status.STATUS_MARKED_ROLLBACK : Status.STATUS_ACTIVE;
+    }
+    
+    @Override
+    public void setRollbackOnly() {
+        active().rollbackOnly = true;
+    }
+    
+    @Override
+    public boolean getRollbackOnly() {
+        return active().rollbackOnly;
+    }
+    
+    private Transaction active() {
+        Transaction transaction = current.get();
+        if (transaction == null) {
+            throw new IllegalStateException("No active transaction");
+        }
+        return transaction;
+    }
+    
+    /**
+     * Установить поле с @Inject/@Resource, как это делает контейнер
+     */
+    public static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot inject " + fieldName + ": " + e.getMessage(), e);
+        }
+    }
+}